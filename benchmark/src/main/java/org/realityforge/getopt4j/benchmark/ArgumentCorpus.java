@@ -0,0 +1,274 @@
+package org.realityforge.getopt4j.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.realityforge.getopt4j.CLOptionDescriptor;
+
+/**
+ * Generates option schemas and realistic command lines used by the benchmarks.
+ * All generated options allow duplicates so that large command lines parse successfully.
+ */
+final class ArgumentCorpus
+{
+  static final int DEFINE_OPT = 'D';
+  static final int FILE_OPT = 'f';
+  static final int OUTPUT_OPT = 'o';
+  /**
+   * Characters used as ids for the single character flags in the schema.
+   */
+  private static final String FLAG_CHARS = "abceghijklmnpqrstuvwxyzABCEFGHIJKLMNOPQRSTUVWXYZ";
+  /**
+   * The id of the first long-only option.
+   */
+  private static final int LONG_OPTION_BASE = 0x1000;
+  private static final int MULTIPLE = CLOptionDescriptor.DUPLICATES_ALLOWED;
+
+  private ArgumentCorpus()
+  {
+  }
+
+  /**
+   * Create a schema containing the specified number of descriptors.
+   * The first three descriptors are <code>-D</code>, <code>-f</code> and <code>-o</code>.
+   * These are followed by single character flags and then long-only flags.
+   */
+  static CLOptionDescriptor[] createSchema( final int size )
+  {
+    final CLOptionDescriptor[] descriptors = new CLOptionDescriptor[ size ];
+    for ( int i = 0; i < size; i++ )
+    {
+      descriptors[ i ] = createDescriptor( i );
+    }
+    return descriptors;
+  }
+
+  /**
+   * Create a schema where every option is incompatible with every other option of a different parity.
+   * Command lines generated by {@link #incompatibilityHeavy(int, int)} only use the even options so
+   * they parse successfully while still testing every incompatible id.
+   */
+  static CLOptionDescriptor[] createIncompatibleSchema( final int size )
+  {
+    final CLOptionDescriptor[] descriptors = new CLOptionDescriptor[ size ];
+    for ( int i = 0; i < size; i++ )
+    {
+      final int[] incompatible = new int[ size / 2 ];
+      int count = 0;
+      for ( int j = ( i + 1 ) % 2; j < size && count < incompatible.length; j += 2 )
+      {
+        incompatible[ count++ ] = LONG_OPTION_BASE + j;
+      }
+      descriptors[ i ] = new CLOptionDescriptor( "option-" + i,
+                                                 CLOptionDescriptor.ARGUMENT_DISALLOWED,
+                                                 LONG_OPTION_BASE + i,
+                                                 "Option number " + i + " in a schema with many incompatibilities",
+                                                 incompatible );
+    }
+    return descriptors;
+  }
+
+  /**
+   * Create a command line containing the specified number of arguments in the specified mix.
+   *
+   * @param mix        one of short, long, clustered, define or mixed
+   * @param argCount   the number of arguments
+   * @param schemaSize the size of the schema created by {@link #createSchema(int)}
+   */
+  static String[] createArgs( final String mix, final int argCount, final int schemaSize )
+  {
+    switch ( mix )
+    {
+      case "short":
+        return shortOptions( argCount, schemaSize );
+      case "long":
+        return longOptions( argCount, schemaSize );
+      case "clustered":
+        return shortOptionClusters( argCount, schemaSize );
+      case "define":
+        return jvmDefines( argCount );
+      case "mixed":
+        return mixed( argCount, schemaSize );
+      default:
+        throw new IllegalArgumentException( "Unknown argument mix " + mix );
+    }
+  }
+
+  /**
+   * A flood of JVM style system property definitions such as <code>-Dkey=value</code>.
+   */
+  static String[] jvmDefines( final int argCount )
+  {
+    final String[] args = new String[ argCount ];
+    for ( int i = 0; i < argCount; i++ )
+    {
+      args[ i ] = "-Dorg.example.property" + i + "=value-" + i;
+    }
+    return args;
+  }
+
+  /**
+   * Individual single character flags such as <code>-v -q</code>.
+   */
+  static String[] shortOptions( final int argCount, final int schemaSize )
+  {
+    final int flagCount = shortFlagCount( schemaSize );
+    final String[] args = new String[ argCount ];
+    for ( int i = 0; i < argCount; i++ )
+    {
+      args[ i ] = "-" + FLAG_CHARS.charAt( i % flagCount );
+    }
+    return args;
+  }
+
+  /**
+   * Long options spread across the whole schema such as <code>--verbose --file=x</code>.
+   */
+  static String[] longOptions( final int argCount, final int schemaSize )
+  {
+    final String[] args = new String[ argCount ];
+    for ( int i = 0; i < argCount; i++ )
+    {
+      final int index = i % schemaSize;
+      args[ i ] = index < 3 ? "--" + nameFor( index ) + "=" + valueFor( index, i ) : "--" + nameFor( index );
+    }
+    return args;
+  }
+
+  /**
+   * tar or rsync style clusters of short options such as <code>-xvzf archive.tgz</code>.
+   */
+  static String[] shortOptionClusters( final int argCount, final int schemaSize )
+  {
+    final int flagCount = shortFlagCount( schemaSize );
+    final List<String> args = new ArrayList<>( argCount );
+    int flag = 0;
+    while ( args.size() < argCount )
+    {
+      final StringBuilder sb = new StringBuilder( "-" );
+      for ( int i = 0; i < 4; i++ )
+      {
+        sb.append( FLAG_CHARS.charAt( flag++ % flagCount ) );
+      }
+      if ( args.size() + 1 < argCount )
+      {
+        sb.append( 'f' );
+        args.add( sb.toString() );
+        args.add( "archive-" + args.size() + ".tgz" );
+      }
+      else
+      {
+        args.add( sb.toString() );
+      }
+    }
+    return args.toArray( new String[ 0 ] );
+  }
+
+  /**
+   * A realistic mixture of short options, long options, key=value options and positional arguments.
+   */
+  static String[] mixed( final int argCount, final int schemaSize )
+  {
+    final int flagCount = shortFlagCount( schemaSize );
+    final String[] args = new String[ argCount ];
+    for ( int i = 0; i < argCount; i++ )
+    {
+      switch ( i % 6 )
+      {
+        case 0:
+          args[ i ] = "-" + FLAG_CHARS.charAt( i % flagCount );
+          break;
+        case 1:
+          args[ i ] = "--" + nameFor( i % schemaSize );
+          break;
+        case 2:
+          args[ i ] = "-Dkey" + i + "=value" + i;
+          break;
+        case 3:
+          args[ i ] = "--output=build/output-" + i;
+          break;
+        case 4:
+          args[ i ] = "-" + FLAG_CHARS.charAt( 0 ) + "fsrc/main/java/File" + i + ".java";
+          break;
+        default:
+          args[ i ] = "positional-" + i;
+          break;
+      }
+    }
+    return args;
+  }
+
+  /**
+   * Arguments for the schema created by {@link #createIncompatibleSchema(int)}.
+   */
+  static String[] incompatibilityHeavy( final int argCount, final int schemaSize )
+  {
+    final String[] args = new String[ argCount ];
+    for ( int i = 0; i < argCount; i++ )
+    {
+      args[ i ] = "--option-" + ( ( i * 2 ) % ( schemaSize - schemaSize % 2 ) );
+    }
+    return args;
+  }
+
+  private static CLOptionDescriptor createDescriptor( final int index )
+  {
+    final String name = nameFor( index );
+    if ( 0 == index )
+    {
+      return new CLOptionDescriptor( name,
+                                     CLOptionDescriptor.ARGUMENTS_REQUIRED_2 | MULTIPLE,
+                                     DEFINE_OPT,
+                                     "Define a system property" );
+    }
+    else if ( 1 == index )
+    {
+      return new CLOptionDescriptor( name, CLOptionDescriptor.ARGUMENT_REQUIRED | MULTIPLE, FILE_OPT, "The file" );
+    }
+    else if ( 2 == index )
+    {
+      return new CLOptionDescriptor( name,
+                                     CLOptionDescriptor.ARGUMENT_REQUIRED | MULTIPLE,
+                                     OUTPUT_OPT,
+                                     "The output directory" );
+    }
+    else
+    {
+      final int flag = index - 3;
+      final int id = flag < FLAG_CHARS.length() ? FLAG_CHARS.charAt( flag ) : LONG_OPTION_BASE + index;
+      return new CLOptionDescriptor( name,
+                                     CLOptionDescriptor.ARGUMENT_DISALLOWED | MULTIPLE,
+                                     id,
+                                     "A flag that enables feature number " + index + " of the tool" );
+    }
+  }
+
+  private static String nameFor( final int index )
+  {
+    switch ( index )
+    {
+      case 0:
+        return "define";
+      case 1:
+        return "file";
+      case 2:
+        return "output";
+      default:
+        return "feature-flag-" + index;
+    }
+  }
+
+  private static String valueFor( final int index, final int position )
+  {
+    return 0 == index ? "key" + position + "=value" : "path/to/file-" + position;
+  }
+
+  private static int shortFlagCount( final int schemaSize )
+  {
+    final int count = Math.min( schemaSize - 3, FLAG_CHARS.length() );
+    if ( count <= 0 )
+    {
+      throw new IllegalArgumentException( "Schema size must be greater than 3" );
+    }
+    return count;
+  }
+}
@@ -0,0 +1,81 @@
+package org.realityforge.getopt4j.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.realityforge.getopt4j.CLBatchParser;
+import org.realityforge.getopt4j.CLOptionSchema;
+import org.realityforge.getopt4j.CLParseResult;
+
+/**
+ * Measure how batch parsing scales with the number of threads.
+ * The batch is a manifest of short command lines of varying composition.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class BatchParseBenchmark
+{
+  private static final String[] MIXES = new String[]{ "short", "long", "clustered", "define", "mixed" };
+
+  @Param( { "1", "2", "4", "8" } )
+  public int threads;
+  @Param( { "100000" } )
+  public int lineCount;
+  @Param( { "100" } )
+  public int schemaSize;
+
+  private CLBatchParser _batchParser;
+  private ForkJoinPool _pool;
+  private List<String[]> _commandLines;
+
+  @Setup
+  public void setup()
+  {
+    _batchParser = new CLBatchParser( new CLOptionSchema( ArgumentCorpus.createSchema( schemaSize ) ) );
+    _pool = new ForkJoinPool( threads );
+
+    //Command lines are shared between lines of the manifest to bound the memory used by the benchmark
+    final String[][] distinct = new String[ MIXES.length * 20 ][];
+    for ( int i = 0; i < distinct.length; i++ )
+    {
+      distinct[ i ] = ArgumentCorpus.createArgs( MIXES[ i % MIXES.length ], 5 + i / MIXES.length, schemaSize );
+    }
+    _commandLines = new ArrayList<>( lineCount );
+    for ( int i = 0; i < lineCount; i++ )
+    {
+      _commandLines.add( distinct[ i % distinct.length ] );
+    }
+  }
+
+  @TearDown
+  public void tearDown()
+  {
+    _pool.shutdown();
+  }
+
+  /**
+   * Parse the manifest using the configured number of threads.
+   */
+  @Benchmark
+  public List<CLParseResult> parseBatch()
+  {
+    return _batchParser.parse( _commandLines, _pool );
+  }
+}
@@ -0,0 +1,34 @@
+package org.realityforge.getopt4j.benchmark;
+
+import java.util.List;
+import java.util.Map;
+import org.realityforge.getopt4j.CLOptionField;
+import org.realityforge.getopt4j.CLOptions;
+import org.realityforge.getopt4j.CLTextArguments;
+
+/**
+ * The options of a typical command line tool.
+ * The annotation processor generates the BenchmarkOptionsParser used by {@link GeneratedParserBenchmark}.
+ */
+@CLOptions
+public class BenchmarkOptions
+{
+  @CLOptionField( id = 'v', name = "verbose", description = "Print more output", incompatible = { 'q' } )
+  boolean verbose;
+  @CLOptionField( id = 'q', name = "quiet", description = "Print less output" )
+  boolean quiet;
+  @CLOptionField( id = 'f', name = "file", description = "The input file" )
+  String file;
+  @CLOptionField( id = 'o', name = "output", description = "The output directory" )
+  String output;
+  @CLOptionField( id = 'p', name = "port", description = "The port to listen on" )
+  int port;
+  @CLOptionField( id = 't', name = "timeout", description = "The timeout in milliseconds" )
+  long timeout;
+  @CLOptionField( id = 'I', name = "include", description = "A directory to include" )
+  List<String> includes;
+  @CLOptionField( id = 'D', name = "define", description = "Define a property" )
+  Map<String, String> defines;
+  @CLTextArguments
+  List<String> arguments;
+}
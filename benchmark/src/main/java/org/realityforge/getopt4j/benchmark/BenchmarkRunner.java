@@ -0,0 +1,29 @@
+package org.realityforge.getopt4j.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run the benchmarks with the GC profiler enabled so that the allocation rate is reported
+ * alongside throughput and average time. Any arguments are interpreted as standard JMH
+ * command line options, i.e. a regular expression selecting the benchmarks to run.
+ */
+public final class BenchmarkRunner
+{
+  private BenchmarkRunner()
+  {
+  }
+
+  public static void main( final String[] args )
+    throws RunnerException, CommandLineOptionException
+  {
+    new Runner( new OptionsBuilder()
+                  .parent( new CommandLineOptions( args ) )
+                  .addProfiler( GCProfiler.class )
+                  .build() ).run();
+  }
+}
@@ -0,0 +1,84 @@
+package org.realityforge.getopt4j.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.realityforge.getopt4j.CLArgsParser;
+import org.realityforge.getopt4j.CLOptionDescriptor;
+import org.realityforge.getopt4j.CLOptionSchema;
+
+/**
+ * Measure parsing of command lines of varying length and composition.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( { Mode.Throughput, Mode.AverageTime } )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class CLArgsParserBenchmark
+{
+  @Param( { "1", "10", "1000", "100000" } )
+  public int argCount;
+  @Param( { "10", "100", "500" } )
+  public int schemaSize;
+  @Param( { "short", "long", "clustered", "define", "mixed" } )
+  public String mix;
+
+  private CLOptionDescriptor[] _descriptors;
+  private CLOptionSchema _schema;
+  private CLArgsParser _parser;
+  private String[] _args;
+
+  @Setup
+  public void setup()
+  {
+    _descriptors = ArgumentCorpus.createSchema( schemaSize );
+    _schema = new CLOptionSchema( _descriptors );
+    _parser = new CLArgsParser( _schema, null );
+    _args = ArgumentCorpus.createArgs( mix, argCount, schemaSize );
+
+    final CLArgsParser parser = new CLArgsParser( _args, _schema );
+    if ( null != parser.getErrorString() )
+    {
+      throw new IllegalStateException( "Benchmark arguments failed to parse: " + parser.getErrorString() );
+    }
+  }
+
+  /**
+   * Parse using the descriptor array which compiles a schema for every parse.
+   */
+  @Benchmark
+  public CLArgsParser parseDescriptors()
+  {
+    return new CLArgsParser( _args, _descriptors );
+  }
+
+  /**
+   * Parse using a shared, precompiled schema.
+   */
+  @Benchmark
+  public CLArgsParser parseSchema()
+  {
+    return new CLArgsParser( _args, _schema );
+  }
+
+  /**
+   * Parse by resetting a parser that is reused across invocations.
+   */
+  @Benchmark
+  public CLArgsParser parseReset()
+  {
+    _parser.reset( _args );
+    return _parser;
+  }
+}
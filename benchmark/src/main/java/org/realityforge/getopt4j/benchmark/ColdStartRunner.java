@@ -0,0 +1,491 @@
+package org.realityforge.getopt4j.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+import org.realityforge.getopt4j.CLArgsParser;
+import org.realityforge.getopt4j.CLOption;
+import org.realityforge.getopt4j.CLOptionDescriptor;
+import org.realityforge.getopt4j.CLUtil;
+
+/**
+ * Measure the startup cost of command line tools by repeatedly launching fresh JVMs that run
+ * a {@link ColdStartTarget} scenario. For each scenario the runner reports the time from launching
+ * the JVM until the scenario prints its result, the number of classes loaded and how many of them
+ * were loaded from a class data sharing archive, and the bytes allocated by the main thread.
+ * Each scenario is measured with the default JVM configuration and, if the JVM supports dynamic
+ * archives, with an AppCDS archive created by a training run of the scenario.
+ *
+ * The results are appended to a CSV file and each result is compared with the previous result
+ * for the same scenario, mode and Java version so that startup regressions are visible.
+ */
+public final class ColdStartRunner
+{
+  private static final int HELP_OPT = 'h';
+  private static final int ITERATIONS_OPT = 'i';
+  private static final int SCENARIO_OPT = 's';
+  private static final int OUTPUT_OPT = 'o';
+  private static final int THRESHOLD_OPT = 't';
+  private static final int JAVA_OPT = 'j';
+  private static final int NO_CDS_OPT = 'n';
+  private static final CLOptionDescriptor[] OPTIONS = new CLOptionDescriptor[]
+    {
+      new CLOptionDescriptor( "help",
+                              CLOptionDescriptor.ARGUMENT_DISALLOWED,
+                              HELP_OPT,
+                              "print this message and exit" ),
+      new CLOptionDescriptor( "iterations",
+                              CLOptionDescriptor.ARGUMENT_REQUIRED,
+                              ITERATIONS_OPT,
+                              "the number of JVMs launched for each scenario and mode. Defaults to 10" ),
+      new CLOptionDescriptor( "scenario",
+                              CLOptionDescriptor.ARGUMENT_REQUIRED | CLOptionDescriptor.DUPLICATES_ALLOWED,
+                              SCENARIO_OPT,
+                              "a scenario to run. Defaults to all of " + Arrays.toString( ColdStartTarget.SCENARIOS ) ),
+      new CLOptionDescriptor( "output",
+                              CLOptionDescriptor.ARGUMENT_REQUIRED,
+                              OUTPUT_OPT,
+                              "the CSV file that results are appended to. Defaults to cold-start.csv" ),
+      new CLOptionDescriptor( "threshold",
+                              CLOptionDescriptor.ARGUMENT_REQUIRED,
+                              THRESHOLD_OPT,
+                              "the percentage increase in median time reported as a regression. Defaults to 10" ),
+      new CLOptionDescriptor( "java",
+                              CLOptionDescriptor.ARGUMENT_REQUIRED,
+                              JAVA_OPT,
+                              "the java executable to launch. Defaults to the executable running the runner" ),
+      new CLOptionDescriptor( "no-cds",
+                              CLOptionDescriptor.ARGUMENT_DISALLOWED,
+                              NO_CDS_OPT,
+                              "do not measure the scenarios with an AppCDS archive" )
+    };
+  private static final String CSV_HEADER =
+    "timestamp,java,scenario,mode,iterations,medianMillis,minMillis,classes,sharedClasses,allocatedBytes";
+
+  private final String _java;
+  private final File _archiveDirectory;
+  private final String _classPath;
+
+  private ColdStartRunner( final String java, final File archiveDirectory )
+    throws IOException
+  {
+    _java = java;
+    _archiveDirectory = archiveDirectory;
+    _classPath = createClassPath( archiveDirectory );
+  }
+
+  public static void main( final String[] args )
+    throws Exception
+  {
+    final CLArgsParser parser = new CLArgsParser( args, OPTIONS );
+    if ( null != parser.getErrorString() )
+    {
+      System.err.println( "Error: " + parser.getErrorString() );
+      System.exit( 1 );
+    }
+    if ( parser.isSet( HELP_OPT ) )
+    {
+      System.out.println( "Usage: ColdStartRunner [options]" );
+      System.out.print( CLUtil.describeOptions( OPTIONS ) );
+      return;
+    }
+
+    final int iterations =
+      parser.isSet( ITERATIONS_OPT ) ? parser.getArgumentById( ITERATIONS_OPT ).getIntArgument( 0 ) : 10;
+    if ( iterations < 1 )
+    {
+      System.err.println( "Error: At least one iteration is required" );
+      System.exit( 1 );
+    }
+    final int threshold =
+      parser.isSet( THRESHOLD_OPT ) ? parser.getArgumentById( THRESHOLD_OPT ).getIntArgument( 0 ) : 10;
+    final File output =
+      new File( parser.isSet( OUTPUT_OPT ) ? parser.getArgumentById( OUTPUT_OPT ).getArgument() : "cold-start.csv" );
+    final String java = parser.isSet( JAVA_OPT ) ?
+                        parser.getArgumentById( JAVA_OPT ).getArgument() :
+                        System.getProperty( "java.home" ) + File.separator + "bin" + File.separator + "java";
+    final List<String> scenarios = new ArrayList<>();
+    for ( final CLOption option : parser.getArgumentsById( SCENARIO_OPT ) )
+    {
+      scenarios.add( option.getArgument() );
+    }
+    if ( scenarios.isEmpty() )
+    {
+      scenarios.addAll( Arrays.asList( ColdStartTarget.SCENARIOS ) );
+    }
+
+    final File archiveDirectory = Files.createTempDirectory( "getopt4j-cds" ).toFile();
+    try
+    {
+      final ColdStartRunner runner = new ColdStartRunner( java, archiveDirectory );
+      final List<String> previous = output.exists() ?
+                                    Files.readAllLines( output.toPath(), StandardCharsets.UTF_8 ) :
+                                    Collections.<String>emptyList();
+      final String javaVersion = runner.getJavaVersion();
+      final String timestamp = Instant.now().toString();
+      final List<String> records = new ArrayList<>();
+
+      System.out.printf( "%-10s %-8s %10s %10s %8s %8s %12s  %s%n",
+                         "scenario", "mode", "median ms", "min ms", "classes", "shared", "allocated", "change" );
+      for ( final String scenario : scenarios )
+      {
+        final List<List<String>> modes = new ArrayList<>();
+        modes.add( Collections.<String>emptyList() );
+        if ( !parser.isSet( NO_CDS_OPT ) )
+        {
+          final List<String> cds = runner.createArchive( scenario );
+          if ( null == cds )
+          {
+            System.out.println( "AppCDS archives are not supported by " + java + ", skipping the appcds mode" );
+          }
+          else
+          {
+            modes.add( cds );
+          }
+        }
+        for ( final List<String> jvmArgs : modes )
+        {
+          final String mode = jvmArgs.isEmpty() ? "default" : "appcds";
+          final Result result = runner.measure( scenario, jvmArgs, iterations );
+          final String record = timestamp + "," + javaVersion + "," + scenario + "," + mode + "," + iterations + "," +
+                                String.format( Locale.ROOT, "%.2f", result.getMedianMillis() ) + "," +
+                                String.format( Locale.ROOT, "%.2f", result.getMinMillis() ) + "," +
+                                result.getClasses() + "," + result.getSharedClasses() + "," +
+                                result.getAllocatedBytes();
+          records.add( record );
+          System.out.printf( "%-10s %-8s %10.2f %10.2f %8d %8d %12d  %s%n",
+                             scenario,
+                             mode,
+                             result.getMedianMillis(),
+                             result.getMinMillis(),
+                             result.getClasses(),
+                             result.getSharedClasses(),
+                             result.getAllocatedBytes(),
+                             describeChange( previous, javaVersion, scenario, mode, result, threshold ) );
+        }
+      }
+
+      try ( final Writer writer = Files.newBufferedWriter( output.toPath(),
+                                                           StandardCharsets.UTF_8,
+                                                           StandardOpenOption.CREATE,
+                                                           StandardOpenOption.APPEND );
+            final PrintWriter printWriter = new PrintWriter( writer ) )
+      {
+        if ( previous.isEmpty() )
+        {
+          printWriter.println( CSV_HEADER );
+        }
+        for ( final String record : records )
+        {
+          printWriter.println( record );
+        }
+      }
+      System.out.println( "Results appended to " + output );
+    }
+    finally
+    {
+      deleteDirectory( archiveDirectory.toPath() );
+    }
+  }
+
+  /**
+   * Describe the change in the median time since the most recent result for the
+   * same scenario, mode and Java version.
+   */
+  private static String describeChange( final List<String> previous,
+                                        final String javaVersion,
+                                        final String scenario,
+                                        final String mode,
+                                        final Result result,
+                                        final int threshold )
+  {
+    for ( int i = previous.size() - 1; i > 0; i-- )
+    {
+      final String[] fields = previous.get( i ).split( "," );
+      if ( fields.length > 5 &&
+           fields[ 1 ].equals( javaVersion ) &&
+           fields[ 2 ].equals( scenario ) &&
+           fields[ 3 ].equals( mode ) )
+      {
+        final double before = Double.parseDouble( fields[ 5 ] );
+        final double change = ( result.getMedianMillis() - before ) * 100 / before;
+        return String.format( Locale.ROOT, "%+.1f%%", change ) + ( change > threshold ? " REGRESSION" : "" );
+      }
+    }
+    return "-";
+  }
+
+  private static void deleteDirectory( final Path directory )
+    throws IOException
+  {
+    try ( final Stream<Path> paths = Files.walk( directory ) )
+    {
+      for ( final Path path : (Iterable<Path>) paths.sorted( Comparator.reverseOrder() )::iterator )
+      {
+        Files.delete( path );
+      }
+    }
+  }
+
+  /**
+   * Return the class path of the runner with each directory replaced by a jar containing its contents.
+   * Class data sharing archives can only contain classes loaded from jars and every mode uses the same
+   * class path so that the modes are comparable.
+   */
+  private static String createClassPath( final File directory )
+    throws IOException
+  {
+    final StringBuilder sb = new StringBuilder();
+    for ( final String entry : System.getProperty( "java.class.path" ).split( File.pathSeparator ) )
+    {
+      final File file = new File( entry );
+      final String element;
+      if ( file.isDirectory() )
+      {
+        final File jar = new File( directory, "classpath-" + sb.length() + ".jar" );
+        createJar( file.toPath(), jar );
+        element = jar.getPath();
+      }
+      else
+      {
+        element = entry;
+      }
+      if ( 0 != sb.length() )
+      {
+        sb.append( File.pathSeparator );
+      }
+      sb.append( element );
+    }
+    return sb.toString();
+  }
+
+  private static void createJar( final Path directory, final File jar )
+    throws IOException
+  {
+    try ( final JarOutputStream output = new JarOutputStream( new FileOutputStream( jar ) );
+          final Stream<Path> paths = Files.walk( directory ) )
+    {
+      for ( final Path path : (Iterable<Path>) paths.filter( Files::isRegularFile )::iterator )
+      {
+        final String name = directory.relativize( path ).toString().replace( File.separatorChar, '/' );
+        output.putNextEntry( new JarEntry( name ) );
+        Files.copy( path, output );
+        output.closeEntry();
+      }
+    }
+  }
+
+  /**
+   * Create an AppCDS archive for the scenario by running it with a dynamic archive enabled.
+   *
+   * @return the JVM arguments that use the archive or null if archives are not supported
+   */
+  private List<String> createArchive( final String scenario )
+    throws IOException, InterruptedException
+  {
+    final File archive = new File( _archiveDirectory, scenario + ".jsa" );
+    final Process process = launch( Collections.singletonList( "-XX:ArchiveClassesAtExit=" + archive ), scenario );
+    drain( process );
+    if ( 0 != process.waitFor() || !archive.exists() )
+    {
+      return null;
+    }
+    else
+    {
+      return Collections.singletonList( "-XX:SharedArchiveFile=" + archive );
+    }
+  }
+
+  private Result measure( final String scenario, final List<String> jvmArgs, final int iterations )
+    throws IOException, InterruptedException
+  {
+    //An initial launch that is not measured warms the file system caches
+    runOnce( scenario, jvmArgs );
+    final Sample[] samples = new Sample[ iterations ];
+    for ( int i = 0; i < iterations; i++ )
+    {
+      samples[ i ] = runOnce( scenario, jvmArgs );
+    }
+    return new Result( samples );
+  }
+
+  /**
+   * Launch a JVM running the scenario and measure it until the result is printed.
+   */
+  private Sample runOnce( final String scenario, final List<String> jvmArgs )
+    throws IOException, InterruptedException
+  {
+    final List<String> args = new ArrayList<>( jvmArgs );
+    args.add( "-verbose:class" );
+    final long start = System.nanoTime();
+    final Process process = launch( args, scenario );
+    int classes = 0;
+    int sharedClasses = 0;
+    Sample sample = null;
+    final BufferedReader reader =
+      new BufferedReader( new InputStreamReader( process.getInputStream(), StandardCharsets.UTF_8 ) );
+    String line;
+    while ( null != ( line = reader.readLine() ) )
+    {
+      if ( null == sample )
+      {
+        if ( line.startsWith( ColdStartTarget.RESULT_MARKER ) )
+        {
+          final long elapsed = System.nanoTime() - start;
+          final long allocated = Long.parseLong( line.split( " " )[ 1 ] );
+          sample = new Sample( elapsed, classes, sharedClasses, allocated );
+        }
+        //Java 8 prints "[Loaded ..." and later versions print "[class,load]"
+        else if ( line.startsWith( "[Loaded " ) || line.contains( "[class,load]" ) )
+        {
+          classes++;
+          if ( line.contains( "shared objects file" ) )
+          {
+            sharedClasses++;
+          }
+        }
+      }
+    }
+    final int exitCode = process.waitFor();
+    if ( 0 != exitCode || null == sample )
+    {
+      throw new IllegalStateException( "Scenario " + scenario + " failed with exit code " + exitCode );
+    }
+    return sample;
+  }
+
+  private Process launch( final List<String> jvmArgs, final String scenario )
+    throws IOException
+  {
+    final List<String> command = new ArrayList<>();
+    command.add( _java );
+    command.addAll( jvmArgs );
+    command.add( "-cp" );
+    command.add( _classPath );
+    command.add( ColdStartTarget.class.getName() );
+    command.add( scenario );
+    return new ProcessBuilder( command ).redirectErrorStream( true ).start();
+  }
+
+  /**
+   * Return the version reported by the java executable so that results from different JVMs are not compared.
+   */
+  private String getJavaVersion()
+    throws IOException, InterruptedException
+  {
+    final Process process = new ProcessBuilder( _java, "-version" ).redirectErrorStream( true ).start();
+    final BufferedReader reader =
+      new BufferedReader( new InputStreamReader( process.getInputStream(), StandardCharsets.UTF_8 ) );
+    final String line = reader.readLine();
+    drain( process );
+    process.waitFor();
+    //i.e. openjdk version "17.0.9" 2023-10-17
+    final int start = null == line ? -1 : line.indexOf( '"' );
+    final int end = -1 == start ? -1 : line.indexOf( '"', start + 1 );
+    return -1 == end ? "unknown" : line.substring( start + 1, end );
+  }
+
+  private static void drain( final Process process )
+    throws IOException
+  {
+    final byte[] buffer = new byte[ 8192 ];
+    while ( -1 != process.getInputStream().read( buffer ) )
+    {
+      //discard the output
+    }
+  }
+
+  /**
+   * The measurements of a single launch.
+   */
+  private static final class Sample
+  {
+    private final long _nanos;
+    private final int _classes;
+    private final int _sharedClasses;
+    private final long _allocatedBytes;
+
+    Sample( final long nanos, final int classes, final int sharedClasses, final long allocatedBytes )
+    {
+      _nanos = nanos;
+      _classes = classes;
+      _sharedClasses = sharedClasses;
+      _allocatedBytes = allocatedBytes;
+    }
+  }
+
+  /**
+   * The measurements of a scenario summarized over several launches.
+   * The class and allocation counts rarely vary between launches so the median is reported.
+   */
+  private static final class Result
+  {
+    private final long[] _nanos;
+    private final int[] _classes;
+    private final int[] _sharedClasses;
+    private final long[] _allocatedBytes;
+
+    Result( final Sample[] samples )
+    {
+      final int count = samples.length;
+      _nanos = new long[ count ];
+      _classes = new int[ count ];
+      _sharedClasses = new int[ count ];
+      _allocatedBytes = new long[ count ];
+      for ( int i = 0; i < count; i++ )
+      {
+        _nanos[ i ] = samples[ i ]._nanos;
+        _classes[ i ] = samples[ i ]._classes;
+        _sharedClasses[ i ] = samples[ i ]._sharedClasses;
+        _allocatedBytes[ i ] = samples[ i ]._allocatedBytes;
+      }
+      Arrays.sort( _nanos );
+      Arrays.sort( _classes );
+      Arrays.sort( _sharedClasses );
+      Arrays.sort( _allocatedBytes );
+    }
+
+    double getMedianMillis()
+    {
+      return _nanos[ _nanos.length / 2 ] / 1000000D;
+    }
+
+    double getMinMillis()
+    {
+      return _nanos[ 0 ] / 1000000D;
+    }
+
+    int getClasses()
+    {
+      return _classes[ _classes.length / 2 ];
+    }
+
+    int getSharedClasses()
+    {
+      return _sharedClasses[ _sharedClasses.length / 2 ];
+    }
+
+    long getAllocatedBytes()
+    {
+      return _allocatedBytes[ _allocatedBytes.length / 2 ];
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package org.realityforge.getopt4j.benchmark;
+
+import java.lang.management.ManagementFactory;
+import org.realityforge.getopt4j.CLArgsParser;
+import org.realityforge.getopt4j.CLArgumentException;
+import org.realityforge.getopt4j.CLOptionDescriptor;
+import org.realityforge.getopt4j.CLUtil;
+
+/**
+ * The program launched in a fresh JVM by {@link ColdStartRunner}. The first argument selects a
+ * scenario that performs the work a command line tool does before it can act on its arguments.
+ * Once the scenario completes the program prints a line starting with {@link #RESULT_MARKER}
+ * followed by the number of bytes allocated by the main thread.
+ */
+public final class ColdStartTarget
+{
+  /**
+   * Prefix of the line printed when the scenario has produced its result.
+   */
+  static final String RESULT_MARKER = "COLD_START_RESULT";
+  /**
+   * The scenarios that may be run.
+   */
+  static final String[] SCENARIOS = { "baseline", "basic", "schema", "generated", "usage" };
+  private static final int SCHEMA_SIZE = 100;
+  private static final CLOptionDescriptor[] BASIC_OPTIONS = new CLOptionDescriptor[]
+    {
+      new CLOptionDescriptor( "help",
+                              CLOptionDescriptor.ARGUMENT_DISALLOWED,
+                              'h',
+                              "print this message and exit" ),
+      new CLOptionDescriptor( "version",
+                              CLOptionDescriptor.ARGUMENT_DISALLOWED,
+                              'v',
+                              "print the version information and exit" )
+    };
+
+  private ColdStartTarget()
+  {
+  }
+
+  public static void main( final String[] args )
+    throws CLArgumentException
+  {
+    final String scenario = args[ 0 ];
+    final Object result;
+    if ( "baseline".equals( scenario ) )
+    {
+      //Measures the cost of starting the JVM and reporting the result
+      result = scenario;
+    }
+    else if ( "basic".equals( scenario ) )
+    {
+      //The schema and command line of the BasicCLI example
+      result = new CLArgsParser( new String[]{ "--version" }, BASIC_OPTIONS ).getArguments();
+    }
+    else if ( "schema".equals( scenario ) )
+    {
+      final CLOptionDescriptor[] descriptors = ArgumentCorpus.createSchema( SCHEMA_SIZE );
+      result = new CLArgsParser( ArgumentCorpus.mixed( 12, SCHEMA_SIZE ), descriptors ).getArguments();
+    }
+    else if ( "generated".equals( scenario ) )
+    {
+      final BenchmarkOptions options = new BenchmarkOptions();
+      result = BenchmarkOptionsParser.parse( new String[]{ "-v", "--file=input.txt", "-p", "8080", "first" },
+                                             options );
+    }
+    else if ( "usage".equals( scenario ) )
+    {
+      result = CLUtil.describeOptions( ArgumentCorpus.createSchema( SCHEMA_SIZE ) );
+    }
+    else
+    {
+      throw new IllegalArgumentException( "Unknown scenario " + scenario );
+    }
+
+    //Read the allocation counter before any other output so that reporting adds as little as possible
+    final long allocated = getAllocatedBytes();
+    System.out.println( RESULT_MARKER + " " + allocated + " " + System.identityHashCode( result ) );
+  }
+
+  /**
+   * Return the bytes allocated by the current thread, or -1 if the JVM does not report allocation.
+   */
+  private static long getAllocatedBytes()
+  {
+    final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if ( bean instanceof com.sun.management.ThreadMXBean )
+    {
+      return ( (com.sun.management.ThreadMXBean) bean ).getThreadAllocatedBytes( Thread.currentThread().getId() );
+    }
+    else
+    {
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package org.realityforge.getopt4j.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.realityforge.getopt4j.CLOptionDescriptor;
+import org.realityforge.getopt4j.CLOptionSchema;
+import org.realityforge.getopt4j.CLUtil;
+
+/**
+ * Measure rendering of the usage text for schemas of varying size.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( { Mode.Throughput, Mode.AverageTime } )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class DescribeOptionsBenchmark
+{
+  @Param( { "10", "100", "1000" } )
+  public int schemaSize;
+
+  private CLOptionDescriptor[] _descriptors;
+  private CLOptionSchema _schema;
+  private final StringBuilder _output = new StringBuilder();
+
+  @Setup
+  public void setup()
+  {
+    _descriptors = ArgumentCorpus.createSchema( schemaSize );
+    _schema = new CLOptionSchema( _descriptors );
+  }
+
+  @Benchmark
+  public StringBuffer describeOptions()
+  {
+    return CLUtil.describeOptions( _descriptors );
+  }
+
+  @Benchmark
+  public StringBuilder describeSchemaOptions()
+    throws IOException
+  {
+    _output.setLength( 0 );
+    CLUtil.describeOptions( _schema, 80, _output );
+    return _output;
+  }
+}
@@ -0,0 +1,85 @@
+package org.realityforge.getopt4j.benchmark;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.realityforge.getopt4j.CLArgsParser;
+import org.realityforge.getopt4j.CLArgumentException;
+import org.realityforge.getopt4j.CLOption;
+import org.realityforge.getopt4j.CLOptionSchema;
+
+/**
+ * Compare the parser generated for {@link BenchmarkOptions} with a {@link CLArgsParser} that
+ * parses the same command line and retrieves the same options.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( { Mode.Throughput, Mode.AverageTime } )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class GeneratedParserBenchmark
+{
+  private static final String[] ARGS = {
+    "-v", "--file=input.txt", "-o", "build", "--port", "8080", "-t30000", "-Isrc", "--include", "lib",
+    "-Dname=value", "--define=user=admin", "first", "second" };
+
+  private CLOptionSchema _schema;
+  private CLArgsParser _parser;
+
+  @Setup
+  public void setup()
+  {
+    _schema = BenchmarkOptionsParser.getSchema();
+    _parser = new CLArgsParser( _schema, null );
+  }
+
+  @Benchmark
+  public BenchmarkOptions generatedParser()
+    throws CLArgumentException
+  {
+    final BenchmarkOptions options = new BenchmarkOptions();
+    BenchmarkOptionsParser.parse( ARGS, options );
+    return options;
+  }
+
+  @Benchmark
+  public BenchmarkOptions interpretedParser()
+    throws CLArgumentException
+  {
+    _parser.reset( ARGS );
+    final BenchmarkOptions options = new BenchmarkOptions();
+    options.verbose = _parser.isSet( 'v' );
+    options.quiet = _parser.isSet( 'q' );
+    options.file = _parser.getArgumentById( 'f' ).getArgument();
+    options.output = _parser.getArgumentById( 'o' ).getArgument();
+    options.port = _parser.getArgumentById( 'p' ).getIntArgument( 0 );
+    options.timeout = _parser.getArgumentById( 't' ).getLongArgument( 0 );
+    options.includes = new ArrayList<>();
+    for ( final CLOption option : _parser.getArgumentsById( 'I' ) )
+    {
+      options.includes.add( option.getArgument() );
+    }
+    options.defines = new LinkedHashMap<>();
+    for ( final CLOption option : _parser.getArgumentsById( 'D' ) )
+    {
+      options.defines.put( option.getArgument( 0 ), option.getArgument( 1 ) );
+    }
+    options.arguments = new ArrayList<>();
+    for ( final CLOption option : _parser.getArgumentsById( CLOption.TEXT_ARGUMENT ) )
+    {
+      options.arguments.add( option.getArgument() );
+    }
+    return options;
+  }
+}
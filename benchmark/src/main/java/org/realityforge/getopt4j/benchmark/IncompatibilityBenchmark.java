@@ -0,0 +1,67 @@
+package org.realityforge.getopt4j.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.realityforge.getopt4j.CLArgsParser;
+import org.realityforge.getopt4j.CLOptionSchema;
+
+/**
+ * Measure the cost of duplicate and incompatibility checking.
+ * The schema declares half of the options as incompatible with each option and the
+ * command line repeats compatible options so every parse checks every option.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( { Mode.Throughput, Mode.AverageTime } )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class IncompatibilityBenchmark
+{
+  @Param( { "10", "1000", "10000" } )
+  public int argCount;
+  @Param( { "10", "100", "500" } )
+  public int schemaSize;
+
+  private CLOptionSchema _schema;
+  private CLOptionSchema _defineSchema;
+  private String[] _args;
+  private String[] _defines;
+
+  @Setup
+  public void setup()
+  {
+    _schema = new CLOptionSchema( ArgumentCorpus.createIncompatibleSchema( schemaSize ) );
+    _args = ArgumentCorpus.incompatibilityHeavy( argCount, schemaSize );
+    _defineSchema = new CLOptionSchema( ArgumentCorpus.createSchema( schemaSize ) );
+    _defines = ArgumentCorpus.jvmDefines( argCount );
+  }
+
+  /**
+   * Parse options that each declare many incompatible options.
+   */
+  @Benchmark
+  public CLArgsParser incompatibleOptions()
+  {
+    return new CLArgsParser( _args, _schema );
+  }
+
+  /**
+   * Parse many repetitions of an option that allows duplicates.
+   */
+  @Benchmark
+  public CLArgsParser duplicateOptions()
+  {
+    return new CLArgsParser( _defines, _defineSchema );
+  }
+}
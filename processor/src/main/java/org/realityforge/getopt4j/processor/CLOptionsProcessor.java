@@ -0,0 +1,329 @@
+package org.realityforge.getopt4j.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import org.realityforge.getopt4j.CLOption;
+import org.realityforge.getopt4j.CLOptionDescriptor;
+import org.realityforge.getopt4j.CLOptionField;
+import org.realityforge.getopt4j.CLOptions;
+import org.realityforge.getopt4j.CLTextArguments;
+
+/**
+ * Annotation processor that generates a parser for each class annotated with {@link CLOptions}.
+ *
+ * @see ParserEmitter
+ */
+@SupportedAnnotationTypes( { "org.realityforge.getopt4j.CLOptions",
+                             "org.realityforge.getopt4j.CLOptionField",
+                             "org.realityforge.getopt4j.CLTextArguments" } )
+public final class CLOptionsProcessor
+  extends AbstractProcessor
+{
+  private static final int MODE_FLAGS = CLOptionDescriptor.ARGUMENT_REQUIRED |
+                                        CLOptionDescriptor.ARGUMENT_OPTIONAL |
+                                        CLOptionDescriptor.ARGUMENT_DISALLOWED |
+                                        CLOptionDescriptor.ARGUMENTS_REQUIRED_2;
+
+  @Override
+  public SourceVersion getSupportedSourceVersion()
+  {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process( final Set<? extends TypeElement> annotations, final RoundEnvironment env )
+  {
+    for ( final Element element : env.getElementsAnnotatedWith( CLOptions.class ) )
+    {
+      try
+      {
+        processOptions( (TypeElement) element );
+      }
+      catch ( final InvalidOptionsException ioe )
+      {
+        processingEnv.getMessager().printMessage( Diagnostic.Kind.ERROR, ioe.getMessage(), ioe.getElement() );
+      }
+      catch ( final IOException ioe )
+      {
+        processingEnv.getMessager()
+          .printMessage( Diagnostic.Kind.ERROR, "Unable to write parser: " + ioe.getMessage(), element );
+      }
+    }
+    return true;
+  }
+
+  private void processOptions( final TypeElement type )
+    throws InvalidOptionsException, IOException
+  {
+    if ( ElementKind.CLASS != type.getKind() )
+    {
+      throw new InvalidOptionsException( "@CLOptions must annotate a class", type );
+    }
+    for ( Element element = type; element instanceof TypeElement; element = element.getEnclosingElement() )
+    {
+      if ( element.getModifiers().contains( Modifier.PRIVATE ) )
+      {
+        throw new InvalidOptionsException( "@CLOptions must not annotate a private class", type );
+      }
+    }
+
+    final List<OptionModel> options = new ArrayList<>();
+    final Set<Integer> ids = new HashSet<>();
+    final Set<String> names = new HashSet<>();
+    String textField = null;
+    for ( final VariableElement field : ElementFilter.fieldsIn( type.getEnclosedElements() ) )
+    {
+      final CLOptionField option = field.getAnnotation( CLOptionField.class );
+      final boolean isText = null != field.getAnnotation( CLTextArguments.class );
+      if ( null == option && !isText )
+      {
+        continue;
+      }
+      checkField( field );
+      if ( null != option && isText )
+      {
+        throw new InvalidOptionsException( "@CLOptionField and @CLTextArguments must not annotate the same field",
+                                           field );
+      }
+      else if ( isText )
+      {
+        if ( null != textField )
+        {
+          throw new InvalidOptionsException( "@CLTextArguments must only annotate one field", field );
+        }
+        else if ( OptionModel.Kind.LIST != getKind( field ) )
+        {
+          throw new InvalidOptionsException( "@CLTextArguments must annotate a List<String> field", field );
+        }
+        textField = field.getSimpleName().toString();
+      }
+      else
+      {
+        final OptionModel model = createOption( field, option, options.size() );
+        if ( !ids.add( model.getId() ) )
+        {
+          throw new InvalidOptionsException( "Duplicate option id " + model.getId(), field );
+        }
+        else if ( null != model.getName() && !names.add( model.getName() ) )
+        {
+          throw new InvalidOptionsException( "Duplicate option name " + model.getName(), field );
+        }
+        options.add( model );
+      }
+    }
+
+    final PackageElement packageElement = processingEnv.getElementUtils().getPackageOf( type );
+    final String packageName = packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+    final String parserName = getParserName( type );
+    final String qualifiedName = packageName.isEmpty() ? parserName : packageName + "." + parserName;
+    final ParserEmitter emitter =
+      new ParserEmitter( packageName, parserName, type.getQualifiedName().toString(), options, textField );
+    try ( final Writer writer = processingEnv.getFiler().createSourceFile( qualifiedName, type ).openWriter() )
+    {
+      writer.write( emitter.emit() );
+    }
+  }
+
+  private OptionModel createOption( final VariableElement field, final CLOptionField option, final int index )
+    throws InvalidOptionsException
+  {
+    final OptionModel.Kind kind = getKind( field );
+    if ( null == kind )
+    {
+      throw new InvalidOptionsException( "@CLOptionField must annotate a boolean, String, int, long, " +
+                                         "List<String> or Map<String, String> field", field );
+    }
+    final int id = option.id();
+    if ( CLOption.TEXT_ARGUMENT == id )
+    {
+      throw new InvalidOptionsException( "@CLOptionField must not use the id of text arguments", field );
+    }
+
+    int flags = option.flags();
+    if ( 0 == ( flags & MODE_FLAGS ) )
+    {
+      flags |= getDefaultMode( kind );
+      if ( OptionModel.Kind.LIST == kind || OptionModel.Kind.MAP == kind )
+      {
+        flags |= CLOptionDescriptor.DUPLICATES_ALLOWED;
+      }
+    }
+    final int mode = flags & MODE_FLAGS;
+    if ( Integer.bitCount( mode ) > 1 )
+    {
+      throw new InvalidOptionsException( "@CLOptionField must not specify multiple argument flags", field );
+    }
+    else if ( !isModeSupported( kind, mode ) )
+    {
+      throw new InvalidOptionsException( "@CLOptionField specifies argument flags that are not supported by " +
+                                         "the type of the field", field );
+    }
+
+    final int[] incompatible;
+    if ( ( flags & CLOptionDescriptor.DUPLICATES_ALLOWED ) == CLOptionDescriptor.DUPLICATES_ALLOWED )
+    {
+      incompatible = option.incompatible();
+    }
+    else
+    {
+      //Options are incompatible with themselves unless duplicates are allowed
+      incompatible = new int[ option.incompatible().length + 1 ];
+      System.arraycopy( option.incompatible(), 0, incompatible, 1, incompatible.length - 1 );
+      incompatible[ 0 ] = id;
+    }
+    return new OptionModel( field.getSimpleName().toString(),
+                            kind,
+                            index,
+                            id,
+                            option.name().isEmpty() ? null : option.name(),
+                            flags,
+                            option.description().isEmpty() ? null : option.description(),
+                            incompatible );
+  }
+
+  private void checkField( final VariableElement field )
+    throws InvalidOptionsException
+  {
+    final Set<Modifier> modifiers = field.getModifiers();
+    if ( modifiers.contains( Modifier.PRIVATE ) ||
+         modifiers.contains( Modifier.STATIC ) ||
+         modifiers.contains( Modifier.FINAL ) )
+    {
+      throw new InvalidOptionsException( "Option fields must not be private, static or final", field );
+    }
+  }
+
+  /**
+   * Return the kind of value assigned to the field, or null if the type of the field is not supported.
+   */
+  private OptionModel.Kind getKind( final VariableElement field )
+  {
+    final TypeMirror type = field.asType();
+    if ( TypeKind.BOOLEAN == type.getKind() )
+    {
+      return OptionModel.Kind.BOOLEAN;
+    }
+    else if ( TypeKind.INT == type.getKind() )
+    {
+      return OptionModel.Kind.INT;
+    }
+    else if ( TypeKind.LONG == type.getKind() )
+    {
+      return OptionModel.Kind.LONG;
+    }
+    else if ( TypeKind.DECLARED == type.getKind() )
+    {
+      final Types types = processingEnv.getTypeUtils();
+      final TypeMirror string = getType( "java.lang.String" );
+      if ( types.isSameType( type, string ) )
+      {
+        return OptionModel.Kind.STRING;
+      }
+      final List<? extends TypeMirror> arguments = ( (DeclaredType) type ).getTypeArguments();
+      final TypeMirror erasure = types.erasure( type );
+      if ( types.isSameType( erasure, types.erasure( getType( "java.util.List" ) ) ) &&
+           1 == arguments.size() &&
+           types.isSameType( arguments.get( 0 ), string ) )
+      {
+        return OptionModel.Kind.LIST;
+      }
+      else if ( types.isSameType( erasure, types.erasure( getType( "java.util.Map" ) ) ) &&
+                2 == arguments.size() &&
+                types.isSameType( arguments.get( 0 ), string ) &&
+                types.isSameType( arguments.get( 1 ), string ) )
+      {
+        return OptionModel.Kind.MAP;
+      }
+    }
+    return null;
+  }
+
+  private TypeMirror getType( final String name )
+  {
+    return processingEnv.getElementUtils().getTypeElement( name ).asType();
+  }
+
+  private static int getDefaultMode( final OptionModel.Kind kind )
+  {
+    switch ( kind )
+    {
+      case BOOLEAN:
+        return CLOptionDescriptor.ARGUMENT_DISALLOWED;
+      case MAP:
+        return CLOptionDescriptor.ARGUMENTS_REQUIRED_2;
+      default:
+        return CLOptionDescriptor.ARGUMENT_REQUIRED;
+    }
+  }
+
+  private static boolean isModeSupported( final OptionModel.Kind kind, final int mode )
+  {
+    switch ( kind )
+    {
+      case BOOLEAN:
+        return CLOptionDescriptor.ARGUMENT_DISALLOWED == mode || CLOptionDescriptor.ARGUMENT_OPTIONAL == mode;
+      case MAP:
+        return CLOptionDescriptor.ARGUMENTS_REQUIRED_2 == mode;
+      default:
+        return CLOptionDescriptor.ARGUMENT_REQUIRED == mode || CLOptionDescriptor.ARGUMENT_OPTIONAL == mode;
+    }
+  }
+
+  /**
+   * Return the simple name of the parser. Parsers of nested classes include the names of the
+   * enclosing classes, i.e. "Outer_InnerParser".
+   */
+  private static String getParserName( final TypeElement type )
+  {
+    final StringBuilder sb = new StringBuilder( type.getSimpleName() );
+    for ( Element element = type.getEnclosingElement();
+          element instanceof TypeElement;
+          element = element.getEnclosingElement() )
+    {
+      sb.insert( 0, '_' ).insert( 0, element.getSimpleName() );
+    }
+    return sb.append( "Parser" ).toString();
+  }
+
+  /**
+   * Exception raised when an annotated element is invalid.
+   */
+  private static final class InvalidOptionsException
+    extends Exception
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final transient Element _element;
+
+    InvalidOptionsException( final String message, final Element element )
+    {
+      super( message );
+      _element = element;
+    }
+
+    Element getElement()
+    {
+      return _element;
+    }
+  }
+}
@@ -0,0 +1,134 @@
+package org.realityforge.getopt4j.processor;
+
+import org.realityforge.getopt4j.CLOptionDescriptor;
+
+/**
+ * The option described by a field annotated with {@link org.realityforge.getopt4j.CLOptionField}.
+ */
+final class OptionModel
+{
+  /**
+   * The kinds of field that an option may be assigned to.
+   */
+  enum Kind
+  {
+    BOOLEAN,
+    STRING,
+    INT,
+    LONG,
+    LIST,
+    MAP
+  }
+
+  private final String _fieldName;
+  private final Kind _kind;
+  private final int _index;
+  private final int _id;
+  private final String _name;
+  private final int _flags;
+  private final String _description;
+  private final int[] _incompatible;
+
+  OptionModel( final String fieldName,
+               final Kind kind,
+               final int index,
+               final int id,
+               final String name,
+               final int flags,
+               final String description,
+               final int[] incompatible )
+  {
+    _fieldName = fieldName;
+    _kind = kind;
+    _index = index;
+    _id = id;
+    _name = name;
+    _flags = flags;
+    _description = description;
+    _incompatible = incompatible;
+  }
+
+  String getFieldName()
+  {
+    return _fieldName;
+  }
+
+  Kind getKind()
+  {
+    return _kind;
+  }
+
+  /**
+   * Return the index of the option in the descriptor array of the generated parser.
+   *
+   * @return the index of the option
+   */
+  int getIndex()
+  {
+    return _index;
+  }
+
+  int getId()
+  {
+    return _id;
+  }
+
+  /**
+   * Return the long form of the option.
+   *
+   * @return the long form of the option or null if it has none
+   */
+  String getName()
+  {
+    return _name;
+  }
+
+  int getFlags()
+  {
+    return _flags;
+  }
+
+  /**
+   * Return the description of the option.
+   *
+   * @return the description of the option or null if it has none
+   */
+  String getDescription()
+  {
+    return _description;
+  }
+
+  /**
+   * Return the ids of the options that are incompatible with this option, including its own id
+   * unless duplicates are allowed.
+   *
+   * @return the ids of the incompatible options
+   */
+  int[] getIncompatible()
+  {
+    return _incompatible;
+  }
+
+  /**
+   * Return true if the id of the option is a character that may be used as the short form of the option.
+   *
+   * @return true if the option has a short form
+   */
+  boolean hasShortForm()
+  {
+    return _id > 0 && _id <= Character.MAX_VALUE;
+  }
+
+  /**
+   * Return the argument mode of the option.
+   *
+   * @return one of the argument flags of {@link CLOptionDescriptor}
+   */
+  int getMode()
+  {
+    return _flags & ( CLOptionDescriptor.ARGUMENT_REQUIRED |
+                      CLOptionDescriptor.ARGUMENT_OPTIONAL |
+                      CLOptionDescriptor.ARGUMENT_DISALLOWED |
+                      CLOptionDescriptor.ARGUMENTS_REQUIRED_2 );
+  }
+}
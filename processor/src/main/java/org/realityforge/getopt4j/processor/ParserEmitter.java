@@ -0,0 +1,593 @@
+package org.realityforge.getopt4j.processor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.realityforge.getopt4j.CLOption;
+import org.realityforge.getopt4j.CLOptionDescriptor;
+
+/**
+ * Emits the source of the parser for a class annotated with {@link org.realityforge.getopt4j.CLOptions}.
+ *
+ * The generated parser uses a {@link org.realityforge.getopt4j.CLArgumentCursor} to split the args in the
+ * same manner as {@link org.realityforge.getopt4j.CLArgsParser} and resolves each option to the index of
+ * its descriptor using a <code>switch</code> on the option character or the hash code of the option name.
+ * The conflicts of each option are emitted as constant bitmasks that are tested against the options
+ * already seen, with text arguments taking the index after the last option. Any error causes the args to be parsed again by a <code>CLArgsParser</code> so that
+ * the error is reported identically.
+ */
+final class ParserEmitter
+{
+  private final String _packageName;
+  private final String _parserName;
+  private final String _optionsType;
+  private final List<OptionModel> _options;
+  private final String _textField;
+  private final StringBuilder _sb = new StringBuilder();
+  private int _indent;
+
+  ParserEmitter( final String packageName,
+                 final String parserName,
+                 final String optionsType,
+                 final List<OptionModel> options,
+                 final String textField )
+  {
+    _packageName = packageName;
+    _parserName = parserName;
+    _optionsType = optionsType;
+    _options = options;
+    _textField = textField;
+  }
+
+  /**
+   * Return the source of the parser.
+   *
+   * @return the source of the parser
+   */
+  String emit()
+  {
+    final boolean hasConversions = hasKind( OptionModel.Kind.INT ) || hasKind( OptionModel.Kind.LONG );
+    line( "// Generated by the getopt4j annotation processor. Do not edit." );
+    if ( !_packageName.isEmpty() )
+    {
+      line( "package " + _packageName + ";" );
+    }
+    line( "" );
+    if ( null != _textField || hasKind( OptionModel.Kind.LIST ) )
+    {
+      line( "import java.util.ArrayList;" );
+    }
+    if ( hasKind( OptionModel.Kind.MAP ) )
+    {
+      line( "import java.util.LinkedHashMap;" );
+    }
+    line( "import org.realityforge.getopt4j.CLArgsParser;" );
+    line( "import org.realityforge.getopt4j.CLArgumentCursor;" );
+    if ( hasConversions )
+    {
+      line( "import org.realityforge.getopt4j.CLArgumentException;" );
+      line( "import org.realityforge.getopt4j.CLOption;" );
+    }
+    line( "import org.realityforge.getopt4j.CLOptionDescriptor;" );
+    line( "import org.realityforge.getopt4j.CLOptionSchema;" );
+    line( "import org.realityforge.getopt4j.CLParseError;" );
+    line( "" );
+    line( "/**" );
+    line( " * Parser for the options of {@link " + _optionsType + "}." );
+    line( " */" );
+    line( "public final class " + _parserName );
+    open();
+    emitDescriptors();
+    line( "" );
+    line( "private " + _parserName + "()" );
+    open();
+    close();
+    line( "" );
+    line( "/**" );
+    line( " * Retrieve the descriptors of the options." );
+    line( " *" );
+    line( " * @return a copy of the option descriptors" );
+    line( " */" );
+    line( "public static CLOptionDescriptor[] getDescriptors()" );
+    open();
+    line( "return DESCRIPTORS.clone();" );
+    close();
+    line( "" );
+    line( "/**" );
+    line( " * Retrieve the schema of the options. The schema is created the first time that it is retrieved." );
+    line( " *" );
+    line( " * @return the schema" );
+    line( " */" );
+    line( "public static CLOptionSchema getSchema()" );
+    open();
+    line( "return SchemaHolder.SCHEMA;" );
+    close();
+    line( "" );
+    emitParse( hasConversions );
+    line( "" );
+    line( "/**" );
+    line( " * Parse the args using a CLArgsParser to describe the error that caused the parse to fail." );
+    line( " */" );
+    line( "private static CLParseError fail( final String[] args )" );
+    open();
+    line( "final CLParseError error = CLArgsParser.parse( args, getSchema() ).getError();" );
+    line( "if ( null == error )" );
+    open();
+    line( "throw new IllegalStateException( \"The generated parser rejected args accepted by CLArgsParser\" );" );
+    close();
+    line( "return error;" );
+    close();
+    if ( hasConversions )
+    {
+      line( "" );
+      line( "private static CLOption option( final int index, final String argument )" );
+      open();
+      line( "final CLOption option = new CLOption( DESCRIPTORS[ index ] );" );
+      line( "if ( null != argument )" );
+      open();
+      line( "option.addArgument( argument );" );
+      close();
+      line( "return option;" );
+      close();
+    }
+    line( "" );
+    line( "private static final class SchemaHolder" );
+    open();
+    line( "private static final CLOptionSchema SCHEMA = new CLOptionSchema( DESCRIPTORS );" );
+    close();
+    close();
+    return _sb.toString();
+  }
+
+  private void emitDescriptors()
+  {
+    line( "private static final CLOptionDescriptor[] DESCRIPTORS = new CLOptionDescriptor[]" );
+    line( "  {" );
+    for ( final OptionModel option : _options )
+    {
+      final StringBuilder incompatible = new StringBuilder();
+      for ( final int id : option.getIncompatible() )
+      {
+        incompatible.append( 0 == incompatible.length() ? " " : ", " ).append( id );
+      }
+      line( "    new CLOptionDescriptor( " + literal( option.getName() ) + ", " +
+            option.getFlags() + ", " +
+            option.getId() + ", " +
+            literal( option.getDescription() ) + ", " +
+            "new int[]{" + incompatible + ( 0 == incompatible.length() ? "" : " " ) + "} )," );
+    }
+    line( "  };" );
+  }
+
+  private void emitParse( final boolean hasConversions )
+  {
+    line( "/**" );
+    line( " * Parse the args and assign the options that occur to the fields of the options." );
+    line( " * The fields are only modified if the args are parsed successfully." );
+    line( " *" );
+    line( " * @param args    the args to parse" );
+    line( " * @param options the object that is assigned the options" );
+    line( " * @return null if the args were parsed successfully, otherwise the error" );
+    if ( hasConversions )
+    {
+      line( " * @throws CLArgumentException if an argument can not be converted to the type of its field" );
+    }
+    line( " */" );
+    line( "public static CLParseError parse( final String[] args, final " + _optionsType + " options )" );
+    if ( hasConversions )
+    {
+      line( "  throws CLArgumentException" );
+    }
+    open();
+    line( "final CLArgumentCursor cursor = new CLArgumentCursor( args );" );
+    if ( null != _textField )
+    {
+      line( "final ArrayList<String> text = new ArrayList<>();" );
+    }
+    for ( int i = 0; i < wordCount(); i++ )
+    {
+      line( "long seen" + i + " = 0L;" );
+    }
+    for ( final OptionModel option : _options )
+    {
+      final String type = getValueType( option );
+      if ( null != type )
+      {
+        line( type + " value" + option.getIndex() + " = null;" );
+      }
+    }
+    line( "int token;" );
+    line( "while ( CLArgumentCursor.END != ( token = cursor.next() ) )" );
+    open();
+    line( "final int index;" );
+    line( "if ( CLArgumentCursor.SHORT_OPTION == token )" );
+    open();
+    emitShortOptionSwitch();
+    close();
+    line( "else if ( CLArgumentCursor.LONG_OPTION == token )" );
+    open();
+    emitLongOptionSwitch();
+    close();
+    line( "else if ( CLArgumentCursor.TEXT == token )" );
+    open();
+    final long[] textConflicts = getConflicts( CLOption.TEXT_ARGUMENT, new int[ 0 ] );
+    if ( hasAny( textConflicts ) )
+    {
+      emitConflictChecks( textConflicts );
+      line( "seen" + ( textIndex() >>> 6 ) + " |= " + hex( 1L << textIndex() ) + ";" );
+    }
+    if ( null != _textField )
+    {
+      line( "text.add( cursor.getText() );" );
+    }
+    line( "continue;" );
+    close();
+    line( "else" );
+    open();
+    line( "return fail( args );" );
+    close();
+    line( "" );
+    line( "switch ( index )" );
+    open();
+    for ( final OptionModel option : _options )
+    {
+      emitOptionCase( option );
+    }
+    line( "default:" );
+    line( "  return fail( args );" );
+    close();
+    close();
+    line( "" );
+    emitAssignments();
+    line( "return null;" );
+    close();
+  }
+
+  private void emitShortOptionSwitch()
+  {
+    line( "switch ( cursor.getOptionChar() )" );
+    open();
+    for ( final OptionModel option : _options )
+    {
+      if ( option.hasShortForm() )
+      {
+        line( "case " + charLiteral( (char) option.getId() ) + ":" );
+        line( "  index = " + option.getIndex() + ";" );
+        line( "  break;" );
+      }
+    }
+    line( "default:" );
+    line( "  index = -1;" );
+    close();
+  }
+
+  private void emitLongOptionSwitch()
+  {
+    //Names with the same hash code are tested in turn within a single case
+    final Map<Integer, List<OptionModel>> hashes = new LinkedHashMap<>();
+    for ( final OptionModel option : _options )
+    {
+      if ( null != option.getName() )
+      {
+        hashes.computeIfAbsent( option.getName().hashCode(), h -> new ArrayList<>() ).add( option );
+      }
+    }
+    line( "switch ( cursor.getNameHashCode() )" );
+    open();
+    for ( final Map.Entry<Integer, List<OptionModel>> entry : hashes.entrySet() )
+    {
+      final StringBuilder test = new StringBuilder();
+      for ( final OptionModel option : entry.getValue() )
+      {
+        test.append( "cursor.isName( " )
+          .append( literal( option.getName() ) )
+          .append( " ) ? " )
+          .append( option.getIndex() )
+          .append( " : " );
+      }
+      line( "case " + entry.getKey() + ":" );
+      line( "  index = " + test + "-1;" );
+      line( "  break;" );
+    }
+    line( "default:" );
+    line( "  index = -1;" );
+    close();
+  }
+
+  private void emitOptionCase( final OptionModel option )
+  {
+    final int index = option.getIndex();
+    line( "case " + index + ":" );
+    open();
+    emitConflictChecks( getConflicts( option.getId(), option.getIncompatible() ) );
+    line( "seen" + ( index >>> 6 ) + " |= " + hex( 1L << index ) + ";" );
+
+    final String value = "value" + index;
+    final OptionModel.Kind kind = option.getKind();
+    final boolean isList = OptionModel.Kind.LIST == kind;
+    final boolean isMap = OptionModel.Kind.MAP == kind;
+    if ( isList || isMap )
+    {
+      line( "if ( null == " + value + " )" );
+      open();
+      line( value + " = new " + ( isList ? "ArrayList" : "LinkedHashMap" ) + "<>();" );
+      close();
+    }
+    switch ( option.getMode() )
+    {
+      case CLOptionDescriptor.ARGUMENT_REQUIRED:
+        line( "if ( !cursor.requiredArgument() )" );
+        open();
+        line( "return fail( args );" );
+        close();
+        if ( isList )
+        {
+          line( value + ".add( cursor.getArgument() );" );
+        }
+        else
+        {
+          line( value + " = cursor.getArgument();" );
+        }
+        break;
+      case CLOptionDescriptor.ARGUMENT_OPTIONAL:
+        if ( isList )
+        {
+          line( "final String argument = cursor.optionalArgument();" );
+          line( "if ( null != argument )" );
+          open();
+          line( value + ".add( argument );" );
+          close();
+        }
+        else if ( OptionModel.Kind.BOOLEAN != kind )
+        {
+          line( value + " = cursor.optionalArgument();" );
+        }
+        else
+        {
+          line( "cursor.optionalArgument();" );
+        }
+        break;
+      case CLOptionDescriptor.ARGUMENTS_REQUIRED_2:
+        line( "if ( !cursor.requiredArguments() )" );
+        open();
+        line( "return fail( args );" );
+        close();
+        line( value + ".put( cursor.getArgument(), cursor.getSecondArgument() );" );
+        break;
+      default:
+        //The option does not accept arguments
+    }
+    line( "break;" );
+    close();
+  }
+
+  private void emitAssignments()
+  {
+    //Convert the arguments before assigning any field so that a conversion error leaves the fields unmodified
+    for ( final OptionModel option : _options )
+    {
+      final OptionModel.Kind kind = option.getKind();
+      if ( OptionModel.Kind.INT == kind || OptionModel.Kind.LONG == kind )
+      {
+        final boolean isInt = OptionModel.Kind.INT == kind;
+        final int index = option.getIndex();
+        line( "final " + ( isInt ? "int" : "long" ) + " converted" + index + " = " + isSeen( index ) + " ? " +
+              "option( " + index + ", value" + index + " )." +
+              ( isInt ? "getIntArgument" : "getLongArgument" ) + "( 0 ) : 0;" );
+      }
+    }
+    for ( final OptionModel option : _options )
+    {
+      final int index = option.getIndex();
+      final String field = "options." + option.getFieldName();
+      line( "if ( " + isSeen( index ) + " )" );
+      open();
+      switch ( option.getKind() )
+      {
+        case BOOLEAN:
+          line( field + " = true;" );
+          break;
+        case INT:
+        case LONG:
+          line( field + " = converted" + index + ";" );
+          break;
+        default:
+          line( field + " = value" + index + ";" );
+      }
+      close();
+    }
+    if ( null != _textField )
+    {
+      line( "options." + _textField + " = text;" );
+    }
+  }
+
+  private void emitConflictChecks( final long[] conflicts )
+  {
+    for ( int i = 0; i < conflicts.length; i++ )
+    {
+      if ( 0 != conflicts[ i ] )
+      {
+        line( "if ( 0 != ( seen" + i + " & " + hex( conflicts[ i ] ) + " ) )" );
+        open();
+        line( "return fail( args );" );
+        close();
+      }
+    }
+  }
+
+  /**
+   * Return the bitsets of the indexes of the options that conflict with the option with the specified id.
+   * Options conflict if either lists the other as incompatible which includes each option that
+   * does not allow duplicates conflicting with itself.
+   */
+  private long[] getConflicts( final int optionId, final int[] incompatible )
+  {
+    final long[] conflicts = new long[ wordCount() ];
+    for ( final int id : incompatible )
+    {
+      final int other = getConflictIndex( id );
+      //Other ids without an option can never appear on the command line so they are ignored
+      if ( -1 != other )
+      {
+        conflicts[ other >>> 6 ] |= 1L << other;
+      }
+    }
+    for ( final OptionModel other : _options )
+    {
+      for ( final int id : other.getIncompatible() )
+      {
+        if ( id == optionId )
+        {
+          conflicts[ other.getIndex() >>> 6 ] |= 1L << other.getIndex();
+        }
+      }
+    }
+    return conflicts;
+  }
+
+  private int getConflictIndex( final int id )
+  {
+    if ( CLOption.TEXT_ARGUMENT == id )
+    {
+      return textIndex();
+    }
+    final OptionModel option = findOption( id );
+    return null == option ? -1 : option.getIndex();
+  }
+
+  private static boolean hasAny( final long[] bits )
+  {
+    for ( final long word : bits )
+    {
+      if ( 0 != word )
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private OptionModel findOption( final int id )
+  {
+    for ( final OptionModel option : _options )
+    {
+      if ( option.getId() == id )
+      {
+        return option;
+      }
+    }
+    return null;
+  }
+
+  private String getValueType( final OptionModel option )
+  {
+    switch ( option.getKind() )
+    {
+      case BOOLEAN:
+        return null;
+      case LIST:
+        return "ArrayList<String>";
+      case MAP:
+        return "LinkedHashMap<String, String>";
+      default:
+        return "String";
+    }
+  }
+
+  private boolean hasKind( final OptionModel.Kind kind )
+  {
+    for ( final OptionModel option : _options )
+    {
+      if ( kind == option.getKind() )
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private int wordCount()
+  {
+    return ( textIndex() + 1 + 63 ) >>> 6;
+  }
+
+  private int textIndex()
+  {
+    return _options.size();
+  }
+
+  private static String isSeen( final int index )
+  {
+    return "0 != ( seen" + ( index >>> 6 ) + " & " + hex( 1L << index ) + " )";
+  }
+
+  private static String hex( final long value )
+  {
+    return "0x" + Long.toHexString( value ).toUpperCase() + "L";
+  }
+
+  private static String charLiteral( final char ch )
+  {
+    if ( ch >= ' ' && ch < 127 && '\'' != ch && '\\' != ch )
+    {
+      return "'" + ch + "'";
+    }
+    else
+    {
+      return String.valueOf( (int) ch );
+    }
+  }
+
+  private static String literal( final String value )
+  {
+    if ( null == value )
+    {
+      return "null";
+    }
+    final StringBuilder sb = new StringBuilder( "\"" );
+    for ( int i = 0; i < value.length(); i++ )
+    {
+      final char ch = value.charAt( i );
+      if ( '"' == ch || '\\' == ch )
+      {
+        sb.append( '\\' ).append( ch );
+      }
+      else if ( ch >= ' ' && ch < 127 )
+      {
+        sb.append( ch );
+      }
+      else
+      {
+        sb.append( String.format( "\\u%04x", (int) ch ) );
+      }
+    }
+    return sb.append( '"' ).toString();
+  }
+
+  private void open()
+  {
+    line( "{" );
+    _indent++;
+  }
+
+  private void close()
+  {
+    _indent--;
+    line( "}" );
+  }
+
+  private void line( final String text )
+  {
+    if ( !text.isEmpty() )
+    {
+      for ( int i = 0; i < _indent; i++ )
+      {
+        _sb.append( "  " );
+      }
+      _sb.append( text );
+    }
+    _sb.append( '\n' );
+  }
+}
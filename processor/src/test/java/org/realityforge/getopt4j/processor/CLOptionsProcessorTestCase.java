@@ -0,0 +1,307 @@
+package org.realityforge.getopt4j.processor;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.realityforge.getopt4j.CLArgsParser;
+import org.realityforge.getopt4j.CLArgumentException;
+import org.realityforge.getopt4j.CLErrorCode;
+import org.realityforge.getopt4j.CLOption;
+import org.realityforge.getopt4j.CLOptionDescriptor;
+import org.realityforge.getopt4j.CLOptionSchema;
+import org.realityforge.getopt4j.CLParseError;
+import org.realityforge.getopt4j.CLParseResult;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public final class CLOptionsProcessorTestCase
+{
+  private static final String OPTIONS_SOURCE =
+    "package com.example;\n" +
+    "\n" +
+    "import java.util.List;\n" +
+    "import java.util.Map;\n" +
+    "import org.realityforge.getopt4j.CLOptionDescriptor;\n" +
+    "import org.realityforge.getopt4j.CLOptionField;\n" +
+    "import org.realityforge.getopt4j.CLOptions;\n" +
+    "import org.realityforge.getopt4j.CLTextArguments;\n" +
+    "\n" +
+    "@CLOptions\n" +
+    "public class ServerOptions\n" +
+    "{\n" +
+    "  @CLOptionField( id = 'v', name = \"verbose\", description = \"Verbose \\\"output\\\"\", incompatible = { 'q' } )\n" +
+    "  boolean verbose;\n" +
+    "  @CLOptionField( id = 'q', name = \"quiet\" )\n" +
+    "  boolean quiet;\n" +
+    "  @CLOptionField( id = 'f', name = \"file\" )\n" +
+    "  String file;\n" +
+    "  @CLOptionField( id = 'p', name = \"port\" )\n" +
+    "  int port = 80;\n" +
+    "  @CLOptionField( id = 'T', name = \"taint\", flags = CLOptionDescriptor.ARGUMENT_OPTIONAL )\n" +
+    "  String taint;\n" +
+    "  @CLOptionField( id = 'I', name = \"include\" )\n" +
+    "  List<String> includes;\n" +
+    "  @CLOptionField( id = 'D', name = \"define\" )\n" +
+    "  Map<String, String> defines;\n" +
+    "  @CLOptionField( id = 1000, name = \"size\", flags = CLOptionDescriptor.ARGUMENT_REQUIRED | " +
+    "CLOptionDescriptor.DUPLICATES_ALLOWED )\n" +
+    "  long size;\n" +
+    "  @CLOptionField( id = 'x', name = \"Aa\", flags = CLOptionDescriptor.ARGUMENT_REQUIRED )\n" +
+    "  String aa;\n" +
+    "  @CLOptionField( id = 1001, name = \"BB\" )\n" +
+    "  boolean bb;\n" +
+    "  @CLOptionField( id = 1002, name = \"solo\", incompatible = { 0 } )\n" +
+    "  boolean solo;\n" +
+    "  @CLTextArguments\n" +
+    "  List<String> arguments;\n" +
+    "}\n";
+  private static final String[] TOKENS = {
+    "-v", "-q", "-vq", "-f", "x", "-fx", "-f=", "--file", "--file=a", "--file=", "-p", "8080", "-p=1", "--port",
+    "-T", "-Tv", "-T-v", "-T=", "--taint", "--taint=t", "-I", "a", "-Ia", "--include", "-Dk=v", "-D", "--define",
+    "k=v", "-D=x", "-Dk", "--", "-", "", "--unknown", "-z", "--size=4", "--size", "-vf", "--Aa", "--BB", "--Aa=1",
+    "=x", "text", "-x", "-xy", "\u0000", "-v\u0000", "--verbose=", "--verbose=-q", "--quiet=z", "-" + (char) 1000,
+    "--solo" };
+
+  @Test
+  public void generatedParserMatchesCLArgsParser()
+    throws Exception
+  {
+    final ClassLoader loader = compile( "com/example/ServerOptions.java", OPTIONS_SOURCE, null );
+    final Class<?> optionsType = loader.loadClass( "com.example.ServerOptions" );
+    final Class<?> parserType = loader.loadClass( "com.example.ServerOptionsParser" );
+    final Method parse = parserType.getMethod( "parse", String[].class, optionsType );
+    final CLOptionDescriptor[] descriptors =
+      (CLOptionDescriptor[]) parserType.getMethod( "getDescriptors" ).invoke( null );
+    final CLOptionSchema schema = (CLOptionSchema) parserType.getMethod( "getSchema" ).invoke( null );
+    assertEquals( descriptors.length, 11 );
+    assertEquals( descriptors[ 0 ].getDescription(), "Verbose \"output\"" );
+    assertEquals( descriptors[ 0 ].getName(), "verbose" );
+    assertEquals( descriptors[ 6 ].getFlags(),
+                  CLOptionDescriptor.ARGUMENTS_REQUIRED_2 | CLOptionDescriptor.DUPLICATES_ALLOWED );
+
+    final Object options = optionsType.newInstance();
+    assertNull( parse.invoke( null, new String[]{ "-vfconfig", "-p", "8080", "-Da=b", "--define=c=d", "-Ix", "y" },
+                              options ) );
+    assertEquals( get( options, "verbose" ), true );
+    assertEquals( get( options, "file" ), "config" );
+    assertEquals( get( options, "port" ), 8080 );
+    final Map<String, String> defines = new HashMap<>();
+    defines.put( "a", "b" );
+    defines.put( "c", "d" );
+    assertEquals( get( options, "defines" ), defines );
+    assertEquals( get( options, "includes" ), Arrays.asList( "x" ) );
+    assertEquals( get( options, "arguments" ), Arrays.asList( "y" ) );
+
+    //Fields are not modified when the parse fails
+    final Object unmodified = optionsType.newInstance();
+    final CLParseError error = (CLParseError) parse.invoke( null, new String[]{ "-p", "1", "-v", "-q" }, unmodified );
+    assertEquals( error.getMessage(), "Incompatible options --q/--quiet and -v/--verbose found." );
+    assertEquals( get( unmodified, "port" ), 80 );
+    assertEquals( get( unmodified, "verbose" ), false );
+
+    //Options may be incompatible with text arguments
+    final CLParseError textError = (CLParseError) parse.invoke( null, new String[]{ "y", "--solo" }, unmodified );
+    assertEquals( textError.getCode(), CLErrorCode.INCOMPATIBLE_OPTIONS );
+    assertEquals( textError.getOptionId(), 1002 );
+    assertNull( textError.getOtherDescriptor() );
+    assertNull( parse.invoke( null, new String[]{ "--solo", "-v" }, unmodified ) );
+    assertEquals( get( unmodified, "solo" ), true );
+
+    final Random random = new Random( 42 );
+    for ( int i = 0; i < 20000; i++ )
+    {
+      final String[] args = new String[ random.nextInt( 6 ) ];
+      for ( int j = 0; j < args.length; j++ )
+      {
+        args[ j ] = TOKENS[ random.nextInt( TOKENS.length ) ];
+      }
+      assertSameResult( args, schema, parse, optionsType.newInstance() );
+    }
+  }
+
+  @Test
+  public void invalidOptionsAreReported()
+    throws Exception
+  {
+    final String source =
+      "package com.example;\n" +
+      "\n" +
+      "import org.realityforge.getopt4j.CLOptionField;\n" +
+      "import org.realityforge.getopt4j.CLOptions;\n" +
+      "\n" +
+      "@CLOptions\n" +
+      "public class BadOptions\n" +
+      "{\n" +
+      "  @CLOptionField( id = 'a', name = \"all\" )\n" +
+      "  boolean all;\n" +
+      "  @CLOptionField( id = 'a', name = \"any\" )\n" +
+      "  boolean any;\n" +
+      "}\n";
+    assertReported( source, "Duplicate option id 97" );
+  }
+
+  @Test
+  public void booleanOptionsMustNotRequireArguments()
+    throws Exception
+  {
+    for ( final String flags : new String[]{ "ARGUMENT_REQUIRED", "ARGUMENTS_REQUIRED_2" } )
+    {
+      final String source =
+        "package com.example;\n" +
+        "\n" +
+        "import org.realityforge.getopt4j.CLOptionDescriptor;\n" +
+        "import org.realityforge.getopt4j.CLOptionField;\n" +
+        "import org.realityforge.getopt4j.CLOptions;\n" +
+        "\n" +
+        "@CLOptions\n" +
+        "public class BadOptions\n" +
+        "{\n" +
+        "  @CLOptionField( id = 'a', name = \"all\", flags = CLOptionDescriptor." + flags + " )\n" +
+        "  boolean all;\n" +
+        "}\n";
+      assertReported( source, "argument flags that are not supported by the type of the field" );
+    }
+  }
+
+  private void assertReported( final String source, final String message )
+    throws Exception
+  {
+    final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    assertNull( compile( "com/example/BadOptions.java", source, diagnostics ) );
+    boolean reported = false;
+    for ( final Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics() )
+    {
+      reported |= Diagnostic.Kind.ERROR == diagnostic.getKind() && diagnostic.getMessage( null ).contains( message );
+    }
+    assertTrue( reported, message );
+  }
+
+  private void assertSameResult( final String[] args,
+                                 final CLOptionSchema schema,
+                                 final Method parse,
+                                 final Object options )
+    throws Exception
+  {
+    final CLParseResult expected = CLArgsParser.parse( args, schema );
+    final CLParseError error;
+    try
+    {
+      error = (CLParseError) parse.invoke( null, args, options );
+    }
+    catch ( final InvocationTargetException ite )
+    {
+      //Conversion errors are only raised when the args are otherwise valid
+      assertTrue( ite.getCause() instanceof CLArgumentException, Arrays.toString( args ) );
+      assertNull( expected.getError(), Arrays.toString( args ) );
+      return;
+    }
+    final String message = Arrays.toString( args );
+    if ( null != expected.getError() )
+    {
+      assertNotNull( error, message );
+      assertEquals( error.getMessage(), expected.getErrorString(), message );
+      return;
+    }
+    assertNull( error, message );
+    assertEquals( get( options, "verbose" ), expected.isSet( 'v' ), message );
+    assertEquals( get( options, "quiet" ), expected.isSet( 'q' ), message );
+    assertEquals( get( options, "aa" ), lastArgument( expected, 'x' ), message );
+    assertEquals( get( options, "bb" ), expected.isSet( 1001 ), message );
+    assertEquals( get( options, "solo" ), expected.isSet( 1002 ), message );
+    assertEquals( get( options, "file" ), lastArgument( expected, 'f' ), message );
+    assertEquals( get( options, "taint" ), lastArgument( expected, 'T' ), message );
+    assertEquals( get( options, "port" ), expected.isSet( 'p' ) ? expected.getArgumentById( 'p' ).getIntArgument( 0 ) : 80,
+                  message );
+    assertEquals( get( options, "size" ),
+                  expected.isSet( 1000 ) ? expected.getArgumentById( 1000 ).getLongArgument( 0 ) : 0L,
+                  message );
+    assertEquals( get( options, "includes" ), expected.isSet( 'I' ) ? arguments( expected, 'I' ) : null, message );
+    assertEquals( get( options, "arguments" ), arguments( expected, CLOption.TEXT_ARGUMENT ), message );
+    if ( expected.isSet( 'D' ) )
+    {
+      final Map<String, String> defines = new HashMap<>();
+      for ( final CLOption option : expected.getArgumentsById( 'D' ) )
+      {
+        defines.put( option.getArgument( 0 ), option.getArgument( 1 ) );
+      }
+      assertEquals( get( options, "defines" ), defines, message );
+    }
+    else
+    {
+      assertNull( get( options, "defines" ), message );
+    }
+  }
+
+  private static String lastArgument( final CLParseResult result, final int id )
+  {
+    final CLOption option = result.getArgumentById( id );
+    return null == option ? null : option.getArgument();
+  }
+
+  private static List<String> arguments( final CLParseResult result, final int id )
+  {
+    final List<String> arguments = new ArrayList<>();
+    for ( final CLOption option : result.getArgumentsById( id ) )
+    {
+      arguments.add( option.getArgument() );
+    }
+    return arguments;
+  }
+
+  private static Object get( final Object object, final String name )
+    throws Exception
+  {
+    final Field field = object.getClass().getDeclaredField( name );
+    field.setAccessible( true );
+    return field.get( object );
+  }
+
+  /**
+   * Compile the source with the processor and return a class loader for the output,
+   * or null if compilation failed.
+   */
+  private ClassLoader compile( final String path,
+                               final String source,
+                               final DiagnosticCollector<JavaFileObject> diagnostics )
+    throws IOException
+  {
+    final Path directory = Files.createTempDirectory( "getopt4j" );
+    final Path file = directory.resolve( "src" ).resolve( path );
+    Files.createDirectories( file.getParent() );
+    Files.write( file, source.getBytes( StandardCharsets.UTF_8 ) );
+    final Path output = Files.createDirectories( directory.resolve( "classes" ) );
+
+    final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    try ( final StandardJavaFileManager fileManager = compiler.getStandardFileManager( null, null, null ) )
+    {
+      final List<String> options =
+        Arrays.asList( "-classpath", System.getProperty( "java.class.path" ),
+                       "-processor", CLOptionsProcessor.class.getName(),
+                       "-d", output.toString(),
+                       "-s", output.toString() );
+      final Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjects( file.toFile() );
+      final boolean success = compiler.getTask( null, fileManager, diagnostics, options, null, units ).call();
+      return success ?
+             new URLClassLoader( new URL[]{ output.toUri().toURL() }, getClass().getClassLoader() ) :
+             null;
+    }
+  }
+}
@@ -0,0 +1,42 @@
+package org.realityforge.getopt4j;
+
+/**
+ * Class to inherit from so that listeners only implement the events that they are interested in
+ * and are not required to implement events that are added in future.
+ *
+ * @see CLParseListener
+ */
+public abstract class AbstractParseListener
+  implements CLParseListener
+{
+  @Override
+  public void optionRecognised( final CLOptionDescriptor descriptor, final int argumentIndex, final long nanoTime )
+  {
+  }
+
+  @Override
+  public void argumentBound( final CLOption option, final int argumentIndex, final long nanoTime )
+  {
+  }
+
+  @Override
+  public void stateChanged( final CLParserState from,
+                            final CLParserState to,
+                            final int argumentIndex,
+                            final long nanoTime )
+  {
+  }
+
+  @Override
+  public void parseFailed( final CLParseError error, final long nanoTime )
+  {
+  }
+
+  @Override
+  public void parseCompleted( final int argumentCount,
+                              final int optionCount,
+                              final long startTime,
+                              final long nanoTime )
+  {
+  }
+}
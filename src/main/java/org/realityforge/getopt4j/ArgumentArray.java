@@ -0,0 +1,45 @@
+package org.realityforge.getopt4j;
+
+/**
+ * An argument source backed by an array of arguments.
+ */
+final class ArgumentArray
+  implements ArgumentSource
+{
+  private CharSequence[] _args;
+  private int _index;
+
+  /**
+   * Start reading from the specified args.
+   */
+  void reset( final CharSequence[] args )
+  {
+    _args = args;
+    _index = 0;
+  }
+
+  /**
+   * Return the args being read.
+   */
+  CharSequence[] getArgs()
+  {
+    return _args;
+  }
+
+  @Override
+  public boolean hasNext()
+  {
+    return _index < _args.length;
+  }
+
+  @Override
+  public CharSequence next()
+  {
+    return _args[ _index++ ];
+  }
+
+  @Override
+  public void close()
+  {
+  }
+}
@@ -0,0 +1,140 @@
+package org.realityforge.getopt4j;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.util.ArrayList;
+
+/**
+ * An argument source that expands argument files.
+ *
+ * An argument of the form <code>@path</code> is replaced by the arguments read from
+ * the file at path. Arguments read from an argument file may themselves reference
+ * argument files up to the maximum depth. Relative paths are resolved against the
+ * current working directory. An argument starting with <code>@@</code> is not expanded
+ * but is passed through with the leading <code>@</code> removed.
+ *
+ * Argument files are read incrementally so only the files that are currently being
+ * read are held open and no more than one argument is buffered.
+ *
+ * @see ArgumentFileReader
+ */
+final class ArgumentFileExpander
+  implements ArgumentSource
+{
+  private final ArgumentSource _source;
+  private final int _maxDepth;
+  //The stack of argument files currently being read
+  private final ArrayList<ArgumentFileReader> _readers = new ArrayList<>();
+  private CharSequence _next;
+
+  ArgumentFileExpander( final ArgumentSource source, final int maxDepth )
+  {
+    _source = source;
+    _maxDepth = maxDepth;
+  }
+
+  @Override
+  public boolean hasNext()
+    throws ParseException
+  {
+    if ( null == _next )
+    {
+      _next = readArgument();
+    }
+    return null != _next;
+  }
+
+  @Override
+  public CharSequence next()
+    throws ParseException
+  {
+    hasNext();
+    final CharSequence arg = _next;
+    _next = null;
+    return arg;
+  }
+
+  @Override
+  public void close()
+  {
+    while ( !_readers.isEmpty() )
+    {
+      _readers.remove( _readers.size() - 1 ).close();
+    }
+    _source.close();
+  }
+
+  private CharSequence readArgument()
+    throws ParseException
+  {
+    while ( true )
+    {
+      final CharSequence arg;
+      if ( _readers.isEmpty() )
+      {
+        if ( !_source.hasNext() )
+        {
+          return null;
+        }
+        arg = _source.next();
+      }
+      else
+      {
+        final ArgumentFileReader reader = _readers.get( _readers.size() - 1 );
+        arg = reader.nextArgument();
+        if ( null == arg )
+        {
+          _readers.remove( _readers.size() - 1 ).close();
+          continue;
+        }
+      }
+
+      final int length = arg.length();
+      if ( length > 1 && '@' == arg.charAt( 0 ) && '@' == arg.charAt( 1 ) )
+      {
+        return arg.subSequence( 1, length );
+      }
+      else if ( length > 0 && '@' == arg.charAt( 0 ) )
+      {
+        open( arg.subSequence( 1, length ).toString() );
+      }
+      else
+      {
+        return arg;
+      }
+    }
+  }
+
+  private void open( final String filename )
+    throws ParseException
+  {
+    if ( _readers.size() >= _maxDepth )
+    {
+      final String message =
+        "Argument file @" + filename + " exceeds the maximum nesting depth of " + _maxDepth;
+      throw new ParseException( message, 0 );
+    }
+
+    final Path path;
+    try
+    {
+      path = Paths.get( filename ).toRealPath();
+    }
+    catch ( final IOException | RuntimeException e )
+    {
+      throw new ParseException( "Unable to read argument file " + filename, 0 );
+    }
+
+    for ( final ArgumentFileReader reader : _readers )
+    {
+      if ( reader.getPath().equals( path ) )
+      {
+        throw new ParseException( "Recursive reference to argument file @" + filename, 0 );
+      }
+    }
+
+    _readers.add( new ArgumentFileReader( path ) );
+  }
+}
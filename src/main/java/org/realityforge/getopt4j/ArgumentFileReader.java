@@ -0,0 +1,183 @@
+package org.realityforge.getopt4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+
+/**
+ * Reads arguments from an argument file.
+ *
+ * The file is decoded as UTF-8 through fixed size buffers so the memory used is independent
+ * of the size of the file. Arguments are separated by whitespace. Whitespace may be included
+ * in an argument by surrounding it with single or double quotes. Within double quotes a
+ * backslash includes the following character literally. A <code>#</code> at the start of an
+ * argument begins a comment that continues to the end of the line.
+ */
+final class ArgumentFileReader
+{
+  private static final int BUFFER_SIZE = 8192;
+
+  private final Path _path;
+  private final ByteBuffer _bytes = ByteBuffer.allocate( BUFFER_SIZE );
+  private final CharBuffer _chars = CharBuffer.allocate( BUFFER_SIZE );
+  private final CharsetDecoder _decoder = StandardCharsets.UTF_8.newDecoder();
+  private final StringBuilder _buffer = new StringBuilder();
+  private FileChannel _channel;
+  private boolean _endOfInput;
+  private boolean _flushed;
+
+  ArgumentFileReader( final Path path )
+    throws ParseException
+  {
+    _path = path;
+    try
+    {
+      _channel = FileChannel.open( path, StandardOpenOption.READ );
+    }
+    catch ( final IOException ioe )
+    {
+      throw new ParseException( "Unable to read argument file " + path, 0 );
+    }
+    _chars.flip();
+  }
+
+  /**
+   * Return the real path of the file.
+   */
+  Path getPath()
+  {
+    return _path;
+  }
+
+  /**
+   * Read the next argument from the file.
+   *
+   * @return the argument, or null if there are no more arguments
+   */
+  String nextArgument()
+    throws ParseException
+  {
+    try
+    {
+      int ch = read();
+      while ( true )
+      {
+        if ( -1 == ch )
+        {
+          return null;
+        }
+        else if ( Character.isWhitespace( ch ) )
+        {
+          ch = read();
+        }
+        else if ( '#' == ch )
+        {
+          do
+          {
+            ch = read();
+          }
+          while ( -1 != ch && '\n' != ch && '\r' != ch );
+        }
+        else
+        {
+          break;
+        }
+      }
+
+      final StringBuilder sb = _buffer;
+      sb.setLength( 0 );
+
+      while ( -1 != ch && !Character.isWhitespace( ch ) )
+      {
+        if ( '"' == ch || '\'' == ch )
+        {
+          final int quote = ch;
+          ch = read();
+          while ( quote != ch )
+          {
+            if ( '\\' == ch && '"' == quote )
+            {
+              ch = read();
+            }
+            if ( -1 == ch )
+            {
+              throw new ParseException( "Unterminated quote in argument file " + _path, 0 );
+            }
+            sb.append( (char) ch );
+            ch = read();
+          }
+        }
+        else
+        {
+          sb.append( (char) ch );
+        }
+        ch = read();
+      }
+
+      return sb.toString();
+    }
+    catch ( final IOException ioe )
+    {
+      throw new ParseException( "Unable to read argument file " + _path, 0 );
+    }
+  }
+
+  /**
+   * Close the underlying file.
+   */
+  void close()
+  {
+    try
+    {
+      _channel.close();
+    }
+    catch ( final IOException ioe )
+    {
+      //Ignored as the file was only read
+    }
+  }
+
+  private int read()
+    throws IOException
+  {
+    if ( !_chars.hasRemaining() && !fill() )
+    {
+      return -1;
+    }
+    return _chars.get();
+  }
+
+  private boolean fill()
+    throws IOException
+  {
+    _chars.clear();
+    while ( 0 == _chars.position() && !_flushed )
+    {
+      if ( !_endOfInput && _channel.read( _bytes ) < 0 )
+      {
+        _endOfInput = true;
+      }
+      _bytes.flip();
+      final CoderResult result = _decoder.decode( _bytes, _chars, _endOfInput );
+      _bytes.compact();
+      if ( result.isError() )
+      {
+        result.throwException();
+      }
+      if ( _endOfInput && result.isUnderflow() )
+      {
+        _decoder.flush( _chars );
+        _flushed = true;
+      }
+    }
+    _chars.flip();
+    return _chars.hasRemaining();
+  }
+}
@@ -0,0 +1,27 @@
+package org.realityforge.getopt4j;
+
+import java.text.ParseException;
+
+/**
+ * A sequence of command line arguments that is consumed by the parser.
+ */
+interface ArgumentSource
+{
+  /**
+   * Return true if there is another argument.
+   */
+  boolean hasNext()
+    throws ParseException;
+
+  /**
+   * Return the next argument.
+   * This must only be invoked when {@link #hasNext()} has returned true.
+   */
+  CharSequence next()
+    throws ParseException;
+
+  /**
+   * Release any resources held by the source.
+   */
+  void close();
+}
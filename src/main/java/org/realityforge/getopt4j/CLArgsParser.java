@@ -2,8 +2,10 @@ package org.realityforge.getopt4j;
 
 import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Parser for command line arguments.
@@ -12,48 +14,105 @@ import java.util.List;
  * GNU utilities. Note that CLArgs uses a backing hash table for the options index and
  * so duplicate arguments are only returned by getArguments().
  *
+ * If the {@link ParserControl} enables argument files then an argument of the form
+ * <code>@path</code> is replaced by the arguments contained in the file at path.
+ * Argument files are read incrementally as the parse proceeds.
+ *
+ * Arguments may be supplied as any {@link CharSequence} such as slices of a larger
+ * buffer created via {@link java.nio.CharBuffer#wrap(char[], int, int)}. Option arguments
+ * are then retained as subsequences of the supplied arguments and are only converted
+ * into Strings when retrieved.
+ *
+ * If the parser is created with a {@link CLCommandRegistry} then the first text argument
+ * names a command, i.e. "commit" in "git --verbose commit -a". The options that precede
+ * the command are parsed using the root schema and the remaining arguments are parsed
+ * using the schema of the command in the same pass. Duplicate and incompatible options
+ * are only detected between options parsed using the same schema.
+ *
  * @see ParserControl
  * @see CLOption
  * @see CLOptionDescriptor
  */
 public final class CLArgsParser
 {
-  //cached character == Integer.MAX_VALUE when invalid
-  private static final int INVALID = Integer.MAX_VALUE;
-
   private static final int STATE_NORMAL = 0;
   private static final int STATE_REQUIRE_2ARGS = 1;
   private static final int STATE_REQUIRE_ARG = 2;
   private static final int STATE_OPTIONAL_ARG = 3;
   private static final int STATE_NO_OPTIONS = 4;
   private static final int STATE_OPTION_MODE = 5;
-
-  private static final char[] ARG_SEPARATORS = new char[]{ (char) 0, '=' };
-  private static final char[] NULL_SEPARATORS = new char[]{ (char) 0 };
-
-  private CLOptionDescriptor[] _optionDescriptors;
-  private List<CLOption> _options;
-  private HashMap<Integer, CLOption> _id2Option;
-  private HashMap<String, CLOption> _name2Option;
-  private ParserControl _control;
-
-  private String _errorMessage;
-  private String[] _unParsedArgs = new String[]{};
+  //The states reported to listeners indexed by the state constants
+  private static final CLParserState[] STATES = CLParserState.values();
+
+  private static final String[] NO_ARGS = new String[ 0 ];
+  //The position of options that were read from the environment or configuration files
+  private static final long SOURCE_POSITION = position( -1, 0 );
+
+  private final CLOptionSchema _schema;
+  private final CLCommandRegistry _commands;
+  private final ParserControl _control;
+  private final List<CLOption> _options = new ArrayList<>();
+  //bitset of the descriptor indexes seen while checking incompatibilities
+  private final long[] _seen;
+  private final ArgumentArray _array = new ArgumentArray();
+  //The options grouped by descriptor index are the elements of _grouped from
+  //_groupStart[index] to _groupStart[index + 1]. Text arguments without a
+  //descriptor are grouped at the index schema.size() and the options of a
+  //command are grouped at schema.size() + 1 + the index in the command schema
+  private int[] _groupStart;
+  //bitset of the descriptor indexes of the parsed options
+  private long[] _present;
+  //The index is built by the first lookup so parses that are never queried do not pay for it
+  private boolean _indexed;
+  private CLOption[] _grouped = new CLOption[ 0 ];
+  private List<CLOption> _groupedList = Collections.emptyList();
+  //The position at which each option in _options started. See position()
+  private long[] _positions = new long[ 16 ];
+  //The error and the exception used to abandon a parse are reused across parses
+  private final CLParseError _error;
+  private final CLParseException _exception;
+  private boolean _failed;
+  private CLUnParsedArgs _unParsed = CLUnParsedArgs.EMPTY;
+  //the unparsed args copied into an array on demand
+  private String[] _unParsedArgs;
+
+  //the command named by the first text argument, or null if no command has been parsed
+  private String _command;
+  private CLOptionSchema _commandSchema;
+  //the index in _options of the first option parsed using the command schema
+  private int _commandOptionIndex = -1;
+  //bitset of the command descriptor indexes seen while checking incompatibilities
+  private long[] _commandSeen = new long[ 0 ];
+  //the schema used to recognise options which is the command schema once a command is parsed
+  private CLOptionSchema _activeSchema;
 
   //variables used while parsing options.
   private char _ch;
-  private String[] _args;
+  private ArgumentSource _source;
+  //the current argument or null when all arguments have been consumed
+  private CharSequence _arg;
   private boolean _isLong;
+  private boolean _prefixEnabled;
+  //the number of arguments read from the source or -1 if the first argument has not been read
   private int _argIndex;
   private int _stringIndex;
   private int _stringLength;
 
-  private int _lastChar = INVALID;
-
   private int _lastOptionId = -1;
   private CLOption _option;
   private int _state = STATE_NORMAL;
-  private int _argIndexForMultiArg;
+  //the position at which the option currently being parsed started
+  private long _optionStart;
+  //the option that has been recognised but not yet returned by nextOption() and its position
+  private CLOption _next;
+  private long _nextStart;
+  private boolean _finished;
+
+  //the listener of the current parse, or null if no listener is installed
+  private CLParseListener _listener;
+  //the time at which the parse started, only read when a listener is installed
+  private long _startTime;
+  private boolean _completed;
 
   /**
    * Create a parser that can deal with options and parses certain args.
@@ -67,21 +126,7 @@ public final class CLArgsParser
                        final CLOptionDescriptor[] optionDescriptors,
                        final ParserControl control )
   {
-    _optionDescriptors = optionDescriptors;
-    _control = control;
-    _options = new ArrayList<CLOption>();
-    _args = args;
-
-    try
-    {
-      parse();
-      checkIncompatibilities( _options );
-      buildOptionIndex();
-    }
-    catch ( final ParseException pe )
-    {
-      _errorMessage = pe.getMessage();
-    }
+    this( args, new CLOptionSchema( optionDescriptors ), control );
   }
 
   /**
@@ -97,470 +142,1113 @@ public final class CLArgsParser
   }
 
   /**
-   * Retrieve an array of arguments that have not been parsed
-   * due to the parser halting.
+   * Create a parser that parses args using a precompiled schema.
+   * The schema may be shared by many parsers.
    *
-   * @return an array of unparsed args
+   * @param args    the args, typically that passed to the
+   *                <code>public static void main(String[] args)</code> method.
+   * @param schema  the compiled option schema
+   * @param control the parser control used determine behaviour of parser
    */
-  public String[] getUnParsedArgs()
+  public CLArgsParser( final String[] args,
+                       final CLOptionSchema schema,
+                       final ParserControl control )
   {
-    return _unParsedArgs;
+    this( schema, control );
+    reset( args );
   }
 
   /**
-   * Retrieve a list of options that were parsed from command list.
+   * Create a parser that parses args using a precompiled schema.
    *
-   * @return the list of options
+   * @param args   the args
+   * @param schema the compiled option schema
    */
-  public List<CLOption> getArguments()
+  public CLArgsParser( final String[] args, final CLOptionSchema schema )
   {
-    return _options;
+    this( args, schema, null );
   }
 
   /**
-   * Retrieve the {@link CLOption} with specified id, or
-   * <code>null</code> if no command line option is found.
+   * Create a parser that parses character sequence args using a precompiled schema.
+   * The args must not be modified until the option arguments have been retrieved.
    *
-   * @param id the command line option id
-   * @return the {@link CLOption} with the specified id, or <code>null</code> if no CLOption is found.
-   * @see CLOption
+   * @param args    the args
+   * @param schema  the compiled option schema
+   * @param control the parser control used determine behaviour of parser, may be null
    */
-  public CLOption getArgumentById( final int id )
+  public CLArgsParser( final CharSequence[] args,
+                       final CLOptionSchema schema,
+                       final ParserControl control )
   {
-    return _id2Option.get( id );
+    this( schema, control );
+    reset( args );
   }
 
   /**
-   * Retrieve the {@link CLOption} with specified name, or
-   * <code>null</code> if no command line option is found.
+   * Create a reusable parser that has not yet parsed any arguments.
+   * Arguments are parsed by calling {@link #reset(String[])} which may be
+   * invoked repeatedly to parse successive command lines.
    *
-   * @param name the command line option name
-   * @return the {@link CLOption} with the specified name, or
-   * <code>null</code> if no CLOption is found.
-   * @see CLOption
+   * @param schema  the compiled option schema
+   * @param control the parser control used determine behaviour of parser, may be null
    */
-  public CLOption getArgumentByName( final String name )
+  public CLArgsParser( final CLOptionSchema schema, final ParserControl control )
   {
-    return _name2Option.get( name );
+    this( schema, null, control );
   }
 
   /**
-   * Retrieve an error message that occured during parsing if one existed.
+   * Create a parser that parses args containing a command using a precompiled root schema.
    *
-   * @return the error string
+   * @param args     the args, typically that passed to the
+   *                 <code>public static void main(String[] args)</code> method.
+   * @param schema   the compiled schema of the options that precede the command
+   * @param commands the registry of commands
+   * @param control  the parser control used determine behaviour of parser, may be null
    */
-  public String getErrorString()
+  public CLArgsParser( final String[] args,
+                       final CLOptionSchema schema,
+                       final CLCommandRegistry commands,
+                       final ParserControl control )
   {
-    return _errorMessage;
+    this( schema, commands, control );
+    reset( args );
   }
 
   /**
-   * Get Descriptor for option id.
+   * Create a reusable parser that parses args containing a command and has not yet parsed any arguments.
    *
-   * @param id the id
-   * @return the descriptor
+   * @param schema   the compiled schema of the options that precede the command
+   * @param commands the registry of commands, may be null if the args do not contain a command
+   * @param control  the parser control used determine behaviour of parser, may be null
+   * @see #CLArgsParser(CLOptionSchema, ParserControl)
    */
-  private CLOptionDescriptor getDescriptorFor( final int id )
+  public CLArgsParser( final CLOptionSchema schema, final CLCommandRegistry commands, final ParserControl control )
   {
-    for ( final CLOptionDescriptor descriptor : _optionDescriptors )
-    {
-      if ( descriptor.getId() == id )
-      {
-        return descriptor;
-      }
-    }
-
-    return null;
+    _schema = schema;
+    _commands = commands;
+    _control = control;
+    _seen = new long[ schema.getWordCount() ];
+    _groupStart = new int[ schema.size() + 3 ];
+    _present = new long[ ( schema.size() + 64 ) >>> 6 ];
+    _error = new CLParseError( schema );
+    _exception = new CLParseException( _error );
   }
 
   /**
-   * Retrieve a descriptor by name.
+   * Parse the specified args and return the result.
+   * The result is immutable and independent of any parser so it may be shared between threads.
+   * This method may be invoked concurrently from many threads using a shared schema.
    *
-   * @param name the name
-   * @return the descriptor
+   * @param args    the args to parse
+   * @param schema  the compiled option schema
+   * @param control the parser control used determine behaviour of parser, may be null
+   * @return the result of the parse
    */
-  private CLOptionDescriptor getDescriptorFor( final String name )
+  public static CLParseResult parse( final String[] args,
+                                     final CLOptionSchema schema,
+                                     final ParserControl control )
   {
-    for ( final CLOptionDescriptor optionDescriptor : _optionDescriptors )
-    {
-      if ( optionDescriptor.getName().equals( name ) )
-      {
-        return optionDescriptor;
-      }
-    }
-
-    return null;
+    final CLArgsParser parser = new CLArgsParser( schema, control );
+    parser.reset( args );
+    return parser.createResult();
   }
 
   /**
-   * Check for duplicates of an option.
-   * It is an error to have duplicates unless appropriate flags is set in descriptor.
+   * Parse the specified args and return the result.
    *
-   * @param arguments the arguments
+   * @param args   the args to parse
+   * @param schema the compiled option schema
+   * @return the result of the parse
+   * @see #parse(String[], CLOptionSchema, ParserControl)
    */
-  private void checkIncompatibilities( final List<CLOption> arguments )
-    throws ParseException
+  public static CLParseResult parse( final String[] args, final CLOptionSchema schema )
   {
-    final int size = arguments.size();
-
-    for ( int i = 0; i < size; i++ )
-    {
-      final CLOption option = arguments.get( i );
-      final int id = option.getId();
-      final CLOptionDescriptor descriptor = getDescriptorFor( id );
-
-      //this occurs when id == 0 and user has not supplied a descriptor
-      //for arguments
-      if ( null == descriptor )
-      {
-        continue;
-      }
-
-      final int[] incompatible = descriptor.getIncompatible();
-
-      checkIncompatible( arguments, incompatible, i );
-    }
+    return parse( args, schema, null );
   }
 
-  private void checkIncompatible( final List<CLOption> arguments,
-                                  final int[] incompatible,
-                                  final int original )
-    throws ParseException
+  /**
+   * Parse the specified args merged with the options read from the environment variables and
+   * configuration files described by the sources. An option on the command line overrides the
+   * same option from the other sources and the merged options are checked for duplicate and
+   * incompatible options in a single pass. The command line is parsed first so that the values
+   * of options it specifies are not read from the other sources. Options from the other sources
+   * precede the options from the command line in the result.
+   *
+   * @param args        the args to parse
+   * @param sources     the sources of options other than the command line
+   * @param environment the environment variables, typically {@link System#getenv()}
+   * @param control     the parser control used determine behaviour of parser, may be null
+   * @return the result of the parse
+   */
+  public static CLParseResult parse( final String[] args,
+                                     final CLOptionSources sources,
+                                     final Map<String, String> environment,
+                                     final ParserControl control )
   {
-    final int size = arguments.size();
-
-    for ( int i = 0; i < size; i++ )
+    final CLArgsParser parser = new CLArgsParser( sources.getSchema(), control );
+    parser.start( args );
+    try
     {
-      if ( original == i )
-      {
-        continue;
-      }
-
-      final CLOption option = arguments.get( i );
-      final int id = option.getId();
-
-      for ( final int anIncompatible : incompatible )
-      {
-        if ( id == anIncompatible )
-        {
-          final CLOption originalOption = arguments.get( original );
-          final int originalId = originalOption.getId();
-
-          final String message;
-          if ( id == originalId )
-          {
-            message =
-              "Duplicate options for " + describeDualOption( originalId ) + " found.";
-          }
-          else
-          {
-            message = "Incompatible options -" + describeDualOption( id ) + " and " +
-                      describeDualOption( originalId ) + " found.";
-          }
-          throw new ParseException( message, 0 );
-        }
-      }
+      parser.parse();
+      final List<CLOption> options = sources.createOptions( parser, environment, parser.markSpecified() );
+      parser.mergeOptions( options );
+      parser.checkIncompatibilities( parser._schema, parser._seen, 0, parser._options.size() );
+    }
+    catch ( final ParseException pe )
+    {
+      parser.recordError( pe );
     }
+    parser.complete( parser._options.size() );
+    return parser.createResult();
   }
 
   /**
-   * Require state to be placed in for option.
+   * Parse the specified args merged with the options read from the process environment and
+   * the configuration files described by the sources.
    *
-   * @param descriptor the Option Descriptor
-   * @return the state
+   * @param args    the args to parse
+   * @param sources the sources of options other than the command line
+   * @return the result of the parse
+   * @see #parse(String[], CLOptionSources, Map, ParserControl)
    */
-  private int getStateFor( final CLOptionDescriptor descriptor )
+  public static CLParseResult parse( final String[] args, final CLOptionSources sources )
   {
-    final int flags = descriptor.getFlags();
-    if ( ( flags & CLOptionDescriptor.ARGUMENTS_REQUIRED_2 ) == CLOptionDescriptor.ARGUMENTS_REQUIRED_2 )
-    {
-      return STATE_REQUIRE_2ARGS;
-    }
-    else if ( ( flags & CLOptionDescriptor.ARGUMENT_REQUIRED ) == CLOptionDescriptor.ARGUMENT_REQUIRED )
-    {
-      return STATE_REQUIRE_ARG;
-    }
-    else if ( ( flags & CLOptionDescriptor.ARGUMENT_OPTIONAL ) == CLOptionDescriptor.ARGUMENT_OPTIONAL )
-    {
-      return STATE_OPTIONAL_ARG;
-    }
-    else
-    {
-      return STATE_NORMAL;
-    }
+    return parse( args, sources, System.getenv(), null );
   }
 
-  private String describeDualOption( final int id )
+  /**
+   * Record the descriptor indexes of the options parsed from the command line.
+   *
+   * @return the bitset of the descriptor indexes
+   */
+  private long[] markSpecified()
   {
-    final CLOptionDescriptor descriptor = getDescriptorFor( id );
-    if ( null == descriptor )
-    {
-      return "<parameter>";
-    }
-    else
+    final long[] specified = _seen;
+    for ( final CLOption option : _options )
     {
-      final StringBuilder sb = new StringBuilder();
-      boolean hasCharOption = false;
-
-      if ( Character.isLetter( (char) id ) )
-      {
-        sb.append( '-' );
-        sb.append( (char) id );
-        hasCharOption = true;
-      }
-
-      final String longOption = descriptor.getName();
-      if ( null != longOption )
+      final int index = _schema.getIndex( option.getId() );
+      if ( -1 != index )
       {
-        if ( hasCharOption )
-        {
-          sb.append( '/' );
-        }
-        sb.append( "--" );
-        sb.append( longOption );
+        specified[ index >>> 6 ] |= 1L << index;
       }
-
-      return sb.toString();
     }
+    return specified;
   }
 
   /**
-   * Create a string array that is subset of input array.
-   * The sub-array should start at array entry indicated by index. That array element
-   * should only include characters from charIndex onwards.
+   * Insert the options read from other sources before the options parsed from the command line.
+   * The options must not include those that are overridden by an option with the same id on the command line.
    *
-   * @param array     the original array
-   * @param index     the cut-point in array
-   * @param charIndex the cut-point in element of array
-   * @return the result array
+   * @param options the options read from other sources
    */
-  private String[] subArray( final String[] array, final int index, final int charIndex )
+  private void mergeOptions( final List<CLOption> options )
   {
-    final int remaining = array.length - index;
-    final String[] result = new String[ remaining ];
+    //The bitset of the specified options is reused to check incompatibilities
+    Arrays.fill( _seen, 0L );
 
-    if ( remaining > 1 )
+    final int count = options.size();
+    final int parsed = _options.size();
+    if ( _positions.length < parsed + count )
     {
-      System.arraycopy( array, index + 1, result, 1, remaining - 1 );
+      _positions = Arrays.copyOf( _positions, Math.max( parsed + count, _positions.length * 2 ) );
     }
-
-    result[ 0 ] = array[ index ].substring( charIndex - 1 );
-
-    return result;
+    System.arraycopy( _positions, 0, _positions, count, parsed );
+    Arrays.fill( _positions, 0, count, SOURCE_POSITION );
+    _options.addAll( 0, options );
   }
 
   /**
-   * Actually parse arguments
+   * Record an error reading options from a source other than the command line.
+   *
+   * @param message the message describing the error
+   * @return the exception to throw
    */
-  private void parse()
-    throws ParseException
+  ParseException sourceError( final String message )
   {
-    if ( 0 == _args.length )
-    {
-      return;
-    }
-
-    _stringLength = _args[ _argIndex ].length();
-
-    while ( true )
-    {
-      _ch = peekAtChar();
-
-      if ( _argIndex >= _args.length )
-      {
-        break;
-      }
+    _error.set( CLErrorCode.SOURCE, -1, 0, null, null, false );
+    _error.setText( message, 0, message.length() );
+    return _exception;
+  }
 
-      if ( -1 != _lastOptionId && null != _control && _control.isFinished( _lastOptionId ) )
-      {
-        //this may need mangling due to peeks
-        _unParsedArgs = subArray( _args, _argIndex, _stringIndex );
-        return;
-      }
+  /**
+   * Discard the results of the previous parse and parse the specified args.
+   * The parser reuses its option list, index tables and scratch buffers so the
+   * list returned by {@link #getArguments()} and the results of the other accessors
+   * are only valid until the next invocation of this method.
+   *
+   * @param args the args to parse
+   */
+  public void reset( final String[] args )
+  {
+    reset( (CharSequence[]) args );
+  }
 
-      if ( STATE_OPTION_MODE == _state )
-      {
-        //if get to an arg barrier then return to normal mode
-        //else continue accumulating options
-        if ( 0 == _ch )
-        {
-          getChar(); //strip the null
-          _state = STATE_NORMAL;
-        }
-        else
-        {
-          parseShortOption();
-        }
-      }
-      else if ( STATE_NORMAL == _state )
-      {
-        parseNormal();
-      }
-      else if ( STATE_NO_OPTIONS == _state )
-      {
-        //should never get to here when stringIndex != 0
-        addOption( new CLOption( _args[ _argIndex++ ] ) );
-      }
-      else if ( STATE_OPTIONAL_ARG == _state && '-' == _ch )
-      {
-        _state = STATE_NORMAL;
-        addOption( _option );
-      }
-      else
-      {
-        parseArguments();
-      }
-    }
+  /**
+   * Discard the results of the previous parse and parse the specified character sequence args.
+   * This behaves the same as {@link #reset(String[])} except that the args must not be modified
+   * until the option arguments have been retrieved.
+   *
+   * @param args the args to parse
+   */
+  public void reset( final CharSequence[] args )
+  {
+    start( args );
 
-    if ( _option != null )
+    try
     {
-      if ( STATE_OPTIONAL_ARG == _state )
-      {
-        _options.add( _option );
-      }
-      else if ( STATE_REQUIRE_ARG == _state )
-      {
-        final CLOptionDescriptor descriptor = getDescriptorFor( _option.getId() );
-        final String message =
-          "Missing argument to option " + getOptionDescription( descriptor );
-        throw new ParseException( message, 0 );
-      }
-      else if ( STATE_REQUIRE_2ARGS == _state )
+      parse();
+      if ( null == _commandSchema )
       {
-        if ( 1 == _option.getArgumentCount() )
-        {
-          _option.addArgument( "" );
-          _options.add( _option );
-        }
-        else
-        {
-          final CLOptionDescriptor descriptor = getDescriptorFor( _option.getId() );
-          final String message =
-            "Missing argument to option " + getOptionDescription( descriptor );
-          throw new ParseException( message, 0 );
-        }
+        checkIncompatibilities( _schema, _seen, 0, _options.size() );
       }
       else
       {
-        throw new ParseException( "IllegalState " + _state + ": " + _option, 0 );
+        checkIncompatibilities( _schema, _seen, 0, _commandOptionIndex );
+        checkIncompatibilities( _commandSchema, _commandSeen, _commandOptionIndex, _options.size() );
       }
     }
-  }
-
-  private String getOptionDescription( final CLOptionDescriptor descriptor )
-  {
-    if ( _isLong )
-    {
-      return "--" + descriptor.getName();
-    }
-    else
+    catch ( final ParseException pe )
     {
-      return "-" + (char) descriptor.getId();
+      recordError( pe );
     }
+    complete( _options.size() );
   }
 
-  private char peekAtChar()
+  /**
+   * Notify the listener that the parse has completed if this has not already been done.
+   *
+   * @param optionCount the number of options parsed
+   */
+  void complete( final int optionCount )
   {
-    if ( INVALID == _lastChar )
+    if ( null != _listener && !_completed )
     {
-      _lastChar = readChar();
+      _completed = true;
+      //_argIndex is the index of the current argument unless all of the arguments have been read
+      final int argumentCount = null == _arg ? Math.max( 0, _argIndex ) : _argIndex + 1;
+      _listener.parseCompleted( argumentCount, optionCount, _startTime, System.nanoTime() );
     }
-    return (char) _lastChar;
   }
 
-  private char getChar()
+  /**
+   * Record an exception that terminated the parse as the error of the parse.
+   *
+   * @param pe the exception
+   */
+  void recordError( final ParseException pe )
   {
-    if ( INVALID != _lastChar )
+    if ( _exception != pe )
     {
-      final char result = (char) _lastChar;
-      _lastChar = INVALID;
-      return result;
+      //Errors reading argument files are not raised by the parser and only have a message
+      final String message = pe.getMessage();
+      _error.set( CLErrorCode.ARGUMENT_FILE, Math.max( 0, _argIndex ), 0, null, null, false );
+      _error.setText( message, 0, message.length() );
     }
-    else
+    _failed = true;
+    if ( null != _listener )
     {
-      return readChar();
+      _listener.parseFailed( _error, System.nanoTime() );
     }
   }
 
-  private char readChar()
+  /**
+   * Discard the results of the previous parse and prepare to parse the specified args.
+   * The args are parsed incrementally by calling {@link #nextOption()}.
+   *
+   * @param args the args to parse
+   */
+  void start( final CharSequence[] args )
   {
-    if ( _stringIndex >= _stringLength )
-    {
-      _argIndex++;
-      _stringIndex = 0;
-
-      if ( _argIndex < _args.length )
-      {
-        _stringLength = _args[ _argIndex ].length();
-      }
-      else
-      {
-        _stringLength = 0;
-      }
-
-      return 0;
-    }
-
-    if ( _argIndex >= _args.length )
-    {
-      return 0;
-    }
-
-    return _args[ _argIndex ].charAt( _stringIndex++ );
+    _options.clear();
+    Arrays.fill( _seen, 0L );
+    _indexed = false;
+    _failed = false;
+    _unParsed = CLUnParsedArgs.EMPTY;
+    _unParsedArgs = null;
+    _command = null;
+    _commandSchema = null;
+    _commandOptionIndex = -1;
+    _activeSchema = _schema;
+    _error.setSchema( _schema );
+
+    _ch = 0;
+    _array.reset( args );
+    final int depth = null == _control ? 0 : _control.getArgumentFileDepth();
+    _source = 0 == depth ? _array : new ArgumentFileExpander( _array, depth );
+    _prefixEnabled = null != _control && _control.isLongOptionPrefixEnabled();
+    _listener = null == _control ? null : _control.getParseListener();
+    _startTime = null == _listener ? 0 : System.nanoTime();
+    _completed = false;
+    _arg = null;
+    _isLong = false;
+    _argIndex = -1;
+    _stringIndex = 0;
+    _stringLength = 0;
+    _lastOptionId = -1;
+    _option = null;
+    _state = STATE_NORMAL;
+    _optionStart = 0;
+    _next = null;
+    _nextStart = 0;
+    _finished = false;
   }
 
-  private Token nextToken( final char[] separators )
+  /**
+   * Create an immutable snapshot of the results of the last parse.
+   * The snapshot copies the option list and the index so it is not affected by subsequent parses.
+   *
+   * @return the result of the last parse
+   */
+  CLParseResult createResult()
   {
-    _ch = getChar();
-
-    if ( isSeparator( _ch, separators ) )
-    {
-      _ch = getChar();
-      return new Token( Token.TOKEN_SEPARATOR, null );
-    }
-
-    final StringBuilder sb = new StringBuilder();
-
-    do
-    {
-      sb.append( _ch );
-      _ch = getChar();
-    }
-    while ( !isSeparator( _ch, separators ) );
-
-    return new Token( Token.TOKEN_STRING, sb.toString() );
+    ensureIndexed();
+    final int placed = _groupStart[ _groupStart.length - 1 ];
+    return new CLParseResult( _schema,
+                              _options.toArray( new CLOption[ _options.size() ] ),
+                              Arrays.copyOf( _grouped, placed ),
+                              _groupStart.clone(),
+                              _present.clone(),
+                              _failed ? new CLParseError( _error ) : null,
+                              _unParsed );
   }
 
-  private boolean isSeparator( final char ch, final char[] separators )
+  /**
+   * Retrieve an array of arguments that have not been parsed
+   * due to the parser halting.
+   *
+   * The array is created on the first invocation after each parse.
+   *
+   * @return an array of unparsed args
+   */
+  public String[] getUnParsedArgs()
   {
-    for ( final char separator : separators )
+    if ( null == _unParsedArgs )
     {
-      if ( ch == separator )
-      {
-        return true;
-      }
+      _unParsedArgs = _unParsed.isEmpty() ? NO_ARGS : _unParsed.toStringArray();
     }
-
-    return false;
+    return _unParsedArgs;
   }
 
-  private void addOption( final CLOption option )
+  /**
+   * Retrieve a view of the arguments that have not been parsed due to the parser halting.
+   * The view refers to the args that were parsed rather than copying them.
+   *
+   * @return the view of the unparsed args
+   */
+  public CLUnParsedArgs getUnParsedArgsView()
   {
-    _options.add( option );
-    _lastOptionId = option.getId();
-    _option = null;
+    return _unParsed;
   }
 
-  private void parseOption( final CLOptionDescriptor descriptor,
-                            final String optionString )
+  /**
+   * Retrieve the name of the command that was parsed.
+   *
+   * @return the name of the command, or null if the args did not contain a command
+   * @see CLCommandRegistry
+   */
+  public String getCommand()
+  {
+    return _command;
+  }
+
+  /**
+   * Retrieve the schema that the options following the command were parsed with.
+   *
+   * @return the schema of the command, or null if the args did not contain a command
+   */
+  public CLOptionSchema getCommandSchema()
+  {
+    return _commandSchema;
+  }
+
+  /**
+   * Retrieve the index in {@link #getArguments()} of the first option that follows the command.
+   * The options before this index were parsed using the root schema.
+   *
+   * @return the index, or -1 if the args did not contain a command
+   */
+  public int getCommandOptionIndex()
+  {
+    return _commandOptionIndex;
+  }
+
+  /**
+   * Retrieve a list of options that were parsed from command list.
+   * The list is reused and repopulated by {@link #reset(String[])}.
+   *
+   * @return the list of options
+   */
+  public List<CLOption> getArguments()
+  {
+    return _options;
+  }
+
+  /**
+   * Retrieve the {@link CLOption} with specified id, or
+   * <code>null</code> if no command line option is found.
+   * If a command was parsed and the id is described by the schema of the command then
+   * only the options that follow the command are considered. This also applies to the
+   * other methods that look up options by id.
+   *
+   * @param id the command line option id
+   * @return the {@link CLOption} with the specified id, or <code>null</code> if no CLOption is found.
+   * @see CLOption
+   */
+  public CLOption getArgumentById( final int id )
+  {
+    final int group = getGroup( id );
+    if ( -1 == group )
+    {
+      return null;
+    }
+    else
+    {
+      ensureIndexed();
+      final int end = _groupStart[ group + 1 ];
+      return _groupStart[ group ] == end ? null : _grouped[ end - 1 ];
+    }
+  }
+
+  /**
+   * Retrieve all the {@link CLOption}s with the specified id in the order that they occurred.
+   * Text arguments are retrieved using the id {@link CLOption#TEXT_ARGUMENT}.
+   *
+   * @param id the command line option id
+   * @return an unmodifiable list of the options with the specified id, empty if there are none.
+   */
+  public List<CLOption> getArgumentsById( final int id )
+  {
+    final int group = getGroup( id );
+    if ( -1 == group )
+    {
+      return Collections.emptyList();
+    }
+    else
+    {
+      ensureIndexed();
+      final int start = _groupStart[ group ];
+      final int end = _groupStart[ group + 1 ];
+      return start == end ?
+             Collections.<CLOption>emptyList() :
+             Collections.unmodifiableList( _groupedList.subList( start, end ) );
+    }
+  }
+
+  /**
+   * Retrieve the number of times that an option with the specified id occurred.
+   * This is useful for options that are repeated to increase an effect such as "-vvv".
+   *
+   * @param id the command line option id
+   * @return the number of occurrences
+   */
+  public int getOccurrenceCount( final int id )
+  {
+    final int group = getGroup( id );
+    if ( -1 == group )
+    {
+      return 0;
+    }
+    ensureIndexed();
+    return _groupStart[ group + 1 ] - _groupStart[ group ];
+  }
+
+  /**
+   * Return true if an option with the specified id occurred.
+   *
+   * @param id the command line option id
+   * @return true if the option occurred
+   */
+  public boolean isSet( final int id )
+  {
+    final int group = getGroup( id );
+    if ( -1 == group )
+    {
+      return false;
+    }
+    ensureIndexed();
+    return 0 != ( _present[ group >>> 6 ] & ( 1L << group ) );
+  }
+
+  /**
+   * Return the group that options with the specified id are indexed under.
+   *
+   * @return the group, or -1 if the id can not occur
+   */
+  private int getGroup( final int id )
+  {
+    if ( null != _commandSchema )
+    {
+      final int index = _commandSchema.getIndex( id );
+      if ( -1 != index )
+      {
+        return _schema.size() + 1 + index;
+      }
+    }
+    return getRootGroup( id );
+  }
+
+  /**
+   * Return the group that options with the specified id that precede the command are indexed under.
+   *
+   * @return the group, or -1 if the id can not occur
+   */
+  private int getRootGroup( final int id )
+  {
+    final int index = _schema.getIndex( id );
+    if ( -1 != index )
+    {
+      return index;
+    }
+    else
+    {
+      return CLOption.TEXT_ARGUMENT == id ? _schema.size() : -1;
+    }
+  }
+
+  /**
+   * Retrieve the {@link CLOption} with specified name, or
+   * <code>null</code> if no command line option is found.
+   *
+   * @param name the command line option name
+   * @return the {@link CLOption} with the specified name, or
+   * <code>null</code> if no CLOption is found.
+   * @see CLOption
+   */
+  public CLOption getArgumentByName( final String name )
+  {
+    final CLOptionDescriptor commandDescriptor = null == _commandSchema ? null : _commandSchema.getDescriptor( name );
+    final CLOptionDescriptor descriptor = null == commandDescriptor ? _schema.getDescriptor( name ) : commandDescriptor;
+    return null == descriptor ? null : getArgumentById( descriptor.getId() );
+  }
+
+  /**
+   * Retrieve an error message that occured during parsing if one existed.
+   *
+   * @return the error string
+   */
+  public String getErrorString()
+  {
+    return _failed ? _error.getMessage() : null;
+  }
+
+  /**
+   * Retrieve the details of the error that occurred during parsing if one existed.
+   * The error is reused and repopulated by {@link #reset(String[])}.
+   *
+   * @return the error, or null if the command line was parsed successfully
+   */
+  public CLParseError getError()
+  {
+    return _failed ? _error : null;
+  }
+
+  /**
+   * Check for duplicates of an option.
+   * It is an error to have duplicates unless appropriate flags is set in descriptor.
+   * This is a single pass that tests each option against the set of options that precede it.
+   *
+   * @param schema the schema that the options were parsed with
+   * @param seen   the cleared bitset used to record the descriptor indexes of the options
+   * @param start  the index of the first option to check
+   * @param end    the index after the last option to check
+   */
+  private void checkIncompatibilities( final CLOptionSchema schema,
+                                       final long[] seen,
+                                       final int start,
+                                       final int end )
+    throws ParseException
+  {
+    final List<CLOption> arguments = _options;
+    for ( int i = start; i < end; i++ )
+    {
+      final int index = schema.getConflictIndex( arguments.get( i ).getId() );
+
+      //this occurs when the option was created from a descriptor outside the schema
+      if ( -1 == index )
+      {
+        continue;
+      }
+
+      if ( -1 != schema.findConflict( index, seen ) )
+      {
+        //options before a command are described using the root schema rather than the command schema
+        _error.setSchema( schema );
+        throw describeIncompatibility( schema, start, end );
+      }
+      seen[ index >>> 6 ] |= 1L << index;
+    }
+  }
+
+  /**
+   * Check the option most recently returned by {@link #nextOption()} against the options
+   * that have preceded it since the parse started. This is used when options are consumed
+   * incrementally rather than collected into a list.
+   *
+   * @param option the option
+   */
+  void checkIncompatibility( final CLOption option )
+    throws ParseException
+  {
+    final int index = _schema.getConflictIndex( option.getId() );
+    if ( -1 != index )
+    {
+      final int conflict = _schema.findConflict( index, _seen );
+      if ( -1 != conflict )
+      {
+        throw describeConflict( index, conflict, _nextStart );
+      }
+      _seen[ index >>> 6 ] |= 1L << index;
+    }
+  }
+
+  /**
+   * Describe a conflict between an option and an option that preceded it.
+   *
+   * @param index    the descriptor index of the option
+   * @param other    the descriptor index of the preceding option
+   * @param position the position of the option
+   * @return the exception to throw
+   */
+  private ParseException describeConflict( final int index, final int other, final long position )
+  {
+    final CLOptionDescriptor descriptor = _schema.getConflictDescriptor( index );
+    if ( index == other )
+    {
+      return error( CLErrorCode.DUPLICATE_OPTION, position, descriptor, null );
+    }
+    else
+    {
+      final CLOptionDescriptor otherDescriptor = _schema.getConflictDescriptor( other );
+      //The option whose descriptor lists the other as incompatible is described last
+      if ( _schema.isIncompatible( other, index ) )
+      {
+        return error( CLErrorCode.INCOMPATIBLE_OPTIONS, position, otherDescriptor, descriptor );
+      }
+      else
+      {
+        return error( CLErrorCode.INCOMPATIBLE_OPTIONS, position, descriptor, otherDescriptor );
+      }
+    }
+  }
+
+  /**
+   * Describe the first incompatibility in the arguments.
+   * The first option whose descriptor lists another option as incompatible is reported
+   * along with the first such option. This is only invoked once an incompatibility has
+   * been detected.
+   *
+   * @param schema the schema that the options were parsed with
+   * @param start  the index of the first option to check
+   * @param end    the index after the last option to check
+   * @return the exception to throw
+   */
+  private ParseException describeIncompatibility( final CLOptionSchema schema, final int start, final int end )
+  {
+    final int size = end - start;
+    final int[] indexes = new int[ size ];
+    final int[] counts = new int[ schema.size() + 1 ];
+    final long[] present = new long[ schema.getWordCount() ];
+    for ( int i = 0; i < size; i++ )
+    {
+      final int index = schema.getConflictIndex( _options.get( start + i ).getId() );
+      indexes[ i ] = index;
+      if ( -1 != index )
+      {
+        counts[ index ]++;
+        present[ index >>> 6 ] |= 1L << index;
+      }
+    }
+
+    for ( int i = 0; i < size; i++ )
+    {
+      final int index = indexes[ i ];
+      //An option can only be incompatible with itself if it occurs more than once
+      if ( -1 != index && schema.hasIncompatible( index, present, counts[ index ] > 1 ) )
+      {
+        for ( int j = 0; j < size; j++ )
+        {
+          final int other = indexes[ j ];
+          if ( i != j && -1 != other && schema.isIncompatible( index, other ) )
+          {
+            final CLOptionDescriptor descriptor = schema.getConflictDescriptor( index );
+            final long position = _positions[ start + Math.max( i, j ) ];
+            if ( index == other )
+            {
+              return error( CLErrorCode.DUPLICATE_OPTION, position, descriptor, null );
+            }
+            else
+            {
+              return error( CLErrorCode.INCOMPATIBLE_OPTIONS,
+                            position,
+                            descriptor,
+                            schema.getConflictDescriptor( other ) );
+            }
+          }
+        }
+      }
+    }
+    //unreachable as an incompatibility has already been detected
+    throw new IllegalStateException();
+  }
+
+  /**
+   * Require state to be placed in for option.
+   *
+   * @param descriptor the Option Descriptor
+   * @return the state
+   */
+  private int getStateFor( final CLOptionDescriptor descriptor )
+  {
+    final int flags = descriptor.getFlags();
+    if ( ( flags & CLOptionDescriptor.ARGUMENTS_REQUIRED_2 ) == CLOptionDescriptor.ARGUMENTS_REQUIRED_2 )
+    {
+      return STATE_REQUIRE_2ARGS;
+    }
+    else if ( ( flags & CLOptionDescriptor.ARGUMENT_REQUIRED ) == CLOptionDescriptor.ARGUMENT_REQUIRED )
+    {
+      return STATE_REQUIRE_ARG;
+    }
+    else if ( ( flags & CLOptionDescriptor.ARGUMENT_OPTIONAL ) == CLOptionDescriptor.ARGUMENT_OPTIONAL )
+    {
+      return STATE_OPTIONAL_ARG;
+    }
+    else
+    {
+      return STATE_NORMAL;
+    }
+  }
+
+
+  /**
+   * Create a view of the unconsumed characters of the current argument
+   * followed by all the arguments that remain in the source.
+   *
+   * @return the view
+   */
+  private CLUnParsedArgs createUnParsedArgs()
+    throws ParseException
+  {
+    if ( null == _arg )
+    {
+      return CLUnParsedArgs.EMPTY;
+    }
+    else if ( _source == _array )
+    {
+      //no argument files were expanded so the current argument is at _argIndex in the args
+      return new CLUnParsedArgs( _array.getArgs(), _argIndex, _stringIndex, false );
+    }
+    else
+    {
+      //the arguments read from argument files are only valid until the files are closed
+      final ArrayList<String> result = new ArrayList<>();
+      result.add( _arg.subSequence( _stringIndex, _stringLength ).toString() );
+      while ( _source.hasNext() )
+      {
+        result.add( _source.next().toString() );
+      }
+      return new CLUnParsedArgs( result.toArray( new String[ result.size() ] ), 0, 0, true );
+    }
+  }
+
+  /**
+   * Actually parse arguments
+   */
+  private void parse()
+    throws ParseException
+  {
+    CLOption option;
+    while ( null != ( option = nextOption() ) )
+    {
+      final int size = _options.size();
+      if ( size == _positions.length )
+      {
+        _positions = Arrays.copyOf( _positions, size * 2 );
+      }
+      _positions[ size ] = _nextStart;
+      _options.add( option );
+    }
+  }
+
+  /**
+   * Parse arguments until the next option has been recognised.
+   *
+   * @return the next option, or null if there are no more options
+   */
+  CLOption nextOption()
+    throws ParseException
+  {
+    try
+    {
+      if ( -1 == _argIndex )
+      {
+        nextArg();
+      }
+
+      while ( null == _next && !_finished )
+      {
+        if ( isAtEnd() )
+        {
+          _finished = true;
+          completeOption();
+        }
+        else if ( -1 != _lastOptionId && null != _control && _control.isFinished( _lastOptionId ) )
+        {
+          _finished = true;
+          if ( 0 != _stringIndex && _stringIndex >= _stringLength )
+          {
+            //skip the remainder of an argument that has been fully consumed but not an untouched empty argument
+            nextArg();
+          }
+          _unParsed = createUnParsedArgs();
+          //discard an array created by an earlier invocation of getUnParsedArgs() during iteration
+          _unParsedArgs = null;
+        }
+        else
+        {
+          parseStep();
+        }
+      }
+    }
+    catch ( final ParseException pe )
+    {
+      _finished = true;
+      _source.close();
+      throw pe;
+    }
+
+    if ( _finished )
+    {
+      _source.close();
+    }
+
+    final CLOption option = _next;
+    _next = null;
+    return option;
+  }
+
+  /**
+   * Perform a single step of the parse from the current state.
+   */
+  private void parseStep()
     throws ParseException
   {
-    if ( null == descriptor )
+    _ch = peekAtChar();
+
+    if ( STATE_OPTION_MODE == _state )
+    {
+      //if get to an arg barrier then return to normal mode
+      //else continue accumulating options
+      if ( 0 == _ch )
+      {
+        nextArg();
+        setState( STATE_NORMAL );
+      }
+      else
+      {
+        parseShortOption();
+      }
+    }
+    else if ( STATE_NORMAL == _state )
+    {
+      parseNormal();
+    }
+    else if ( STATE_NO_OPTIONS == _state )
+    {
+      //the parser is always at the start of an argument in this state
+      _optionStart = position();
+      addOption( createTextOption( nextToken( null ) ) );
+    }
+    else if ( STATE_OPTIONAL_ARG == _state && '-' == _ch )
+    {
+      setState( STATE_NORMAL );
+      addOption( _option );
+    }
+    else
+    {
+      parseArguments();
+    }
+  }
+
+  /**
+   * Complete any option that is awaiting arguments when the end of the args has been reached.
+   */
+  private void completeOption()
+    throws ParseException
+  {
+    if ( _option != null )
+    {
+      if ( STATE_OPTIONAL_ARG == _state )
+      {
+        _next = _option;
+        _nextStart = _optionStart;
+        _option = null;
+      }
+      else if ( STATE_REQUIRE_ARG == _state || STATE_REQUIRE_2ARGS == _state )
+      {
+        throw error( CLErrorCode.MISSING_ARGUMENT, position(), _option.getDescriptor(), null );
+      }
+      else
+      {
+        throw new IllegalStateException( "IllegalState " + _state + ": " + _option );
+      }
+    }
+  }
+
+
+  /**
+   * Return true if all the characters of all the arguments have been consumed.
+   */
+  private boolean isAtEnd()
+    throws ParseException
+  {
+    return null == _arg || ( _stringIndex >= _stringLength && !_source.hasNext() );
+  }
+
+  /**
+   * Return the current character or 0 if the current argument has been consumed.
+   */
+  private char peekAtChar()
+  {
+    return _stringIndex < _stringLength ? _arg.charAt( _stringIndex ) : 0;
+  }
+
+  /**
+   * Move to the start of the next argument.
+   */
+  private void nextArg()
+    throws ParseException
+  {
+    _argIndex++;
+    _arg = _source.hasNext() ? _source.next() : null;
+    _stringIndex = 0;
+    _stringLength = null == _arg ? 0 : _arg.length();
+  }
+
+  /**
+   * Consume the remainder of the current argument and return it as the value to bind.
+   * The original argument is returned when none of it has been consumed and it is not interned
+   * and null is returned when all the arguments have been consumed.
+   *
+   * @param descriptor the descriptor of the option, or null for text arguments
+   * @return the remainder of the current argument
+   * @see #intern(CLOptionDescriptor, CharSequence, int, int)
+   */
+  private CharSequence nextToken( final CLOptionDescriptor descriptor )
+    throws ParseException
+  {
+    //a required argument is missing when all the arguments have been consumed
+    final CharSequence token = null == _arg ? null : intern( descriptor, _arg, _stringIndex, _stringLength );
+    nextArg();
+    return token;
+  }
+
+  /**
+   * Return the region of an argument to bind as an argument. The region is replaced by the equal
+   * String from the pool supplied by the control for the descriptor if there is one, otherwise
+   * the original argument is returned when the region covers all of it.
+   *
+   * @param descriptor the descriptor of the option, or null for text arguments
+   * @param arg        the argument
+   * @param start      the index of the first character of the region
+   * @param end        the index after the last character of the region
+   * @return the value to bind
+   */
+  private CharSequence intern( final CLOptionDescriptor descriptor,
+                               final CharSequence arg,
+                               final int start,
+                               final int end )
+  {
+    final CLInternPool pool = null == _control ? null : _control.getInternPool( descriptor );
+    if ( null != pool )
+    {
+      return pool.intern( arg, start, end );
+    }
+    else
+    {
+      return 0 == start && arg.length() == end ? arg : arg.subSequence( start, end );
+    }
+  }
+
+  private void addOption( final CLOption option )
+  {
+    if ( null != _listener && 0 != option.getArgumentCount() )
+    {
+      //arguments are always bound by consuming the remainder of an argument
+      _listener.argumentBound( option, _argIndex - 1, System.nanoTime() );
+    }
+    _next = option;
+    _nextStart = _optionStart;
+    _lastOptionId = option.getId();
+    _option = null;
+  }
+
+  private void setState( final int state )
+  {
+    if ( null != _listener && state != _state )
     {
-      throw new ParseException( "Unknown option " + optionString, 0 );
+      _listener.stateChanged( STATES[ _state ], STATES[ state ], _argIndex, System.nanoTime() );
     }
+    _state = state;
+  }
+
+  /**
+   * Return the current position of the parser.
+   */
+  private long position()
+  {
+    return position( _argIndex, _stringIndex );
+  }
+
+  /**
+   * Return a position that packs the index of an argument and the offset of a character in the argument.
+   */
+  private static long position( final int argIndex, final int charOffset )
+  {
+    return ( (long) argIndex << 32 ) | charOffset;
+  }
+
+  /**
+   * Record an error involving the specified options.
+   *
+   * @return the exception to throw
+   */
+  private ParseException error( final CLErrorCode code,
+                                final long position,
+                                final CLOptionDescriptor descriptor,
+                                final CLOptionDescriptor otherDescriptor )
+  {
+    _error.set( code, (int) ( position >>> 32 ), (int) position, descriptor, otherDescriptor, _isLong );
+    return _exception;
+  }
+
+  /**
+   * Record an error involving the specified characters of the current argument.
+   *
+   * @return the exception to throw
+   */
+  private ParseException error( final CLErrorCode code, final long position, final int start, final int end )
+  {
+    _error.set( code, (int) ( position >>> 32 ), (int) position, null, null, _isLong );
+    _error.setText( _arg, start, end );
+    return _exception;
+  }
+
+  private CLOption createTextOption( final CharSequence text )
+  {
+    final CLOption option = new CLOption( (CLOptionDescriptor) null );
+    option.addArgument( text );
+    return option;
+  }
 
-    _state = getStateFor( descriptor );
+  private void parseOption( final CLOptionDescriptor descriptor )
+  {
+    if ( null != _listener )
+    {
+      _listener.optionRecognised( descriptor, (int) ( _optionStart >>> 32 ), System.nanoTime() );
+    }
+    setState( getStateFor( descriptor ) );
     _option = new CLOption( descriptor );
 
     if ( STATE_NORMAL == _state )
@@ -572,99 +1260,168 @@ public final class CLArgsParser
   private void parseShortOption()
     throws ParseException
   {
-    _ch = getChar();
-    final CLOptionDescriptor descriptor = getDescriptorFor( _ch );
+    _optionStart = position();
+    //consume the option character
+    _stringIndex++;
+    final CLOptionDescriptor descriptor = _activeSchema.getDescriptor( _ch );
     _isLong = false;
-    parseOption( descriptor, "-" + _ch );
+
+    if ( null == descriptor )
+    {
+      throw error( CLErrorCode.UNKNOWN_OPTION, _optionStart, _stringIndex - 1, _stringIndex );
+    }
+
+    parseOption( descriptor );
 
     if ( STATE_NORMAL == _state )
     {
-      _state = STATE_OPTION_MODE;
+      setState( STATE_OPTION_MODE );
+    }
+  }
+
+  private void parseLongOption()
+    throws ParseException
+  {
+    final CharSequence arg = _arg;
+    final int start = _stringIndex;
+    final int separator = indexOf( arg, '=', start );
+    final int end = -1 == separator ? _stringLength : separator;
+    _optionStart = position();
+    _isLong = true;
+    final CLOptionDescriptor descriptor = getLongOption( arg, start, end );
+
+    //consume the name and the separator that follows it
+    if ( -1 == separator )
+    {
+      nextArg();
+    }
+    else
+    {
+      _stringIndex = separator + 1;
+    }
+
+    parseOption( descriptor );
+  }
+
+  /**
+   * Find the descriptor for the long option named by a region of the argument.
+   *
+   * @return the descriptor
+   */
+  private CLOptionDescriptor getLongOption( final CharSequence arg, final int start, final int end )
+    throws ParseException
+  {
+    final CLOptionSchema schema = _activeSchema;
+    final CLOptionDescriptor descriptor = schema.getDescriptor( arg, start, end );
+    if ( null != descriptor )
+    {
+      return descriptor;
+    }
+    else if ( _prefixEnabled )
+    {
+      final int index = schema.findPrefix( arg, start, end );
+      if ( index >= 0 )
+      {
+        return schema.getDescriptorAt( index );
+      }
+      else if ( CLOptionSchema.AMBIGUOUS == index )
+      {
+        throw error( CLErrorCode.AMBIGUOUS_OPTION, _optionStart, start, end );
+      }
     }
+    throw error( CLErrorCode.UNKNOWN_OPTION, _optionStart, start, end );
   }
 
+
+
   private void parseArguments()
     throws ParseException
   {
     if ( STATE_REQUIRE_ARG == _state )
     {
-      if ( '=' == _ch || 0 == _ch )
+      if ( '=' == _ch )
+      {
+        _stringIndex++;
+      }
+      else if ( 0 == _ch )
       {
-        getChar();
+        nextArg();
       }
 
-      final Token token = nextToken( NULL_SEPARATORS );
-      _option.addArgument( token.getValue() );
+      _option.addArgument( nextToken( _option.getDescriptor() ) );
 
       addOption( _option );
-      _state = STATE_NORMAL;
+      setState( STATE_NORMAL );
     }
     else if ( STATE_OPTIONAL_ARG == _state )
     {
-      if ( '-' == _ch || 0 == _ch )
+      if ( 0 == _ch )
       {
-        getChar(); //consume stray character
+        nextArg();
         addOption( _option );
-        _state = STATE_NORMAL;
+        setState( STATE_NORMAL );
         return;
       }
 
       if ( '=' == _ch )
       {
-        getChar();
+        _stringIndex++;
       }
 
-      final Token token = nextToken( NULL_SEPARATORS );
-      _option.addArgument( token.getValue() );
+      _option.addArgument( nextToken( _option.getDescriptor() ) );
 
       addOption( _option );
-      _state = STATE_NORMAL;
+      setState( STATE_NORMAL );
     }
     else if ( STATE_REQUIRE_2ARGS == _state )
     {
-      if ( 0 == _option.getArgumentCount() )
+      if ( 0 == _ch || '=' == _ch )
       {
-        _argIndexForMultiArg = _argIndex;
-        final Token token = nextToken( ARG_SEPARATORS );
+        throw error( CLErrorCode.MALFORMED_ARGUMENT, position(), _option.getDescriptor(), null );
+      }
 
-        if ( Token.TOKEN_SEPARATOR == token.getType() )
-        {
-          final CLOptionDescriptor descriptor = getDescriptorFor( _option.getId() );
-          final String message =
-            "Unable to parse first argument for option " +
-            getOptionDescription( descriptor );
-          throw new ParseException( message, 0 );
-        }
-        else
-        {
-          _option.addArgument( token.getValue() );
-        }
+      final CharSequence arg = _arg;
+      final int separator = indexOf( arg, '=', _stringIndex );
+      if ( -1 == separator )
+      {
+        //the second argument defaults to empty when no separator is present
+        _option.addArguments( nextToken( _option.getDescriptor() ), "" );
       }
-      else //2nd argument
+      else
       {
-        final StringBuilder sb = new StringBuilder();
+        final CLOptionDescriptor descriptor = _option.getDescriptor();
+        final CharSequence name = intern( descriptor, arg, _stringIndex, separator );
+        _stringIndex = separator + 1;
+        _option.addArguments( name, nextToken( descriptor ) );
+      }
 
-        _ch = getChar();
-        if ( _argIndex != _argIndexForMultiArg && _ch != 0 )
-        {
-          _lastChar = _ch;
-        }
+      addOption( _option );
+      setState( STATE_NORMAL );
+    }
+  }
 
-        while ( _argIndex == _argIndexForMultiArg )
+  /**
+   * Return the index of the first occurrence of the character in the text at or after the start.
+   *
+   * @return the index, or -1 if the character does not occur
+   */
+  private static int indexOf( final CharSequence text, final char ch, final int start )
+  {
+    if ( text instanceof String )
+    {
+      return ( (String) text ).indexOf( ch, start );
+    }
+    else
+    {
+      final int length = text.length();
+      for ( int i = start; i < length; i++ )
+      {
+        if ( ch == text.charAt( i ) )
         {
-          sb.append( _ch );
-          _ch = getChar();
+          return i;
         }
-
-        final String argument = sb.toString();
-
-        //System.out.println( "Argument:" + argument );
-
-        _option.addArgument( argument );
-        addOption( _option );
-        _option = null;
-        _state = STATE_NORMAL;
       }
+      return -1;
     }
   }
 
@@ -676,69 +1433,158 @@ public final class CLArgsParser
   {
     if ( '-' != _ch )
     {
-      //Parse the arguments that are not options
-      final String argument = nextToken( NULL_SEPARATORS ).getValue();
-      addOption( new CLOption( argument ) );
-      _state = STATE_NORMAL;
+      if ( 0 == _ch && 0 != _stringIndex )
+      {
+        //nothing remains of a partially consumed argument such as "--all="
+        nextArg();
+      }
+      else if ( null != _commands && null == _command )
+      {
+        parseCommand();
+      }
+      else
+      {
+        //Parse the arguments that are not options
+        _optionStart = position();
+        addOption( createTextOption( nextToken( null ) ) );
+      }
     }
     else
     {
-      getChar(); // strip the -
+      _stringIndex++; // strip the -
+      _ch = peekAtChar();
 
-      if ( 0 == peekAtChar() )
+      if ( 0 == _ch )
+      {
+        throw error( CLErrorCode.MALFORMED_OPTION, position( _argIndex, _stringIndex - 1 ), null, null );
+      }
+      //if it is a short option then parse it else ...
+      else if ( '-' != _ch )
       {
-        throw new ParseException( "Malformed option -", 0 );
+        parseShortOption();
       }
       else
       {
-        _ch = peekAtChar();
+        _stringIndex++; // strip the -
+        //-- sequence .. it can either mean a change of state
+        //to STATE_NO_OPTIONS or else a long option
 
-        //if it is a short option then parse it else ...
-        if ( '-' != _ch )
+        if ( _stringIndex >= _stringLength )
         {
-          parseShortOption();
+          nextArg();
+          setState( STATE_NO_OPTIONS );
         }
         else
         {
-          getChar(); // strip the -
-          //-- sequence .. it can either mean a change of state
-          //to STATE_NO_OPTIONS or else a long option
-
-          if ( 0 == peekAtChar() )
-          {
-            getChar();
-            _state = STATE_NO_OPTIONS;
-          }
-          else
-          {
-            //its a long option
-            final String optionName = nextToken( ARG_SEPARATORS ).getValue();
-            final CLOptionDescriptor descriptor = getDescriptorFor( optionName );
-            _isLong = true;
-            parseOption( descriptor, "--" + optionName );
-          }
+          parseLongOption();
         }
       }
     }
   }
 
   /**
-   * Build the _optionIndex lookup map for the parsed options.
+   * Group the options of the last parse by descriptor if this has not already been done.
+   * The index is empty if the parse failed.
+   */
+  private void ensureIndexed()
+  {
+    if ( !_indexed )
+    {
+      _indexed = true;
+      final int groups = _schema.size() + 1 + ( null == _commandSchema ? 0 : _commandSchema.size() );
+      if ( _groupStart.length < groups + 2 )
+      {
+        _groupStart = new int[ groups + 2 ];
+        _present = new long[ ( groups + 63 ) >>> 6 ];
+      }
+      else
+      {
+        Arrays.fill( _groupStart, 0 );
+        Arrays.fill( _present, 0L );
+      }
+      if ( !_failed )
+      {
+        buildOptionIndex();
+      }
+    }
+  }
+
+  /**
+   * Parse the first text argument as the name of a command and parse the remaining
+   * arguments using the schema of the command.
    */
+  private void parseCommand()
+    throws ParseException
+  {
+    final CharSequence arg = _arg;
+    final String name = ( 0 == _stringIndex ? arg : arg.subSequence( _stringIndex, _stringLength ) ).toString();
+    final CLOptionSchema schema = _commands.getSchema( name );
+    if ( null == schema )
+    {
+      throw error( CLErrorCode.UNKNOWN_COMMAND, position(), _stringIndex, _stringLength );
+    }
+    nextArg();
+
+    _command = name;
+    _commandSchema = schema;
+    _commandOptionIndex = _options.size();
+    _activeSchema = schema;
+    _error.setSchema( schema );
+    final int words = schema.getWordCount();
+    if ( _commandSeen.length < words )
+    {
+      _commandSeen = new long[ words ];
+    }
+    else
+    {
+      Arrays.fill( _commandSeen, 0L );
+    }
+  }
+
   private void buildOptionIndex()
   {
     final int size = _options.size();
-    _id2Option = new HashMap<>( size * 2 );
-    _name2Option = new HashMap<>( size * 2 );
+    if ( _grouped.length < size )
+    {
+      _grouped = new CLOption[ size ];
+      _groupedList = Arrays.asList( _grouped );
+    }
 
-    for ( final CLOption option : _options )
+    //Count the options in each group offset by two so that after the prefix sum
+    //_groupStart[ group + 1 ] is the start of each group
+    final int[] groupStart = _groupStart;
+    for ( int i = 0; i < size; i++ )
     {
-      final CLOptionDescriptor descriptor = getDescriptorFor( option.getId() );
-      _id2Option.put( option.getId(), option );
-      if ( null != descriptor && null != descriptor.getName() )
-      {
-        _name2Option.put( descriptor.getName(), option );
-      }
+      final int group = getOptionGroup( i );
+      groupStart[ group + 2 ]++;
+      _present[ group >>> 6 ] |= 1L << group;
+    }
+    for ( int i = 2; i < groupStart.length; i++ )
+    {
+      groupStart[ i ] += groupStart[ i - 1 ];
+    }
+    //Placing each option advances the start of its group to the start of the next group
+    for ( int i = 0; i < size; i++ )
+    {
+      _grouped[ groupStart[ getOptionGroup( i ) + 1 ]++ ] = _options.get( i );
+    }
+  }
+
+  /**
+   * Return the group that the option at the specified index of _options is indexed under.
+   */
+  private int getOptionGroup( final int optionIndex )
+  {
+    final int id = _options.get( optionIndex ).getId();
+    if ( null != _commandSchema && optionIndex >= _commandOptionIndex )
+    {
+      //text arguments that follow the command share the group of text arguments
+      final int index = _commandSchema.getIndex( id );
+      return -1 == index ? getRootGroup( id ) : _schema.size() + 1 + index;
+    }
+    else
+    {
+      return getRootGroup( id );
     }
   }
 }
@@ -0,0 +1,358 @@
+package org.realityforge.getopt4j;
+
+/**
+ * A cursor that splits a command line into text arguments and the short and long forms of
+ * options according to the same rules as {@link CLArgsParser}.
+ *
+ * The cursor does not know which options exist or which arguments they accept. The caller
+ * identifies each option returned by {@link #next()} and then consumes its arguments by
+ * invoking {@link #requiredArgument()}, {@link #optionalArgument()} or
+ * {@link #requiredArguments()}. This is used by the parsers generated from classes annotated
+ * with {@link CLOptions} which resolve options using <code>switch</code> statements.
+ * A cursor is not thread-safe and is used for a single parse.
+ *
+ * @see CLOptions
+ */
+public final class CLArgumentCursor
+{
+  /**
+   * Returned by {@link #next()} when all the arguments have been consumed.
+   */
+  public static final int END = 0;
+  /**
+   * Returned by {@link #next()} when a text argument has been consumed.
+   * The text is retrieved via {@link #getText()}.
+   */
+  public static final int TEXT = 1;
+  /**
+   * Returned by {@link #next()} when the short form of an option has been consumed.
+   * The character is retrieved via {@link #getOptionChar()}.
+   */
+  public static final int SHORT_OPTION = 2;
+  /**
+   * Returned by {@link #next()} when the long form of an option has been consumed.
+   * The name is tested via {@link #getNameHashCode()} and {@link #isName(String)}.
+   */
+  public static final int LONG_OPTION = 3;
+  /**
+   * Returned by {@link #next()} when an argument consists of a single '-' character.
+   */
+  public static final int MALFORMED_OPTION = 4;
+
+  private final String[] _args;
+  private int _index;
+  private int _offset;
+  //True while the characters of an argument such as "-abc" are short options
+  private boolean _cluster;
+  //True once "--" has been consumed and the remaining arguments are text
+  private boolean _noOptions;
+  private String _text;
+  private char _optionChar;
+  private String _name;
+  private int _nameStart;
+  private int _nameEnd;
+  private String _argument;
+  private String _secondArgument;
+
+  /**
+   * Create a cursor positioned at the start of the specified args.
+   *
+   * @param args the args
+   */
+  public CLArgumentCursor( final String[] args )
+  {
+    _args = args;
+  }
+
+  /**
+   * Consume the next text argument or option.
+   *
+   * @return one of {@link #END}, {@link #TEXT}, {@link #SHORT_OPTION}, {@link #LONG_OPTION}
+   * or {@link #MALFORMED_OPTION}
+   */
+  public int next()
+  {
+    while ( !isAtEnd() )
+    {
+      final String arg = _args[ _index ];
+      final char ch = peekAtChar();
+      if ( _noOptions )
+      {
+        _text = arg;
+        nextArg();
+        return TEXT;
+      }
+      else if ( _cluster )
+      {
+        if ( 0 == ch )
+        {
+          nextArg();
+        }
+        else
+        {
+          _offset++;
+          _optionChar = ch;
+          return SHORT_OPTION;
+        }
+      }
+      else if ( '-' != ch )
+      {
+        if ( 0 == ch && 0 != _offset )
+        {
+          //nothing remains of a partially consumed argument such as "--all="
+          nextArg();
+        }
+        else
+        {
+          _text = nextToken();
+          return TEXT;
+        }
+      }
+      else
+      {
+        _offset++;
+        final char option = peekAtChar();
+        if ( 0 == option )
+        {
+          return MALFORMED_OPTION;
+        }
+        else if ( '-' != option )
+        {
+          _offset++;
+          _optionChar = option;
+          _cluster = true;
+          return SHORT_OPTION;
+        }
+        else if ( ++_offset >= arg.length() )
+        {
+          nextArg();
+          _noOptions = true;
+        }
+        else
+        {
+          final int separator = arg.indexOf( '=', _offset );
+          _name = arg;
+          _nameStart = _offset;
+          _nameEnd = -1 == separator ? arg.length() : separator;
+          //consume the name and the separator that follows it
+          if ( -1 == separator )
+          {
+            nextArg();
+          }
+          else
+          {
+            _offset = separator + 1;
+          }
+          return LONG_OPTION;
+        }
+      }
+    }
+    return END;
+  }
+
+  /**
+   * Return the text argument consumed by {@link #next()}.
+   *
+   * @return the text argument
+   */
+  public String getText()
+  {
+    return _text;
+  }
+
+  /**
+   * Return the short form of the option consumed by {@link #next()}.
+   *
+   * @return the option character
+   */
+  public char getOptionChar()
+  {
+    return _optionChar;
+  }
+
+  /**
+   * Return the hash code of the long form of the option consumed by {@link #next()}.
+   * This is equal to the {@link String#hashCode()} of the name.
+   *
+   * @return the hash code of the name
+   */
+  public int getNameHashCode()
+  {
+    int hash = 0;
+    for ( int i = _nameStart; i < _nameEnd; i++ )
+    {
+      hash = 31 * hash + _name.charAt( i );
+    }
+    return hash;
+  }
+
+  /**
+   * Return true if the long form of the option consumed by {@link #next()} is the specified name.
+   *
+   * @param name the name
+   * @return true if the option has the specified name
+   */
+  public boolean isName( final String name )
+  {
+    final int length = name.length();
+    return _nameEnd - _nameStart == length && _name.regionMatches( _nameStart, name, 0, length );
+  }
+
+  /**
+   * Consume the argument of an option that requires one argument.
+   * The argument is retrieved via {@link #getArgument()}.
+   *
+   * @return false if the argument is missing
+   */
+  public boolean requiredArgument()
+  {
+    _cluster = false;
+    if ( isAtEnd() )
+    {
+      return false;
+    }
+    final char ch = peekAtChar();
+    if ( '=' == ch )
+    {
+      _offset++;
+    }
+    else if ( 0 == ch )
+    {
+      nextArg();
+    }
+    _argument = nextToken();
+    return true;
+  }
+
+  /**
+   * Consume the argument of an option that accepts an optional argument.
+   *
+   * @return the argument or null if the option has no argument
+   */
+  public String optionalArgument()
+  {
+    _cluster = false;
+    if ( isAtEnd() )
+    {
+      return null;
+    }
+    final char ch = peekAtChar();
+    if ( '-' == ch )
+    {
+      return null;
+    }
+    else if ( 0 == ch )
+    {
+      nextArg();
+      return null;
+    }
+    else
+    {
+      if ( '=' == ch )
+      {
+        _offset++;
+      }
+      return nextToken();
+    }
+  }
+
+  /**
+   * Consume the arguments of an option that requires two arguments such as "-Dname=value".
+   * The arguments are retrieved via {@link #getArgument()} and {@link #getSecondArgument()}.
+   *
+   * @return false if the arguments are missing or malformed
+   */
+  public boolean requiredArguments()
+  {
+    _cluster = false;
+    if ( isAtEnd() )
+    {
+      return false;
+    }
+    final char ch = peekAtChar();
+    if ( 0 == ch || '=' == ch )
+    {
+      return false;
+    }
+    final String arg = _args[ _index ];
+    final int separator = arg.indexOf( '=', _offset );
+    if ( -1 == separator )
+    {
+      //the second argument defaults to empty when no separator is present
+      _argument = nextToken();
+      _secondArgument = "";
+    }
+    else
+    {
+      _argument = arg.substring( _offset, separator );
+      _offset = separator + 1;
+      _secondArgument = nextToken();
+    }
+    return true;
+  }
+
+  /**
+   * Return the argument consumed by {@link #requiredArgument()} or {@link #requiredArguments()}.
+   *
+   * @return the argument
+   */
+  public String getArgument()
+  {
+    return _argument;
+  }
+
+  /**
+   * Return the second argument consumed by {@link #requiredArguments()}.
+   *
+   * @return the second argument
+   */
+  public String getSecondArgument()
+  {
+    return _secondArgument;
+  }
+
+  /**
+   * Return true if all the characters of all the arguments have been consumed.
+   */
+  private boolean isAtEnd()
+  {
+    return _index >= _args.length ||
+           null == _args[ _index ] ||
+           ( _offset >= _args[ _index ].length() && _index + 1 >= _args.length );
+  }
+
+  /**
+   * Return the current character or 0 if the current argument has been consumed.
+   */
+  private char peekAtChar()
+  {
+    final String arg = _args[ _index ];
+    return _offset < arg.length() ? arg.charAt( _offset ) : 0;
+  }
+
+  /**
+   * Move to the start of the next argument.
+   */
+  private void nextArg()
+  {
+    _index++;
+    _offset = 0;
+    _cluster = false;
+  }
+
+  /**
+   * Consume the remainder of the current argument and return it.
+   * The original argument is returned when none of it has been consumed.
+   */
+  private String nextToken()
+  {
+    if ( _index >= _args.length )
+    {
+      return null;
+    }
+    final String arg = _args[ _index ];
+    final String token = 0 == _offset ? arg : arg.substring( _offset );
+    nextArg();
+    return token;
+  }
+}
@@ -0,0 +1,70 @@
+package org.realityforge.getopt4j;
+
+import java.text.ParseException;
+
+/**
+ * Exception thrown when the argument of an option can not be converted to the requested type.
+ * The error offset is the index of the character in the argument at which decoding failed.
+ *
+ * @see CLOption
+ */
+public final class CLArgumentException
+  extends ParseException
+{
+  private static final long serialVersionUID = 1L;
+
+  private final transient CLOptionDescriptor _descriptor;
+  private final int _argumentIndex;
+  private final String _argument;
+
+  /**
+   * Constructor.
+   *
+   * @param message       the error message
+   * @param descriptor    the descriptor of the option, or null for a text argument
+   * @param argumentIndex the index of the argument within the option
+   * @param argument      the argument, or null if the argument was not supplied
+   * @param errorOffset   the index of the character in the argument at which decoding failed
+   */
+  public CLArgumentException( final String message,
+                              final CLOptionDescriptor descriptor,
+                              final int argumentIndex,
+                              final String argument,
+                              final int errorOffset )
+  {
+    super( message, errorOffset );
+    _descriptor = descriptor;
+    _argumentIndex = argumentIndex;
+    _argument = argument;
+  }
+
+  /**
+   * Retrieve the descriptor of the option whose argument was malformed.
+   *
+   * @return the descriptor, or null if the option is a text argument
+   */
+  public CLOptionDescriptor getDescriptor()
+  {
+    return _descriptor;
+  }
+
+  /**
+   * Retrieve the index of the malformed argument within the option.
+   *
+   * @return the argument index
+   */
+  public int getArgumentIndex()
+  {
+    return _argumentIndex;
+  }
+
+  /**
+   * Retrieve the malformed argument.
+   *
+   * @return the argument, or null if the argument was not supplied
+   */
+  public String getArgument()
+  {
+    return _argument;
+  }
+}
@@ -0,0 +1,142 @@
+package org.realityforge.getopt4j;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Parses batches of command lines in parallel using a shared schema.
+ *
+ * The command lines are divided into ranges that are parsed by the threads of a {@link ForkJoinPool}.
+ * Each range is parsed by a single {@link CLArgsParser} that reuses its scratch buffers for all the
+ * command lines in the range and snapshots the result of each parse into an immutable
+ * {@link CLParseResult}. The parser is discarded when the range is complete so that no parser is
+ * retained by the threads of the pool.
+ * The results are returned in the same order as the command lines. A command line that fails
+ * to parse produces a result with an error string rather than aborting the batch.
+ *
+ * The {@link ParserControl}, if any, is invoked concurrently from many threads and must be
+ * thread-safe.
+ *
+ * @see CLArgsParser#parse(String[], CLOptionSchema, ParserControl)
+ */
+public final class CLBatchParser
+{
+  //The number of tasks created per thread to balance command lines of differing lengths
+  private static final int TASKS_PER_THREAD = 8;
+
+  private final CLOptionSchema _schema;
+  private final ParserControl _control;
+
+  /**
+   * Create a batch parser.
+   *
+   * @param schema  the compiled option schema
+   * @param control the parser control used determine behaviour of parser, may be null
+   */
+  public CLBatchParser( final CLOptionSchema schema, final ParserControl control )
+  {
+    _schema = schema;
+    _control = control;
+  }
+
+  /**
+   * Create a batch parser.
+   *
+   * @param schema the compiled option schema
+   */
+  public CLBatchParser( final CLOptionSchema schema )
+  {
+    this( schema, null );
+  }
+
+  /**
+   * Parse the command lines using the common fork-join pool.
+   *
+   * @param commandLines the command lines
+   * @return the results in the same order as the command lines
+   */
+  public List<CLParseResult> parse( final List<String[]> commandLines )
+  {
+    return parse( commandLines, ForkJoinPool.commonPool() );
+  }
+
+  /**
+   * Parse the command lines using the specified fork-join pool.
+   *
+   * @param commandLines the command lines
+   * @param pool         the pool whose threads parse the command lines
+   * @return the results in the same order as the command lines
+   */
+  public List<CLParseResult> parse( final List<String[]> commandLines, final ForkJoinPool pool )
+  {
+    final String[][] args = commandLines.toArray( new String[ commandLines.size() ][] );
+    final CLParseResult[] results = new CLParseResult[ args.length ];
+    final int threshold = Math.max( 1, args.length / ( pool.getParallelism() * TASKS_PER_THREAD ) );
+    pool.invoke( new ParseTask( args, results, 0, args.length, threshold ) );
+    return Arrays.asList( results );
+  }
+
+  /**
+   * Parse a stream of command lines in parallel.
+   * The stream is collected and then parsed in the common fork-join pool and the results are in encounter order.
+   *
+   * @param commandLines the command lines
+   * @return the results in the same order as the command lines
+   */
+  public List<CLParseResult> parse( final Stream<String[]> commandLines )
+  {
+    return parse( commandLines.collect( Collectors.toList() ) );
+  }
+
+  /**
+   * Task that parses a range of command lines, splitting the range until it is below the threshold.
+   */
+  private final class ParseTask
+    extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final String[][] _args;
+    private final CLParseResult[] _results;
+    private final int _start;
+    private final int _end;
+    private final int _threshold;
+
+    ParseTask( final String[][] args,
+               final CLParseResult[] results,
+               final int start,
+               final int end,
+               final int threshold )
+    {
+      _args = args;
+      _results = results;
+      _start = start;
+      _end = end;
+      _threshold = threshold;
+    }
+
+    @Override
+    protected void compute()
+    {
+      if ( _end - _start <= _threshold )
+      {
+        final CLArgsParser parser = new CLArgsParser( _schema, _control );
+        for ( int i = _start; i < _end; i++ )
+        {
+          parser.reset( _args[ i ] );
+          _results[ i ] = parser.createResult();
+        }
+      }
+      else
+      {
+        final int middle = ( _start + _end ) >>> 1;
+        invokeAll( new ParseTask( _args, _results, _start, middle, _threshold ),
+                   new ParseTask( _args, _results, middle, _end, _threshold ) );
+      }
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package org.realityforge.getopt4j;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * A registry of the subcommands of a command line tool such as "commit" in "git commit -a".
+ *
+ * Each command is registered with a supplier of the descriptors of its options. The
+ * supplier is not invoked until the command is first used and the compiled schema is
+ * retained so that tools with many commands only pay for the schema of the command
+ * that is invoked.
+ *
+ * Commands must be registered before the registry is shared between threads. Once
+ * registration is complete the registry may be used by many parsers concurrently.
+ *
+ * @see CLArgsParser#CLArgsParser(CLOptionSchema, CLCommandRegistry, ParserControl)
+ */
+public final class CLCommandRegistry
+{
+  private final Map<String, Command> _commands = new LinkedHashMap<>();
+
+  /**
+   * Register a command.
+   *
+   * @param name        the name of the command
+   * @param descriptors the supplier of the descriptors of the options of the command
+   */
+  public void register( final String name, final Supplier<CLOptionDescriptor[]> descriptors )
+  {
+    if ( null == name || name.isEmpty() || '-' == name.charAt( 0 ) )
+    {
+      throw new IllegalArgumentException( "Invalid command name " + name );
+    }
+    else if ( _commands.containsKey( name ) )
+    {
+      throw new IllegalStateException( "Duplicate command " + name );
+    }
+    _commands.put( name, new Command( descriptors ) );
+  }
+
+  /**
+   * Retrieve the names of the commands in the order that they were registered.
+   *
+   * @return an unmodifiable set of command names
+   */
+  public Set<String> getNames()
+  {
+    return Collections.unmodifiableSet( _commands.keySet() );
+  }
+
+  /**
+   * Return true if a command with the specified name has been registered.
+   *
+   * @param name the name of the command
+   * @return true if the command has been registered
+   */
+  public boolean isCommand( final String name )
+  {
+    return _commands.containsKey( name );
+  }
+
+  /**
+   * Retrieve the schema of the command with the specified name, compiling it if this is the first use.
+   *
+   * @param name the name of the command
+   * @return the schema, or null if no command with the name has been registered
+   */
+  public CLOptionSchema getSchema( final String name )
+  {
+    final Command command = _commands.get( name );
+    return null == command ? null : command.getSchema();
+  }
+
+  private static final class Command
+  {
+    private final Supplier<CLOptionDescriptor[]> _descriptors;
+    //Racing threads may each compile the schema but the schemas are equivalent so either may be retained
+    private volatile CLOptionSchema _schema;
+
+    Command( final Supplier<CLOptionDescriptor[]> descriptors )
+    {
+      _descriptors = descriptors;
+    }
+
+    CLOptionSchema getSchema()
+    {
+      CLOptionSchema schema = _schema;
+      if ( null == schema )
+      {
+        schema = new CLOptionSchema( _descriptors.get() );
+        _schema = schema;
+      }
+      return schema;
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package org.realityforge.getopt4j;
+
+/**
+ * The kinds of error that can occur while parsing a command line.
+ *
+ * @see CLParseError
+ */
+public enum CLErrorCode
+{
+  /**
+   * An option that is not described by any descriptor.
+   */
+  UNKNOWN_OPTION,
+  /**
+   * A prefix of a long option that is shared by several long options.
+   */
+  AMBIGUOUS_OPTION,
+  /**
+   * A '-' character that is not followed by an option.
+   */
+  MALFORMED_OPTION,
+  /**
+   * The command line ended before the argument to an option.
+   */
+  MISSING_ARGUMENT,
+  /**
+   * The argument to an option that requires two arguments is empty or starts with a separator.
+   */
+  MALFORMED_ARGUMENT,
+  /**
+   * An option that does not allow duplicates occurred more than once.
+   */
+  DUPLICATE_OPTION,
+  /**
+   * An option occurred with an option that it is incompatible with.
+   */
+  INCOMPATIBLE_OPTIONS,
+  /**
+   * An argument file could not be read or was malformed.
+   */
+  ARGUMENT_FILE,
+  /**
+   * The first text argument does not name a command in the {@link CLCommandRegistry}.
+   */
+  UNKNOWN_COMMAND,
+  /**
+   * A configuration file could not be read or an environment variable or configuration file
+   * specified an invalid value for an option.
+   */
+  SOURCE
+}
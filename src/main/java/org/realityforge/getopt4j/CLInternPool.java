@@ -0,0 +1,197 @@
+package org.realityforge.getopt4j;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded pool of Strings used to share a single instance of option arguments that repeat.
+ *
+ * Applications that retain many parsed options with the same arguments, such as
+ * "--queue=default", can supply a pool via {@link ParserControl#getInternPool(CLOptionDescriptor)}
+ * so that the options share one String rather than each holding a copy. The pool is a direct
+ * mapped table where each value hashes to a single slot and replaces any other value in that
+ * slot, so the most recently used values are retained and the memory used is bounded by the
+ * capacity. The parser compares the characters of an argument in place with the pooled value
+ * via {@link #intern(CharSequence, int, int)} so an argument that is found in the pool does
+ * not allocate.
+ *
+ * The pool may be shared by parsers in many threads. Concurrent updates of a slot may cause a
+ * value to be evicted early but never cause the wrong value to be returned.
+ */
+public final class CLInternPool
+{
+  //Arguments longer than this are rarely repeated and are not worth hashing
+  private static final int DEFAULT_MAX_LENGTH = 256;
+
+  //Strings are immutable so slots may be read and written without synchronization
+  private final String[] _table;
+  private final int _mask;
+  private final int _maxLength;
+  private final LongAdder _hits = new LongAdder();
+  private final LongAdder _misses = new LongAdder();
+
+  /**
+   * Create a pool that retains at most the specified number of values.
+   *
+   * @param capacity the capacity which is rounded up to a power of two
+   */
+  public CLInternPool( final int capacity )
+  {
+    this( capacity, DEFAULT_MAX_LENGTH );
+  }
+
+  /**
+   * Create a pool that retains at most the specified number of values no longer than the maximum length.
+   *
+   * @param capacity  the capacity which is rounded up to a power of two
+   * @param maxLength the length of the longest value that is pooled
+   */
+  public CLInternPool( final int capacity, final int maxLength )
+  {
+    if ( capacity < 1 || capacity > 1 << 30 )
+    {
+      throw new IllegalArgumentException( "Capacity must be between 1 and 2^30 but was " + capacity );
+    }
+    final int size = 1 == capacity ? 1 : Integer.highestOneBit( capacity - 1 ) << 1;
+    _table = new String[ size ];
+    _mask = size - 1;
+    _maxLength = maxLength;
+  }
+
+  /**
+   * Return the pooled String equal to the value, adding the value to the pool if it is not present.
+   * Values longer than the maximum length are converted into a String without being pooled.
+   *
+   * @param value the value
+   * @return a String equal to the value
+   */
+  public String intern( final CharSequence value )
+  {
+    return intern( value, 0, value.length() );
+  }
+
+  /**
+   * Return the pooled String equal to the specified region of the value, adding the region to
+   * the pool if it is not present. The region is hashed and compared in place so no object is
+   * created unless the region is not present in the pool.
+   *
+   * @param value the value
+   * @param start the index of the first character of the region
+   * @param end   the index after the last character of the region
+   * @return a String equal to the region
+   */
+  public String intern( final CharSequence value, final int start, final int end )
+  {
+    final int length = end - start;
+    if ( length > _maxLength )
+    {
+      return value.subSequence( start, end ).toString();
+    }
+    final int hash = hash( value, start, end );
+    final int slot = ( hash ^ ( hash >>> 16 ) ) & _mask;
+    final String candidate = _table[ slot ];
+    if ( null != candidate && candidate.hashCode() == hash && matches( candidate, value, start, length ) )
+    {
+      _hits.increment();
+      return candidate;
+    }
+    else
+    {
+      final String string = value.subSequence( start, end ).toString();
+      _table[ slot ] = string;
+      _misses.increment();
+      return string;
+    }
+  }
+
+  /**
+   * Retrieve the number of values that were found in the pool.
+   *
+   * @return the number of hits
+   */
+  public long getHitCount()
+  {
+    return _hits.sum();
+  }
+
+  /**
+   * Retrieve the number of values that were not found in the pool and were added.
+   *
+   * @return the number of misses
+   */
+  public long getMissCount()
+  {
+    return _misses.sum();
+  }
+
+  /**
+   * Retrieve the proportion of pooled values that were found in the pool.
+   *
+   * @return the hit rate from 0 to 1, or 0 if no values have been pooled
+   */
+  public double getHitRate()
+  {
+    final long hits = getHitCount();
+    final long total = hits + getMissCount();
+    return 0 == total ? 0 : (double) hits / total;
+  }
+
+  /**
+   * Discard the pooled values and reset the hit and miss counts.
+   */
+  public void clear()
+  {
+    for ( int i = 0; i < _table.length; i++ )
+    {
+      _table[ i ] = null;
+    }
+    _hits.reset();
+    _misses.reset();
+  }
+
+  /**
+   * Return the hash code that a String with the same characters as the region would have.
+   */
+  private static int hash( final CharSequence value, final int start, final int end )
+  {
+    if ( value instanceof String && 0 == start && value.length() == end )
+    {
+      //the hash code of a String is cached
+      return value.hashCode();
+    }
+    else
+    {
+      int hash = 0;
+      for ( int i = start; i < end; i++ )
+      {
+        hash = 31 * hash + value.charAt( i );
+      }
+      return hash;
+    }
+  }
+
+  /**
+   * Return true if the candidate has the same characters as the region.
+   */
+  private static boolean matches( final String candidate, final CharSequence value, final int start, final int length )
+  {
+    if ( candidate.length() != length )
+    {
+      return false;
+    }
+    else if ( value instanceof String )
+    {
+      return candidate.regionMatches( 0, (String) value, start, length );
+    }
+    else
+    {
+      for ( int i = 0; i < length; i++ )
+      {
+        if ( candidate.charAt( i ) != value.charAt( start + i ) )
+        {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -4,6 +4,10 @@ import java.util.Arrays;
 
 /**
  * Basic class describing an instance of option.
+ *
+ * When the parser is supplied with {@link CharSequence} arguments the option arguments
+ * are retained as views of the original character sequences. A view is only converted
+ * into a String the first time that it is retrieved via {@link #getArgument(int)}.
  */
 public final class CLOption
 {
@@ -12,7 +16,8 @@ public final class CLOption
    */
   public static final int TEXT_ARGUMENT = 0;
 
-  private String[] _arguments;
+  //Elements are Strings or views that are replaced by a String when first retrieved
+  private CharSequence[] _arguments;
   private CLOptionDescriptor _descriptor;
 
   /**
@@ -33,6 +38,37 @@ public final class CLOption
    * @return the argument
    */
   public String getArgument( final int index )
+  {
+    if ( null == _arguments || index < 0 || index >= _arguments.length )
+    {
+      return null;
+    }
+    else
+    {
+      final CharSequence argument = _arguments[ index ];
+      if ( null == argument || argument instanceof String )
+      {
+        return (String) argument;
+      }
+      else
+      {
+        final String value = argument.toString();
+        _arguments[ index ] = value;
+        return value;
+      }
+    }
+  }
+
+  /**
+   * Retrieve indexed argument to option without converting it into a String.
+   * The result may be a view of the character sequence that the argument was parsed from
+   * and is only valid for as long as the underlying characters remain unchanged.
+   *
+   * @param index The argument index, from 0 to
+   *              {@link #getArgumentCount()}-1.
+   * @return the argument
+   */
+  public CharSequence getArgumentSequence( final int index )
   {
     if ( null == _arguments || index < 0 || index >= _arguments.length )
     {
@@ -44,6 +80,152 @@ public final class CLOption
     }
   }
 
+  /**
+   * Retrieve indexed argument to option as an int.
+   * The argument is an optionally signed decimal number.
+   *
+   * @param index The argument index, from 0 to
+   *              {@link #getArgumentCount()}-1.
+   * @return the value of the argument
+   * @throws CLArgumentException if the argument is missing or is not a valid int
+   */
+  public int getIntArgument( final int index )
+    throws CLArgumentException
+  {
+    final CharSequence argument = requireArgument( index );
+    return (int) decodeInteger( index, argument, argument.length(), Integer.MIN_VALUE, Integer.MAX_VALUE, "integer" );
+  }
+
+  /**
+   * Retrieve indexed argument to option as a long.
+   * The argument is an optionally signed decimal number.
+   *
+   * @param index The argument index, from 0 to
+   *              {@link #getArgumentCount()}-1.
+   * @return the value of the argument
+   * @throws CLArgumentException if the argument is missing or is not a valid long
+   */
+  public long getLongArgument( final int index )
+    throws CLArgumentException
+  {
+    final CharSequence argument = requireArgument( index );
+    return decodeInteger( index, argument, argument.length(), Long.MIN_VALUE, Long.MAX_VALUE, "integer" );
+  }
+
+  /**
+   * Retrieve indexed argument to option as a boolean.
+   * The values "true", "yes" and "on" are true while "false", "no" and "off" are false.
+   * Case is ignored.
+   *
+   * @param index The argument index, from 0 to
+   *              {@link #getArgumentCount()}-1.
+   * @return the value of the argument
+   * @throws CLArgumentException if the argument is missing or is not a valid boolean
+   */
+  public boolean getBooleanArgument( final int index )
+    throws CLArgumentException
+  {
+    final CharSequence argument = requireArgument( index );
+    if ( regionMatches( argument, 0, "true" ) ||
+         regionMatches( argument, 0, "yes" ) ||
+         regionMatches( argument, 0, "on" ) )
+    {
+      return true;
+    }
+    else if ( regionMatches( argument, 0, "false" ) ||
+              regionMatches( argument, 0, "no" ) ||
+              regionMatches( argument, 0, "off" ) )
+    {
+      return false;
+    }
+    else
+    {
+      throw invalidArgument( index, argument, 0, "boolean" );
+    }
+  }
+
+  /**
+   * Retrieve indexed argument to option as a size in bytes.
+   * The argument is a non-negative decimal number optionally followed by one of the
+   * suffixes 'k', 'm', 'g' or 't' (in either case) that multiply the number by 2^10,
+   * 2^20, 2^30 and 2^40 respectively. i.e. "64m" is 67108864.
+   *
+   * @param index The argument index, from 0 to
+   *              {@link #getArgumentCount()}-1.
+   * @return the number of bytes
+   * @throws CLArgumentException if the argument is missing or is not a valid size
+   */
+  public long getSizeArgument( final int index )
+    throws CLArgumentException
+  {
+    final CharSequence argument = requireArgument( index );
+    final int length = argument.length();
+    final int shift = 0 == length ? 0 : getSizeShift( argument.charAt( length - 1 ) );
+    final int end = 0 == shift ? length : length - 1;
+    final long value = decodeInteger( index, argument, end, 0, Long.MAX_VALUE, "size" );
+    if ( value > ( Long.MAX_VALUE >> shift ) )
+    {
+      throw invalidArgument( index, argument, 0, "size" );
+    }
+    return value << shift;
+  }
+
+  /**
+   * Retrieve indexed argument to option as a duration in milliseconds.
+   * The argument is a non-negative decimal number optionally followed by one of the
+   * units "ms", "s", "m", "h" or "d". A number without a unit is in milliseconds.
+   * i.e. "30s" is 30000.
+   *
+   * @param index The argument index, from 0 to
+   *              {@link #getArgumentCount()}-1.
+   * @return the duration in milliseconds
+   * @throws CLArgumentException if the argument is missing or is not a valid duration
+   */
+  public long getDurationArgument( final int index )
+    throws CLArgumentException
+  {
+    final CharSequence argument = requireArgument( index );
+    final int length = argument.length();
+    int end = length;
+    while ( end > 0 && Character.isLetter( argument.charAt( end - 1 ) ) )
+    {
+      end--;
+    }
+
+    final long multiplier;
+    if ( end == length || regionMatches( argument, end, "ms" ) )
+    {
+      multiplier = 1;
+    }
+    else if ( regionMatches( argument, end, "s" ) )
+    {
+      multiplier = 1000L;
+    }
+    else if ( regionMatches( argument, end, "m" ) )
+    {
+      multiplier = 60L * 1000L;
+    }
+    else if ( regionMatches( argument, end, "h" ) )
+    {
+      multiplier = 60L * 60L * 1000L;
+    }
+    else if ( regionMatches( argument, end, "d" ) )
+    {
+      multiplier = 24L * 60L * 60L * 1000L;
+    }
+    else
+    {
+      throw invalidArgument( index, argument, end, "duration" );
+    }
+
+    final long value = decodeInteger( index, argument, end, 0, Long.MAX_VALUE, "duration" );
+    if ( value > Long.MAX_VALUE / multiplier )
+    {
+      throw invalidArgument( index, argument, 0, "duration" );
+    }
+    return value * multiplier;
+  }
+
   /**
    * Retrieve id of option.
    *
@@ -88,20 +270,50 @@ public final class CLOption
    * @param argument the argument
    */
   public void addArgument( final String argument )
+  {
+    addArgument( (CharSequence) argument );
+  }
+
+  /**
+   * Add an argument that may be a view of a larger character sequence.
+   *
+   * @param argument the argument
+   */
+  void addArgument( final CharSequence argument )
   {
     if ( null == _arguments )
     {
-      _arguments = new String[]{ argument };
+      _arguments = new CharSequence[]{ argument };
     }
     else
     {
-      final String[] arguments = new String[ _arguments.length + 1 ];
+      final CharSequence[] arguments = new CharSequence[ _arguments.length + 1 ];
       System.arraycopy( _arguments, 0, arguments, 0, _arguments.length );
       arguments[ _arguments.length ] = argument;
       _arguments = arguments;
     }
   }
 
+  /**
+   * Add a pair of arguments to the option.
+   * This avoids the intermediate array that results from adding the arguments one at a time.
+   *
+   * @param argument1 the first argument
+   * @param argument2 the second argument
+   */
+  void addArguments( final CharSequence argument1, final CharSequence argument2 )
+  {
+    if ( null == _arguments )
+    {
+      _arguments = new CharSequence[]{ argument1, argument2 };
+    }
+    else
+    {
+      addArgument( argument1 );
+      addArgument( argument2 );
+    }
+  }
+
   /**
    * Get number of arguments.
    *
@@ -119,6 +331,136 @@ public final class CLOption
     }
   }
 
+  private CharSequence requireArgument( final int index )
+    throws CLArgumentException
+  {
+    final CharSequence argument = getArgumentSequence( index );
+    if ( null == argument )
+    {
+      final String message = "Missing argument " + index + describeOption();
+      throw new CLArgumentException( message, _descriptor, index, null, 0 );
+    }
+    return argument;
+  }
+
+  /**
+   * Decode a decimal number from the characters of the argument before the end index.
+   * The value is accumulated as a negative number so that the minimum value can be decoded
+   * without overflow.
+   */
+  private long decodeInteger( final int index,
+                              final CharSequence argument,
+                              final int end,
+                              final long min,
+                              final long max,
+                              final String type )
+    throws CLArgumentException
+  {
+    int i = 0;
+    boolean negative = false;
+    long limit = -max;
+    if ( end > 0 )
+    {
+      final char ch = argument.charAt( 0 );
+      if ( '-' == ch && min < 0 )
+      {
+        negative = true;
+        limit = min;
+        i++;
+      }
+      else if ( '+' == ch )
+      {
+        i++;
+      }
+    }
+    if ( i == end )
+    {
+      throw invalidArgument( index, argument, i, type );
+    }
+
+    final long multiplyLimit = limit / 10;
+    long result = 0;
+    for ( ; i < end; i++ )
+    {
+      final int digit = argument.charAt( i ) - '0';
+      if ( digit < 0 || digit > 9 || result < multiplyLimit )
+      {
+        throw invalidArgument( index, argument, i, type );
+      }
+      result *= 10;
+      if ( result < limit + digit )
+      {
+        throw invalidArgument( index, argument, i, type );
+      }
+      result -= digit;
+    }
+    return negative ? result : -result;
+  }
+
+  private CLArgumentException invalidArgument( final int index,
+                                               final CharSequence argument,
+                                               final int offset,
+                                               final String type )
+  {
+    final String value = argument.toString();
+    final String message = "Invalid " + type + " argument '" + value + "'" + describeOption();
+    return new CLArgumentException( message, _descriptor, index, value, offset );
+  }
+
+  private String describeOption()
+  {
+    if ( null == _descriptor )
+    {
+      return "";
+    }
+    else if ( null != _descriptor.getName() )
+    {
+      return " to option --" + _descriptor.getName();
+    }
+    else
+    {
+      return " to option -" + (char) _descriptor.getId();
+    }
+  }
+
+  private static int getSizeShift( final char unit )
+  {
+    switch ( Character.toLowerCase( unit ) )
+    {
+      case 'k':
+        return 10;
+      case 'm':
+        return 20;
+      case 'g':
+        return 30;
+      case 't':
+        return 40;
+      default:
+        return 0;
+    }
+  }
+
+  /**
+   * Return true if the characters of the argument from the start index to the end
+   * are equal to the value, ignoring case.
+   */
+  private static boolean regionMatches( final CharSequence argument, final int start, final String value )
+  {
+    final int length = value.length();
+    if ( argument.length() - start != length )
+    {
+      return false;
+    }
+    for ( int i = 0; i < length; i++ )
+    {
+      if ( Character.toLowerCase( argument.charAt( start + i ) ) != value.charAt( i ) )
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Convert to String.
    *
@@ -0,0 +1,70 @@
+package org.realityforge.getopt4j;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Target;
+
+/**
+ * Describes the option that is assigned to a field of a class annotated with {@link CLOptions}.
+ * The members correspond to the parameters of the {@link CLOptionDescriptor} constructor.
+ *
+ * The type of the field determines the value that is assigned when the option occurs.
+ * A <code>boolean</code> is set to true, a <code>String</code> is set to the argument,
+ * an <code>int</code> or <code>long</code> is set to the argument decoded as by
+ * {@link CLOption#getIntArgument(int)} or {@link CLOption#getLongArgument(int)}, a
+ * <code>List&lt;String&gt;</code> is set to the arguments of every occurrence and a
+ * <code>Map&lt;String, String&gt;</code> is set to the name and value pairs of an option
+ * that requires two arguments. When an option occurs more than once the last occurrence
+ * is assigned to the scalar types. Fields of options that do not occur are not modified.
+ *
+ * @see CLOptions
+ */
+@Documented
+@Target( ElementType.FIELD )
+public @interface CLOptionField
+{
+  /**
+   * Return the id of the option. An id that is a character is also the short form of the option.
+   *
+   * @return the id of the option
+   */
+  int id();
+
+  /**
+   * Return the long form of the option, or an empty string if the option has no long form.
+   *
+   * @return the long form of the option
+   */
+  String name() default "";
+
+  /**
+   * Return the flags of the option. When no argument flags are specified they are derived from
+   * the type of the field. A <code>boolean</code> disallows arguments, a <code>Map</code> requires
+   * two arguments and the other types require an argument. Options of a <code>List</code> or
+   * <code>Map</code> field also allow duplicates. A <code>boolean</code> may not require arguments,
+   * a <code>Map</code> must require two arguments and the other types must require or accept an argument.
+   *
+   * @return the flags of the option
+   * @see CLOptionDescriptor#ARGUMENT_REQUIRED
+   * @see CLOptionDescriptor#ARGUMENT_OPTIONAL
+   * @see CLOptionDescriptor#ARGUMENT_DISALLOWED
+   * @see CLOptionDescriptor#ARGUMENTS_REQUIRED_2
+   * @see CLOptionDescriptor#DUPLICATES_ALLOWED
+   */
+  int flags() default 0;
+
+  /**
+   * Return the description of the option used in the usage text.
+   *
+   * @return the description of the option
+   */
+  String description() default "";
+
+  /**
+   * Return the ids of the options that are incompatible with this option.
+   * An option that does not allow duplicates is always incompatible with itself.
+   *
+   * @return the ids of the incompatible options
+   */
+  int[] incompatible() default {};
+}
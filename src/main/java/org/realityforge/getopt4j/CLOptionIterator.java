@@ -0,0 +1,149 @@
+package org.realityforge.getopt4j;
+
+import java.text.ParseException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterator that parses command line arguments on demand.
+ *
+ * Unlike {@link CLArgsParser}, which parses all of the arguments when it is constructed,
+ * the iterator recognises each option or text argument as it is requested and does not
+ * retain the options that it has returned. This allows very long command lines to be
+ * processed in constant memory.
+ *
+ * Duplicate and incompatible options are detected as each option is recognised. When an
+ * error occurs the iterator stops returning options and the error is available via
+ * {@link #getErrorString()}. Note that this means an option that is incompatible with an
+ * earlier option is never returned whereas {@link CLArgsParser#getArguments()} would
+ * contain both options.
+ *
+ * @see CLArgsParser
+ * @see CLOption
+ */
+public final class CLOptionIterator
+  implements Iterator<CLOption>
+{
+  private final CLArgsParser _parser;
+  private CLOption _next;
+  //the number of options parsed, reported to any listener when the parse completes
+  private int _count;
+
+  /**
+   * Create an iterator over the options in the specified args.
+   *
+   * @param args    the args
+   * @param schema  the compiled option schema
+   * @param control the parser control used determine behaviour of parser, may be null
+   */
+  public CLOptionIterator( final String[] args, final CLOptionSchema schema, final ParserControl control )
+  {
+    _parser = new CLArgsParser( schema, control );
+    _parser.start( args );
+  }
+
+  /**
+   * Create an iterator over the options in the specified args.
+   *
+   * @param args   the args
+   * @param schema the compiled option schema
+   */
+  public CLOptionIterator( final String[] args, final CLOptionSchema schema )
+  {
+    this( args, schema, null );
+  }
+
+  /**
+   * Return true if another option can be parsed from the args.
+   * This returns false when all the args have been parsed, when the parser has been
+   * halted by the {@link ParserControl} or when an error occurs.
+   *
+   * @return true if another option is available
+   */
+  @Override
+  public boolean hasNext()
+  {
+    if ( null == _next && null == _parser.getError() )
+    {
+      try
+      {
+        final CLOption option = _parser.nextOption();
+        if ( null != option )
+        {
+          _parser.checkIncompatibility( option );
+          _next = option;
+          _count++;
+        }
+      }
+      catch ( final ParseException pe )
+      {
+        _parser.recordError( pe );
+      }
+      if ( null == _next )
+      {
+        _parser.complete( _count );
+      }
+    }
+    return null != _next;
+  }
+
+  /**
+   * Parse and return the next option.
+   *
+   * @return the next option
+   * @throws NoSuchElementException if there are no more options
+   */
+  @Override
+  public CLOption next()
+  {
+    if ( !hasNext() )
+    {
+      throw new NoSuchElementException();
+    }
+    final CLOption option = _next;
+    _next = null;
+    return option;
+  }
+
+  /**
+   * Retrieve an error message that occurred during parsing if one existed.
+   *
+   * @return the error string
+   */
+  public String getErrorString()
+  {
+    return _parser.getErrorString();
+  }
+
+  /**
+   * Retrieve the details of the error that occurred during parsing if one existed.
+   *
+   * @return the error, or null if no error has occurred
+   */
+  public CLParseError getError()
+  {
+    return _parser.getError();
+  }
+
+  /**
+   * Retrieve an array of arguments that have not been parsed due to the parser halting.
+   * This is only populated after {@link #hasNext()} has returned false.
+   *
+   * @return an array of unparsed args
+   */
+  public String[] getUnParsedArgs()
+  {
+    return _parser.getUnParsedArgs();
+  }
+
+  /**
+   * Retrieve a view of the arguments that have not been parsed due to the parser halting.
+   * This is only populated after {@link #hasNext()} has returned false.
+   *
+   * @return the view of the unparsed args
+   */
+  public CLUnParsedArgs getUnParsedArgsView()
+  {
+    return _parser.getUnParsedArgsView();
+  }
+}
@@ -0,0 +1,614 @@
+package org.realityforge.getopt4j;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable, compiled form of an array of {@link CLOptionDescriptor}s.
+ *
+ * The schema builds constant-time lookup tables for option ids and long option names
+ * so that the parser does not need to scan the descriptor array for every option it
+ * encounters. A schema is immutable after construction and may be shared between
+ * threads and reused across any number of parses.
+ *
+ * Every descriptor is assigned a dense index that corresponds to its position in the
+ * array supplied to the constructor. When several descriptors share an id or a name,
+ * lookups resolve to the first such descriptor, matching the behaviour of scanning
+ * the array in order. The dense indexes are also used to precompute the set of options
+ * that conflict with each option as a bitset. Text arguments are assigned the index after
+ * the last descriptor in the bitsets so that options may be incompatible with text arguments.
+ *
+ * The long option names are also compiled into a trie so that an unambiguous prefix of
+ * a name can be resolved to its descriptor in time proportional to the length of the prefix.
+ * The index used to suggest names similar to an unknown name is only built the first time that
+ * an unknown name is encountered and is then shared by all parsers using the schema.
+ * Similarly the usage text is cached for the most recently requested terminal widths.
+ *
+ * @see CLArgsParser
+ * @see CLOptionDescriptor
+ */
+public final class CLOptionSchema
+{
+  /**
+   * Ids below this limit are resolved through a directly indexed array.
+   * This covers all single character options in the Latin-1 range.
+   */
+  private static final int DIRECT_ID_LIMIT = 256;
+  //Marker for an empty slot in the index tables. Indexes are stored offset by one.
+  private static final int NO_INDEX = 0;
+  /**
+   * Result of a prefix lookup when the prefix is shared by the names of several descriptors.
+   */
+  static final int AMBIGUOUS = -2;
+  //The maximum number of names suggested for an unknown name
+  private static final int MAX_SUGGESTIONS = 3;
+  //The maximum number of widths for which the usage text is cached
+  private static final int MAX_CACHED_WIDTHS = 8;
+
+  private final CLOptionDescriptor[] _descriptors;
+  private final int[] _directIndex;
+  private final int[] _wideIds;
+  private final int[] _wideIndex;
+  private final String[] _names;
+  private final int[] _nameIndex;
+  //The number of longs in each bitset, which has a bit for each descriptor and one for text arguments
+  private final int _wordCount;
+  //Bitsets for each descriptor index of the indexes that the descriptor lists as incompatible
+  private final long[] _incompatible;
+  //Bitsets for each descriptor index of the indexes that are incompatible in either direction
+  private final long[] _conflicts;
+  //The trie of long option names. Node 0 is the root and each node is the character at
+  //the end of a prefix. The children of a node form a linked list via _trieSibling
+  private final char[] _trieChars;
+  private final int[] _trieChild;
+  private final int[] _trieSibling;
+  //The index of the descriptor whose name ends at the node or -1
+  private final int[] _trieMatch;
+  //The index of the only descriptor whose name starts with the prefix, or AMBIGUOUS
+  private final int[] _trieUnique;
+  //The index of similar names that is built the first time it is required.
+  //Concurrent parsers may each build an index but all indexes are equivalent.
+  private volatile OptionNameTree _nameTree;
+  //The usage text rendered for each width, most recently rendered first.
+  //The list is immutable and is replaced when a width is added.
+  private volatile RenderedOptions _renderedOptions;
+
+  /**
+   * Compile the specified descriptors into a schema.
+   *
+   * @param descriptors the option descriptors
+   */
+  public CLOptionSchema( final CLOptionDescriptor[] descriptors )
+  {
+    _descriptors = descriptors.clone();
+
+    int maxDirectId = -1;
+    int wideCount = 0;
+    int nameCount = 0;
+    for ( final CLOptionDescriptor descriptor : _descriptors )
+    {
+      final int id = descriptor.getId();
+      if ( isDirectId( id ) )
+      {
+        maxDirectId = Math.max( maxDirectId, id );
+      }
+      else
+      {
+        wideCount++;
+      }
+      if ( null != descriptor.getName() )
+      {
+        nameCount++;
+      }
+    }
+
+    _directIndex = new int[ maxDirectId + 1 ];
+    _wideIds = new int[ tableSize( wideCount ) ];
+    _wideIndex = new int[ _wideIds.length ];
+    _names = new String[ tableSize( nameCount ) ];
+    _nameIndex = new int[ _names.length ];
+
+    for ( int i = 0; i < _descriptors.length; i++ )
+    {
+      final CLOptionDescriptor descriptor = _descriptors[ i ];
+      final int id = descriptor.getId();
+      if ( isDirectId( id ) )
+      {
+        if ( NO_INDEX == _directIndex[ id ] )
+        {
+          _directIndex[ id ] = i + 1;
+        }
+      }
+      else
+      {
+        insertWideId( id, i );
+      }
+
+      final String name = descriptor.getName();
+      if ( null != name )
+      {
+        insertName( name, i );
+      }
+    }
+
+    int nameLength = 0;
+    for ( final CLOptionDescriptor descriptor : _descriptors )
+    {
+      final String name = descriptor.getName();
+      nameLength += null == name ? 0 : name.length();
+    }
+    _trieChars = new char[ nameLength + 1 ];
+    _trieChild = new int[ _trieChars.length ];
+    _trieSibling = new int[ _trieChars.length ];
+    _trieMatch = new int[ _trieChars.length ];
+    _trieUnique = new int[ _trieChars.length ];
+    Arrays.fill( _trieMatch, -1 );
+    Arrays.fill( _trieUnique, -1 );
+    int trieSize = 1;
+    for ( int i = 0; i < _descriptors.length; i++ )
+    {
+      final String name = _descriptors[ i ].getName();
+      //Names shared by several descriptors resolve to the first descriptor
+      if ( null != name && _descriptors[ i ] == getDescriptor( name ) )
+      {
+        trieSize = insertPrefixes( name, i, trieSize );
+      }
+    }
+
+    _wordCount = ( _descriptors.length + 1 + 63 ) >>> 6;
+    _incompatible = new long[ ( _descriptors.length + 1 ) * _wordCount ];
+    _conflicts = new long[ _incompatible.length ];
+    for ( int i = 0; i < _descriptors.length; i++ )
+    {
+      for ( final int incompatibleId : _descriptors[ i ].getIncompatible() )
+      {
+        final int other = getConflictIndex( incompatibleId );
+        //Other ids without a descriptor can never appear as an option so they are ignored
+        if ( -1 != other )
+        {
+          setBit( _incompatible, i, other );
+          setBit( _conflicts, i, other );
+          setBit( _conflicts, other, i );
+        }
+      }
+    }
+  }
+
+  /**
+   * Retrieve the descriptors that this schema was compiled from.
+   *
+   * @return a copy of the option descriptors
+   */
+  public CLOptionDescriptor[] getDescriptors()
+  {
+    return _descriptors.clone();
+  }
+
+  /**
+   * Retrieve the descriptor for the specified option id.
+   *
+   * @param id the option id
+   * @return the descriptor, or <code>null</code> if no descriptor has the specified id
+   */
+  public CLOptionDescriptor getDescriptor( final int id )
+  {
+    final int index = getIndex( id );
+    return -1 == index ? null : _descriptors[ index ];
+  }
+
+  /**
+   * Retrieve the descriptor with the specified long option name.
+   *
+   * @param name the name/long option
+   * @return the descriptor, or <code>null</code> if no descriptor has the specified name
+   */
+  public CLOptionDescriptor getDescriptor( final String name )
+  {
+    return findName( name, 0, name.length(), name.hashCode() );
+  }
+
+  /**
+   * Retrieve the descriptor whose long option name is equal to a region of the specified text.
+   * This avoids creating a string for the name when it is embedded in an argument.
+   *
+   * @param text  the text containing the name
+   * @param start the index of the first character of the name
+   * @param end   the index after the last character of the name
+   * @return the descriptor, or <code>null</code> if no descriptor has the name
+   */
+  CLOptionDescriptor getDescriptor( final CharSequence text, final int start, final int end )
+  {
+    //Compute the same hash as String.hashCode() would for the region
+    int hash = 0;
+    for ( int i = start; i < end; i++ )
+    {
+      hash = 31 * hash + text.charAt( i );
+    }
+    return findName( text, start, end, hash );
+  }
+
+  private CLOptionDescriptor findName( final CharSequence text, final int start, final int end, final int hash )
+  {
+    final int length = end - start;
+    final int mask = _names.length - 1;
+    int slot = spread( hash ) & mask;
+    String candidate;
+    while ( null != ( candidate = _names[ slot ] ) )
+    {
+      if ( candidate.length() == length && regionMatches( candidate, text, start ) )
+      {
+        return _descriptors[ _nameIndex[ slot ] - 1 ];
+      }
+      slot = ( slot + 1 ) & mask;
+    }
+    return null;
+  }
+
+  /**
+   * Find the descriptor whose long option name starts with a region of the specified text.
+   * An exact match is preferred to a prefix of a longer name.
+   *
+   * @param text  the text containing the prefix
+   * @param start the index of the first character of the prefix
+   * @param end   the index after the last character of the prefix
+   * @return the index of the descriptor, -1 if no name starts with the prefix or
+   * {@link #AMBIGUOUS} if the names of several descriptors start with the prefix
+   */
+  int findPrefix( final CharSequence text, final int start, final int end )
+  {
+    if ( start == end )
+    {
+      return -1;
+    }
+    int node = 0;
+    for ( int i = start; i < end; i++ )
+    {
+      final char ch = text.charAt( i );
+      node = _trieChild[ node ];
+      while ( 0 != node && ch != _trieChars[ node ] )
+      {
+        node = _trieSibling[ node ];
+      }
+      if ( 0 == node )
+      {
+        return -1;
+      }
+    }
+    final int match = _trieMatch[ node ];
+    return -1 != match ? match : _trieUnique[ node ];
+  }
+
+  /**
+   * Find the long option names that are most similar to the specified unknown name.
+   *
+   * @param name the unknown name
+   * @return the similar names ordered from most to least similar, empty if there are no similar names
+   */
+  List<String> suggestNames( final String name )
+  {
+    OptionNameTree nameTree = _nameTree;
+    if ( null == nameTree )
+    {
+      nameTree = new OptionNameTree( _descriptors );
+      _nameTree = nameTree;
+    }
+    //Allow roughly one edit for every three characters
+    final int maxDistance = Math.min( 3, Math.max( 1, name.length() / 3 ) );
+    return nameTree.findClosest( name, maxDistance, MAX_SUGGESTIONS );
+  }
+
+  /**
+   * Return the usage text for the options wrapped to fit the specified terminal width.
+   *
+   * @param width the width of the terminal in columns
+   * @return the usage text
+   */
+  String describeOptions( final int width )
+  {
+    final RenderedOptions cached = _renderedOptions;
+    for ( RenderedOptions rendered = cached; null != rendered; rendered = rendered._next )
+    {
+      if ( rendered._width == width )
+      {
+        return rendered._text;
+      }
+    }
+    final String text = CLUtil.renderOptions( _descriptors, width );
+    //Concurrent callers may discard each others widths which only results in rendering them again
+    _renderedOptions = new RenderedOptions( width, text, RenderedOptions.truncate( cached, MAX_CACHED_WIDTHS - 1 ) );
+    return text;
+  }
+
+  /**
+   * Return the number of descriptors in the schema.
+   *
+   * @return the number of descriptors
+   */
+  int size()
+  {
+    return _descriptors.length;
+  }
+
+  /**
+   * Return the descriptor at the specified dense index.
+   *
+   * @param index the index, from 0 to {@link #size()}-1
+   * @return the descriptor
+   */
+  CLOptionDescriptor getDescriptorAt( final int index )
+  {
+    return _descriptors[ index ];
+  }
+
+  /**
+   * Return the index of the option with the specified id in the conflict bitsets.
+   * This is the dense index of the descriptor or {@link #size()} for text arguments without a descriptor.
+   *
+   * @param id the option id
+   * @return the index, or -1 if the option can not conflict with other options
+   */
+  int getConflictIndex( final int id )
+  {
+    final int index = getIndex( id );
+    return -1 == index && CLOption.TEXT_ARGUMENT == id ? _descriptors.length : index;
+  }
+
+  /**
+   * Return the descriptor at the specified index in the conflict bitsets.
+   *
+   * @param index the index, from 0 to {@link #size()}
+   * @return the descriptor, or null for text arguments without a descriptor
+   */
+  CLOptionDescriptor getConflictDescriptor( final int index )
+  {
+    return index == _descriptors.length ? null : _descriptors[ index ];
+  }
+
+  /**
+   * Return the dense index of the descriptor for the specified option id.
+   *
+   * @param id the option id
+   * @return the index, or -1 if no descriptor has the specified id
+   */
+  int getIndex( final int id )
+  {
+    if ( isDirectId( id ) )
+    {
+      return id < _directIndex.length ? _directIndex[ id ] - 1 : -1;
+    }
+    else
+    {
+      final int mask = _wideIds.length - 1;
+      int slot = spread( id ) & mask;
+      int index;
+      while ( NO_INDEX != ( index = _wideIndex[ slot ] ) )
+      {
+        if ( _wideIds[ slot ] == id )
+        {
+          return index - 1;
+        }
+        slot = ( slot + 1 ) & mask;
+      }
+      return -1;
+    }
+  }
+
+  /**
+   * Return the number of longs required for a bitset over the descriptor indexes.
+   *
+   * @return the number of longs in a bitset
+   */
+  int getWordCount()
+  {
+    return _wordCount;
+  }
+
+  /**
+   * Return true if the descriptor at the specified index lists the other descriptor as incompatible.
+   *
+   * @param index the index of the descriptor
+   * @param other the index of the other descriptor
+   * @return true if the descriptor lists the other descriptor as incompatible
+   */
+  boolean isIncompatible( final int index, final int other )
+  {
+    return 0 != ( _incompatible[ index * _wordCount + ( other >>> 6 ) ] & ( 1L << other ) );
+  }
+
+  /**
+   * Find a descriptor in the specified set that conflicts with the descriptor at the specified index.
+   * Descriptors conflict if either lists the other as incompatible. A descriptor conflicts with itself
+   * unless duplicates are allowed.
+   *
+   * @param index the index of the descriptor
+   * @param seen  a bitset of descriptor indexes
+   * @return the lowest index in the set that conflicts, or -1 if there is no conflict
+   */
+  int findConflict( final int index, final long[] seen )
+  {
+    final int offset = index * _wordCount;
+    for ( int i = 0; i < _wordCount; i++ )
+    {
+      final long matches = _conflicts[ offset + i ] & seen[ i ];
+      if ( 0 != matches )
+      {
+        return ( i << 6 ) + Long.numberOfTrailingZeros( matches );
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Return true if the descriptor at the specified index lists any descriptor in the set as incompatible.
+   *
+   * @param index       the index of the descriptor
+   * @param set         a bitset of descriptor indexes
+   * @param includeSelf true if the descriptor itself should be tested if present in the set
+   * @return true if the descriptor lists a descriptor in the set as incompatible
+   */
+  boolean hasIncompatible( final int index, final long[] set, final boolean includeSelf )
+  {
+    final int offset = index * _wordCount;
+    for ( int i = 0; i < _wordCount; i++ )
+    {
+      long matches = _incompatible[ offset + i ] & set[ i ];
+      if ( !includeSelf && ( index >>> 6 ) == i )
+      {
+        matches &= ~( 1L << index );
+      }
+      if ( 0 != matches )
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean regionMatches( final String candidate, final CharSequence text, final int start )
+  {
+    if ( text instanceof String )
+    {
+      return candidate.regionMatches( 0, (String) text, start, candidate.length() );
+    }
+    else
+    {
+      final int length = candidate.length();
+      for ( int i = 0; i < length; i++ )
+      {
+        if ( candidate.charAt( i ) != text.charAt( start + i ) )
+        {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private void setBit( final long[] bitsets, final int index, final int bit )
+  {
+    bitsets[ index * _wordCount + ( bit >>> 6 ) ] |= 1L << bit;
+  }
+
+  /**
+   * Insert the name into the trie.
+   *
+   * @return the number of nodes in the trie after insertion
+   */
+  private int insertPrefixes( final String name, final int index, final int trieSize )
+  {
+    int size = trieSize;
+    int node = 0;
+    final int length = name.length();
+    for ( int i = 0; i < length; i++ )
+    {
+      final char ch = name.charAt( i );
+      int child = _trieChild[ node ];
+      while ( 0 != child && ch != _trieChars[ child ] )
+      {
+        child = _trieSibling[ child ];
+      }
+      if ( 0 == child )
+      {
+        child = size++;
+        _trieChars[ child ] = ch;
+        _trieSibling[ child ] = _trieChild[ node ];
+        _trieChild[ node ] = child;
+      }
+      node = child;
+      final int unique = _trieUnique[ node ];
+      _trieUnique[ node ] = -1 == unique || index == unique ? index : AMBIGUOUS;
+    }
+    _trieMatch[ node ] = index;
+    return size;
+  }
+
+  private void insertWideId( final int id, final int index )
+  {
+    final int mask = _wideIds.length - 1;
+    int slot = spread( id ) & mask;
+    while ( NO_INDEX != _wideIndex[ slot ] )
+    {
+      if ( _wideIds[ slot ] == id )
+      {
+        return;
+      }
+      slot = ( slot + 1 ) & mask;
+    }
+    _wideIds[ slot ] = id;
+    _wideIndex[ slot ] = index + 1;
+  }
+
+  private void insertName( final String name, final int index )
+  {
+    final int mask = _names.length - 1;
+    int slot = spread( name.hashCode() ) & mask;
+    while ( null != _names[ slot ] )
+    {
+      if ( _names[ slot ].equals( name ) )
+      {
+        return;
+      }
+      slot = ( slot + 1 ) & mask;
+    }
+    _names[ slot ] = name;
+    _nameIndex[ slot ] = index + 1;
+  }
+
+  private static boolean isDirectId( final int id )
+  {
+    return id >= 0 && id < DIRECT_ID_LIMIT;
+  }
+
+  /**
+   * Return a power of two table size that keeps the load factor at or below 0.5.
+   * There is always at least one empty slot so that probing terminates.
+   */
+  private static int tableSize( final int count )
+  {
+    int size = 2;
+    while ( size < count * 2 )
+    {
+      size <<= 1;
+    }
+    return size;
+  }
+
+  private static int spread( final int hash )
+  {
+    final int h = hash * 0x9E3779B9;
+    return h ^ ( h >>> 16 );
+  }
+
+  /**
+   * An entry in the immutable list of usage text cached by width.
+   */
+  private static final class RenderedOptions
+  {
+    private final int _width;
+    private final String _text;
+    private final RenderedOptions _next;
+
+    RenderedOptions( final int width, final String text, final RenderedOptions next )
+    {
+      _width = width;
+      _text = text;
+      _next = next;
+    }
+
+    /**
+     * Return a list containing at most the specified number of the leading entries of the list.
+     */
+    static RenderedOptions truncate( final RenderedOptions rendered, final int count )
+    {
+      if ( null == rendered || 0 == count )
+      {
+        return null;
+      }
+      else
+      {
+        final RenderedOptions next = truncate( rendered._next, count - 1 );
+        return next == rendered._next ? rendered : new RenderedOptions( rendered._width, rendered._text, next );
+      }
+    }
+  }
+}
@@ -0,0 +1,299 @@
+package org.realityforge.getopt4j;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Describes the sources other than the command line that options may be read from.
+ *
+ * An option may be mapped to an environment variable and to a key in configuration files.
+ * Configuration files are read as UTF-8 encoded properties files and files that do not exist
+ * are ignored. When the same option is specified by several sources the value is taken from
+ * the source with the highest precedence and the option is ignored in the other sources.
+ * The precedence from highest to lowest is the command line, environment variables and then
+ * the configuration files in the reverse of the order that they were added.
+ *
+ * The value of an option that does not accept an argument must be one of "true", "yes" or
+ * "on" to specify the option or "false", "no" or "off" to leave the option unset. The value
+ * of an option that requires two arguments is separated in the same way as an argument on
+ * the command line. i.e. "name=value".
+ *
+ * Parsed configuration files are cached by path and are only read again when the modification
+ * time or size of the file changes. Mappings and configuration files must be added before the
+ * sources are shared between threads.
+ *
+ * @see CLArgsParser#parse(String[], CLOptionSources, Map, ParserControl)
+ */
+public final class CLOptionSources
+{
+  private final CLOptionSchema _schema;
+  //The environment variable and configuration key of each descriptor index, or null if not mapped
+  private final String[] _variables;
+  private final String[] _keys;
+  private final List<Path> _configFiles = new ArrayList<>();
+  private final ConcurrentHashMap<Path, ConfigFile> _cache = new ConcurrentHashMap<>();
+
+  /**
+   * Create sources for the options of the specified schema.
+   *
+   * @param schema the compiled option schema
+   */
+  public CLOptionSources( final CLOptionSchema schema )
+  {
+    _schema = schema;
+    _variables = new String[ schema.size() ];
+    _keys = new String[ schema.size() ];
+  }
+
+  /**
+   * Retrieve the schema of the options.
+   *
+   * @return the schema
+   */
+  public CLOptionSchema getSchema()
+  {
+    return _schema;
+  }
+
+  /**
+   * Map the option with the specified id to an environment variable.
+   *
+   * @param id       the id of the option
+   * @param variable the name of the environment variable
+   */
+  public void mapEnvironmentVariable( final int id, final String variable )
+  {
+    _variables[ getIndex( id ) ] = variable;
+  }
+
+  /**
+   * Map the option with the specified id to a key in the configuration files.
+   *
+   * @param id  the id of the option
+   * @param key the key
+   */
+  public void mapConfigKey( final int id, final String key )
+  {
+    _keys[ getIndex( id ) ] = key;
+  }
+
+  /**
+   * Add a configuration file. Files that are added later take precedence over files that were added earlier.
+   *
+   * @param path the path of the configuration file
+   */
+  public void addConfigFile( final Path path )
+  {
+    _configFiles.add( path );
+  }
+
+  private int getIndex( final int id )
+  {
+    final int index = _schema.getIndex( id );
+    if ( -1 == index )
+    {
+      throw new IllegalArgumentException( "No option with id " + id + " in schema" );
+    }
+    return index;
+  }
+
+  /**
+   * Create the options specified by the environment and the configuration files.
+   * At most one option is created for each descriptor and no option is created for descriptors
+   * that were specified on the command line, so their values in other sources are not validated.
+   *
+   * @param parser      the parser used to report errors
+   * @param environment the environment variables
+   * @param specified   the bitset of the descriptor indexes of the options specified on the command line
+   * @return the options in the order of the descriptors
+   */
+  List<CLOption> createOptions( final CLArgsParser parser,
+                                final Map<String, String> environment,
+                                final long[] specified )
+    throws ParseException
+  {
+    final int fileCount = _configFiles.size();
+    final List<Map<String, String>> configs = new ArrayList<>( fileCount );
+    for ( final Path path : _configFiles )
+    {
+      configs.add( readConfigFile( parser, path ) );
+    }
+
+    final List<CLOption> options = new ArrayList<>();
+    for ( int i = 0; i < _variables.length; i++ )
+    {
+      if ( 0 != ( specified[ i >>> 6 ] & ( 1L << i ) ) )
+      {
+        continue;
+      }
+      final String variable = _variables[ i ];
+      final String key = _keys[ i ];
+      String value = null == variable ? null : environment.get( variable );
+      //the index of the configuration file that the value was read from or -1 for the environment
+      int file = -1;
+      if ( null == value && null != key )
+      {
+        for ( int j = fileCount - 1; j >= 0 && null == value; j-- )
+        {
+          value = configs.get( j ).get( key );
+          file = j;
+        }
+      }
+      if ( null != value )
+      {
+        final CLOption option = createOption( parser, i, value, file );
+        if ( null != option )
+        {
+          options.add( option );
+        }
+      }
+    }
+    return options;
+  }
+
+  /**
+   * Create an option from the value read from a source.
+   *
+   * @return the option, or null if the value leaves the option unset
+   */
+  private CLOption createOption( final CLArgsParser parser, final int index, final String value, final int file )
+    throws ParseException
+  {
+    final CLOptionDescriptor descriptor = _schema.getDescriptorAt( index );
+    final CLOption option = new CLOption( descriptor );
+    final int flags = descriptor.getFlags();
+    if ( ( flags & CLOptionDescriptor.ARGUMENTS_REQUIRED_2 ) == CLOptionDescriptor.ARGUMENTS_REQUIRED_2 )
+    {
+      final int separator = value.indexOf( '=' );
+      if ( value.isEmpty() || 0 == separator )
+      {
+        throw invalidValue( parser, index, value, file );
+      }
+      else if ( -1 == separator )
+      {
+        option.addArguments( value, "" );
+      }
+      else
+      {
+        option.addArguments( value.substring( 0, separator ), value.substring( separator + 1 ) );
+      }
+    }
+    else if ( ( flags & CLOptionDescriptor.ARGUMENT_REQUIRED ) == CLOptionDescriptor.ARGUMENT_REQUIRED )
+    {
+      option.addArgument( value );
+    }
+    else if ( ( flags & CLOptionDescriptor.ARGUMENT_OPTIONAL ) == CLOptionDescriptor.ARGUMENT_OPTIONAL )
+    {
+      if ( !value.isEmpty() )
+      {
+        option.addArgument( value );
+      }
+    }
+    else if ( "false".equalsIgnoreCase( value ) || "no".equalsIgnoreCase( value ) || "off".equalsIgnoreCase( value ) )
+    {
+      return null;
+    }
+    else if ( !"true".equalsIgnoreCase( value ) && !"yes".equalsIgnoreCase( value ) && !"on".equalsIgnoreCase( value ) )
+    {
+      throw invalidValue( parser, index, value, file );
+    }
+    return option;
+  }
+
+  private ParseException invalidValue( final CLArgsParser parser, final int index, final String value, final int file )
+  {
+    final CLOptionDescriptor descriptor = _schema.getDescriptorAt( index );
+    final String option =
+      null != descriptor.getName() ? "--" + descriptor.getName() : "-" + (char) descriptor.getId();
+    final String source = -1 == file ?
+                          "environment variable " + _variables[ index ] :
+                          "key " + _keys[ index ] + " in configuration file " + _configFiles.get( file );
+    return parser.sourceError( "Invalid value '" + value + "' for option " + option + " from " + source );
+  }
+
+  /**
+   * Return the properties in the configuration file, reading the file if it has changed since it was cached.
+   */
+  private Map<String, String> readConfigFile( final CLArgsParser parser, final Path path )
+    throws ParseException
+  {
+    final BasicFileAttributes attributes;
+    try
+    {
+      attributes = Files.readAttributes( path, BasicFileAttributes.class );
+    }
+    catch ( final NoSuchFileException nsfe )
+    {
+      _cache.remove( path );
+      return Collections.emptyMap();
+    }
+    catch ( final IOException ioe )
+    {
+      throw parser.sourceError( "Unable to read configuration file " + path );
+    }
+
+    final ConfigFile cached = _cache.get( path );
+    if ( null != cached && cached.isCurrent( attributes ) )
+    {
+      return cached.getValues();
+    }
+
+    final Properties properties = new Properties();
+    try ( final Reader reader = Files.newBufferedReader( path, StandardCharsets.UTF_8 ) )
+    {
+      properties.load( reader );
+    }
+    catch ( final IOException | IllegalArgumentException e )
+    {
+      throw parser.sourceError( "Unable to read configuration file " + path );
+    }
+    final Map<String, String> values = new HashMap<>();
+    for ( final String name : properties.stringPropertyNames() )
+    {
+      values.put( name, properties.getProperty( name ) );
+    }
+    _cache.put( path, new ConfigFile( attributes.lastModifiedTime(), attributes.size(), values ) );
+    return values;
+  }
+
+  /**
+   * The properties read from a configuration file and the attributes of the file when it was read.
+   */
+  private static final class ConfigFile
+  {
+    private final FileTime _lastModified;
+    private final long _size;
+    private final Map<String, String> _values;
+
+    ConfigFile( final FileTime lastModified, final long size, final Map<String, String> values )
+    {
+      _lastModified = lastModified;
+      _size = size;
+      _values = values;
+    }
+
+    boolean isCurrent( final BasicFileAttributes attributes )
+    {
+      return _lastModified.equals( attributes.lastModifiedTime() ) && _size == attributes.size();
+    }
+
+    Map<String, String> getValues()
+    {
+      return _values;
+    }
+  }
+}
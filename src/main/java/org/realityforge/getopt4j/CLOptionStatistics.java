@@ -0,0 +1,242 @@
+package org.realityforge.getopt4j;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A listener that counts how often the options of a schema are used across many parses.
+ *
+ * The statistics record the number of occurrences of each descriptor of the schema, the
+ * number of parses that failed with each kind of error and the distribution of the number
+ * of arguments in each command line. Occurrences are counted as options are recognised
+ * so options in a command line that subsequently fails are included. Options of commands
+ * are only counted if their descriptors are also part of the schema.
+ *
+ * The counters are {@link LongAdder}s indexed by the dense index of each descriptor so the
+ * statistics may be shared by parsers in many threads without contention. A {@link Snapshot}
+ * of the counters can be taken at any time and is not affected by subsequent parses.
+ *
+ * @see ParserControl#getParseListener()
+ */
+public final class CLOptionStatistics
+  extends AbstractParseListener
+{
+  //Bucket 0 counts empty command lines and bucket i counts command lines with 2^(i-1) to 2^i - 1 arguments
+  private static final int ARGUMENT_COUNT_BUCKETS = 33;
+
+  private final CLOptionSchema _schema;
+  private final LongAdder[] _occurrences;
+  private final LongAdder[] _errors;
+  private final LongAdder[] _argumentCounts;
+
+  /**
+   * Create statistics for the options of the specified schema.
+   *
+   * @param schema the compiled option schema
+   */
+  public CLOptionStatistics( final CLOptionSchema schema )
+  {
+    _schema = schema;
+    _occurrences = createCounters( schema.size() );
+    _errors = createCounters( CLErrorCode.values().length );
+    _argumentCounts = createCounters( ARGUMENT_COUNT_BUCKETS );
+  }
+
+  /**
+   * Retrieve the schema whose options are counted.
+   *
+   * @return the schema
+   */
+  public CLOptionSchema getSchema()
+  {
+    return _schema;
+  }
+
+  @Override
+  public void optionRecognised( final CLOptionDescriptor descriptor, final int argumentIndex, final long nanoTime )
+  {
+    final int index = getIndex( descriptor );
+    if ( -1 != index )
+    {
+      _occurrences[ index ].increment();
+    }
+  }
+
+  @Override
+  public void parseFailed( final CLParseError error, final long nanoTime )
+  {
+    _errors[ error.getCode().ordinal() ].increment();
+  }
+
+  @Override
+  public void parseCompleted( final int argumentCount,
+                              final int optionCount,
+                              final long startTime,
+                              final long nanoTime )
+  {
+    _argumentCounts[ 32 - Integer.numberOfLeadingZeros( argumentCount ) ].increment();
+  }
+
+  /**
+   * Take a snapshot of the statistics.
+   *
+   * @return the snapshot
+   */
+  public Snapshot snapshot()
+  {
+    return new Snapshot( _schema, sum( _occurrences, false ), sum( _errors, false ), sum( _argumentCounts, false ) );
+  }
+
+  /**
+   * Take a snapshot of the statistics and reset the counters.
+   * Parses that occur concurrently are either included in the snapshot or counted after the reset.
+   *
+   * @return the snapshot
+   */
+  public Snapshot snapshotAndReset()
+  {
+    return new Snapshot( _schema, sum( _occurrences, true ), sum( _errors, true ), sum( _argumentCounts, true ) );
+  }
+
+  /**
+   * Reset the counters.
+   */
+  public void reset()
+  {
+    snapshotAndReset();
+  }
+
+  /**
+   * Return the dense index of the descriptor in the schema.
+   *
+   * @return the index, or -1 if the descriptor is not part of the schema
+   */
+  private int getIndex( final CLOptionDescriptor descriptor )
+  {
+    final int index = _schema.getIndex( descriptor.getId() );
+    if ( -1 == index || _schema.getDescriptorAt( index ) == descriptor )
+    {
+      return index;
+    }
+    else
+    {
+      //The descriptor may share an id with an earlier descriptor such as an alias
+      for ( int i = index + 1; i < _occurrences.length; i++ )
+      {
+        if ( _schema.getDescriptorAt( i ) == descriptor )
+        {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+
+  private static LongAdder[] createCounters( final int count )
+  {
+    final LongAdder[] counters = new LongAdder[ count ];
+    for ( int i = 0; i < count; i++ )
+    {
+      counters[ i ] = new LongAdder();
+    }
+    return counters;
+  }
+
+  private static long[] sum( final LongAdder[] counters, final boolean reset )
+  {
+    final long[] values = new long[ counters.length ];
+    for ( int i = 0; i < counters.length; i++ )
+    {
+      values[ i ] = reset ? counters[ i ].sumThenReset() : counters[ i ].sum();
+    }
+    return values;
+  }
+
+  /**
+   * An immutable snapshot of the statistics.
+   */
+  public static final class Snapshot
+  {
+    private final CLOptionSchema _schema;
+    private final long[] _occurrences;
+    private final long[] _errors;
+    private final long[] _argumentCounts;
+
+    Snapshot( final CLOptionSchema schema,
+              final long[] occurrences,
+              final long[] errors,
+              final long[] argumentCounts )
+    {
+      _schema = schema;
+      _occurrences = occurrences;
+      _errors = errors;
+      _argumentCounts = argumentCounts;
+    }
+
+    /**
+     * Retrieve the number of command lines parsed.
+     *
+     * @return the number of command lines
+     */
+    public long getParseCount()
+    {
+      long count = 0;
+      for ( final long value : _argumentCounts )
+      {
+        count += value;
+      }
+      return count;
+    }
+
+    /**
+     * Retrieve the number of times that options with the specified id occurred.
+     *
+     * @param id the id of the option
+     * @return the number of occurrences of all the descriptors with the id
+     */
+    public long getOccurrenceCount( final int id )
+    {
+      long count = 0;
+      for ( int i = 0; i < _occurrences.length; i++ )
+      {
+        if ( _schema.getDescriptorAt( i ).getId() == id )
+        {
+          count += _occurrences[ i ];
+        }
+      }
+      return count;
+    }
+
+    /**
+     * Retrieve the number of occurrences of each descriptor.
+     *
+     * @return the counts in the same order as {@link CLOptionSchema#getDescriptors()}
+     */
+    public long[] getOccurrenceCounts()
+    {
+      return _occurrences.clone();
+    }
+
+    /**
+     * Retrieve the number of command lines that failed with the specified kind of error.
+     *
+     * @param code the kind of error
+     * @return the number of command lines
+     */
+    public long getErrorCount( final CLErrorCode code )
+    {
+      return _errors[ code.ordinal() ];
+    }
+
+    /**
+     * Retrieve the distribution of the number of arguments in each command line.
+     * Element 0 is the number of empty command lines and element i is the number of
+     * command lines with at least 2^(i-1) and less than 2^i arguments.
+     *
+     * @return the distribution
+     */
+    public long[] getArgumentCountDistribution()
+    {
+      return _argumentCounts.clone();
+    }
+  }
+}
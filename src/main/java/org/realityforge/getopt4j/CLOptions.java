@@ -0,0 +1,25 @@
+package org.realityforge.getopt4j;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Target;
+
+/**
+ * Identifies a class whose fields describe the options of a command line.
+ *
+ * The getopt4j annotation processor generates a parser named after the class with the suffix
+ * "Parser" in the same package, i.e. <code>MyOptionsParser</code> for <code>MyOptions</code>.
+ * Fields annotated with {@link CLOptionField} are assigned the options that occur on the command
+ * line and a field annotated with {@link CLTextArguments} is assigned the text arguments. The
+ * generated parser dispatches on the option characters and names using <code>switch</code>
+ * statements and does not use reflection or construct a {@link CLOptionSchema} unless it
+ * encounters an error.
+ *
+ * @see CLOptionField
+ * @see CLTextArguments
+ */
+@Documented
+@Target( ElementType.TYPE )
+public @interface CLOptions
+{
+}
@@ -0,0 +1,306 @@
+package org.realityforge.getopt4j;
+
+import java.util.List;
+
+/**
+ * Describes an error that occurred while parsing a command line.
+ *
+ * The error records the kind of error, the position in the command line at which it
+ * occurred and the descriptors of the options involved. The human readable message is
+ * only rendered when {@link #getMessage()} is first invoked.
+ *
+ * The argument index is the index of the argument within the command line after any
+ * argument files have been expanded and the character offset is the index of the
+ * character within that argument. For options that occur more than once or are
+ * incompatible with each other the position is the start of the later option. An
+ * error at the end of the command line is positioned after the last character. The
+ * argument index is -1 for errors that involve only options read from the environment
+ * or configuration files.
+ *
+ * @see CLErrorCode
+ * @see CLArgsParser#getError()
+ */
+public final class CLParseError
+{
+  //The schema that was active when the error occurred which is the schema of the command once a command is parsed
+  private CLOptionSchema _schema;
+  private CLErrorCode _code;
+  private int _argumentIndex;
+  private int _charOffset;
+  private CLOptionDescriptor _descriptor;
+  private CLOptionDescriptor _otherDescriptor;
+  //The text that the message is rendered from, such as the argument containing an unknown option
+  private CharSequence _text;
+  private int _textStart;
+  private int _textEnd;
+  //True if the option was specified in the long form
+  private boolean _isLong;
+  private String _message;
+
+  CLParseError( final CLOptionSchema schema )
+  {
+    _schema = schema;
+  }
+
+  /**
+   * Create a copy of an error.
+   * The copy is not modified when the original error is reused.
+   */
+  CLParseError( final CLParseError error )
+  {
+    _schema = error._schema;
+    _code = error._code;
+    _argumentIndex = error._argumentIndex;
+    _charOffset = error._charOffset;
+    _descriptor = error._descriptor;
+    _otherDescriptor = error._otherDescriptor;
+    _text = error._text;
+    _textStart = error._textStart;
+    _textEnd = error._textEnd;
+    _isLong = error._isLong;
+    _message = error._message;
+  }
+
+  /**
+   * Record the details of an error, replacing any previous error.
+   */
+  void set( final CLErrorCode code,
+            final int argumentIndex,
+            final int charOffset,
+            final CLOptionDescriptor descriptor,
+            final CLOptionDescriptor otherDescriptor,
+            final boolean isLong )
+  {
+    _code = code;
+    _argumentIndex = argumentIndex;
+    _charOffset = charOffset;
+    _descriptor = descriptor;
+    _otherDescriptor = otherDescriptor;
+    _isLong = isLong;
+    _text = null;
+    _textStart = 0;
+    _textEnd = 0;
+    _message = null;
+  }
+
+  /**
+   * Specify the schema that the options involved in subsequent errors are described by.
+   */
+  void setSchema( final CLOptionSchema schema )
+  {
+    _schema = schema;
+  }
+
+  /**
+   * Record the region of text that the message is rendered from.
+   */
+  void setText( final CharSequence text, final int start, final int end )
+  {
+    _text = text;
+    _textStart = start;
+    _textEnd = end;
+  }
+
+  /**
+   * Retrieve the kind of error.
+   *
+   * @return the error code
+   */
+  public CLErrorCode getCode()
+  {
+    return _code;
+  }
+
+  /**
+   * Retrieve the index of the argument at which the error occurred.
+   *
+   * @return the argument index
+   */
+  public int getArgumentIndex()
+  {
+    return _argumentIndex;
+  }
+
+  /**
+   * Retrieve the index of the character within the argument at which the error occurred.
+   *
+   * @return the character offset
+   */
+  public int getCharOffset()
+  {
+    return _charOffset;
+  }
+
+  /**
+   * Retrieve the descriptor of the option that caused the error.
+   * For incompatible options this is the option whose descriptor lists the other option as incompatible.
+   *
+   * @return the descriptor, or null if the error does not involve a known option
+   */
+  public CLOptionDescriptor getDescriptor()
+  {
+    return _descriptor;
+  }
+
+  /**
+   * Retrieve the id of the option that caused the error.
+   *
+   * @return the id, or -1 if the error does not involve a known option
+   * @see #getDescriptor()
+   */
+  public int getOptionId()
+  {
+    return null == _descriptor ? -1 : _descriptor.getId();
+  }
+
+  /**
+   * Retrieve the descriptor of the option that is incompatible with the option that caused the error.
+   *
+   * @return the descriptor, or null if the error does not involve a second option or the second option is a
+   * text argument without a descriptor
+   */
+  public CLOptionDescriptor getOtherDescriptor()
+  {
+    return _otherDescriptor;
+  }
+
+  /**
+   * Retrieve the human readable message describing the error.
+   *
+   * @return the message
+   */
+  public String getMessage()
+  {
+    if ( null == _message )
+    {
+      _message = renderMessage();
+    }
+    return _message;
+  }
+
+  @Override
+  public String toString()
+  {
+    return getMessage();
+  }
+
+  private String renderMessage()
+  {
+    switch ( _code )
+    {
+      case UNKNOWN_OPTION:
+        return _isLong ? describeUnknownOption( getText() ) : "Unknown option -" + getText();
+      case AMBIGUOUS_OPTION:
+        return describeAmbiguity( getText() );
+      case MALFORMED_OPTION:
+        return "Malformed option -";
+      case UNKNOWN_COMMAND:
+        return "Unknown command " + getText();
+      case MISSING_ARGUMENT:
+        return "Missing argument to option " + getOptionDescription();
+      case MALFORMED_ARGUMENT:
+        return "Unable to parse first argument for option " + getOptionDescription();
+      case DUPLICATE_OPTION:
+        return "Duplicate options for " + describeDualOption( _descriptor.getId() ) + " found.";
+      case INCOMPATIBLE_OPTIONS:
+        //a text argument that has no descriptor is described as a parameter
+        final int otherId = null == _otherDescriptor ? CLOption.TEXT_ARGUMENT : _otherDescriptor.getId();
+        return "Incompatible options -" + describeDualOption( otherId ) + " and " +
+               describeDualOption( _descriptor.getId() ) + " found.";
+      default:
+        return getText();
+    }
+  }
+
+  private String getText()
+  {
+    return _text.subSequence( _textStart, _textEnd ).toString();
+  }
+
+  private String getOptionDescription()
+  {
+    if ( _isLong )
+    {
+      return "--" + _descriptor.getName();
+    }
+    else
+    {
+      return "-" + (char) _descriptor.getId();
+    }
+  }
+
+  private String describeUnknownOption( final String name )
+  {
+    final StringBuilder sb = new StringBuilder();
+    sb.append( "Unknown option --" );
+    sb.append( name );
+    final List<String> suggestions = _schema.suggestNames( name );
+    final int size = suggestions.size();
+    for ( int i = 0; i < size; i++ )
+    {
+      sb.append( 0 == i ? ". Did you mean --" : size - 1 == i ? " or --" : ", --" );
+      sb.append( suggestions.get( i ) );
+    }
+    if ( 0 != size )
+    {
+      sb.append( '?' );
+    }
+    return sb.toString();
+  }
+
+  private String describeAmbiguity( final String prefix )
+  {
+    final StringBuilder sb = new StringBuilder();
+    sb.append( "Ambiguous option --" );
+    sb.append( prefix );
+    sb.append( " could be" );
+    String separator = " ";
+    for ( int i = 0; i < _schema.size(); i++ )
+    {
+      final String name = _schema.getDescriptorAt( i ).getName();
+      //Only the first of several descriptors that share a name is listed
+      if ( null != name && name.startsWith( prefix ) && _schema.getDescriptor( name ) == _schema.getDescriptorAt( i ) )
+      {
+        sb.append( separator );
+        sb.append( "--" );
+        sb.append( name );
+        separator = " or ";
+      }
+    }
+    return sb.toString();
+  }
+
+  private String describeDualOption( final int id )
+  {
+    final CLOptionDescriptor descriptor = _schema.getDescriptor( id );
+    if ( null == descriptor )
+    {
+      return "<parameter>";
+    }
+    else
+    {
+      final StringBuilder sb = new StringBuilder();
+      boolean hasCharOption = false;
+
+      if ( Character.isLetter( (char) id ) )
+      {
+        sb.append( '-' );
+        sb.append( (char) id );
+        hasCharOption = true;
+      }
+
+      final String longOption = descriptor.getName();
+      if ( null != longOption )
+      {
+        if ( hasCharOption )
+        {
+          sb.append( '/' );
+        }
+        sb.append( "--" );
+        sb.append( longOption );
+      }
+
+      return sb.toString();
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package org.realityforge.getopt4j;
+
+import java.text.ParseException;
+
+/**
+ * The exception used by the parser to abandon a parse when an error occurs.
+ * Each parser preallocates a single instance that does not capture a stack trace
+ * so that rejecting malformed command lines is cheap. The details of the error are
+ * held in the associated {@link CLParseError} which renders the message on demand.
+ */
+final class CLParseException
+  extends ParseException
+{
+  private static final long serialVersionUID = 1L;
+
+  private final transient CLParseError _error;
+
+  CLParseException( final CLParseError error )
+  {
+    super( null, 0 );
+    _error = error;
+  }
+
+  @Override
+  public String getMessage()
+  {
+    return _error.getMessage();
+  }
+
+  @Override
+  public synchronized Throwable fillInStackTrace()
+  {
+    return this;
+  }
+}
@@ -0,0 +1,156 @@
+package org.realityforge.getopt4j;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A listener that records the time taken by each parse in a histogram.
+ *
+ * The histogram has a bucket for each power of two nanoseconds so bucket <code>i</code>
+ * counts the parses that took at least 2^i and less than 2^(i+1) nanoseconds. Percentiles
+ * are therefore reported to within a factor of two. The histogram may be shared by parsers
+ * in many threads and is updated without locking.
+ *
+ * @see ParserControl#getParseListener()
+ */
+public final class CLParseLatencyHistogram
+  extends AbstractParseListener
+{
+  private static final int BUCKET_COUNT = 64;
+
+  private final AtomicLongArray _buckets = new AtomicLongArray( BUCKET_COUNT );
+  private final AtomicLong _failures = new AtomicLong();
+
+  @Override
+  public void parseFailed( final CLParseError error, final long nanoTime )
+  {
+    _failures.incrementAndGet();
+  }
+
+  @Override
+  public void parseCompleted( final int argumentCount,
+                              final int optionCount,
+                              final long startTime,
+                              final long nanoTime )
+  {
+    record( nanoTime - startTime );
+  }
+
+  /**
+   * Record a parse that took the specified time.
+   *
+   * @param nanos the duration of the parse in nanoseconds
+   */
+  public void record( final long nanos )
+  {
+    _buckets.incrementAndGet( getBucket( nanos ) );
+  }
+
+  /**
+   * Retrieve the number of parses recorded.
+   *
+   * @return the number of parses
+   */
+  public long getCount()
+  {
+    long count = 0;
+    for ( int i = 0; i < BUCKET_COUNT; i++ )
+    {
+      count += _buckets.get( i );
+    }
+    return count;
+  }
+
+  /**
+   * Retrieve the number of parses that failed.
+   *
+   * @return the number of failed parses
+   */
+  public long getFailureCount()
+  {
+    return _failures.get();
+  }
+
+  /**
+   * Retrieve the number of parses that took at least 2^bucket and less than 2^(bucket+1) nanoseconds.
+   *
+   * @param bucket the bucket, from 0 to 63
+   * @return the number of parses
+   */
+  public long getBucketCount( final int bucket )
+  {
+    return _buckets.get( bucket );
+  }
+
+  /**
+   * Retrieve an upper bound of the duration within which the specified percentage of parses completed.
+   *
+   * @param percentile the percentile, from 0 to 100
+   * @return the upper bound in nanoseconds, or 0 if no parses have been recorded
+   */
+  public long getPercentile( final double percentile )
+  {
+    if ( percentile < 0 || percentile > 100 )
+    {
+      throw new IllegalArgumentException( "Percentile must be between 0 and 100 but was " + percentile );
+    }
+    //Read the buckets once so that the result is consistent with the counts summed
+    final long[] counts = new long[ BUCKET_COUNT ];
+    long total = 0;
+    for ( int i = 0; i < BUCKET_COUNT; i++ )
+    {
+      counts[ i ] = _buckets.get( i );
+      total += counts[ i ];
+    }
+    final long target = (long) Math.ceil( total * percentile / 100 );
+    long count = 0;
+    for ( int i = 0; i < BUCKET_COUNT; i++ )
+    {
+      count += counts[ i ];
+      if ( 0 != counts[ i ] && count >= target )
+      {
+        return getUpperBound( i );
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Discard all recorded parses.
+   */
+  public void reset()
+  {
+    for ( int i = 0; i < BUCKET_COUNT; i++ )
+    {
+      _buckets.set( i, 0 );
+    }
+    _failures.set( 0 );
+  }
+
+  @Override
+  public String toString()
+  {
+    final StringBuilder sb = new StringBuilder();
+    sb.append( "count=" ).append( getCount() ).append( " failures=" ).append( getFailureCount() );
+    for ( int i = 0; i < BUCKET_COUNT; i++ )
+    {
+      final long count = _buckets.get( i );
+      if ( 0 != count )
+      {
+        sb.append( " <" ).append( getUpperBound( i ) ).append( "ns=" ).append( count );
+      }
+    }
+    return sb.toString();
+  }
+
+  private static int getBucket( final long nanos )
+  {
+    //Durations are not negative unless the clock is unreliable so they are recorded in the first bucket
+    return nanos <= 0 ? 0 : 63 - Long.numberOfLeadingZeros( nanos );
+  }
+
+  private static long getUpperBound( final int bucket )
+  {
+    return 63 == bucket ? Long.MAX_VALUE : 1L << ( bucket + 1 );
+  }
+}
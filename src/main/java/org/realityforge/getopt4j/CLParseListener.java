@@ -0,0 +1,62 @@
+package org.realityforge.getopt4j;
+
+/**
+ * Receives events as the parser processes a command line.
+ *
+ * A listener is installed by returning it from {@link ParserControl#getParseListener()}.
+ * Each event carries the index of the argument that the parser had reached and the value of
+ * {@link System#nanoTime()} when the event occurred. The parser does not create any event
+ * objects and does not read the clock when no listener is installed. A listener that is
+ * returned by a control shared between threads must be thread safe.
+ *
+ * @see AbstractParseListener
+ */
+public interface CLParseListener
+{
+  /**
+   * Called when the descriptor of an option has been identified but before any arguments
+   * of the option have been parsed.
+   *
+   * @param descriptor    the descriptor of the option
+   * @param argumentIndex the index of the argument containing the option
+   * @param nanoTime      the time of the event
+   */
+  void optionRecognised( CLOptionDescriptor descriptor, int argumentIndex, long nanoTime );
+
+  /**
+   * Called when the arguments of an option or a text argument have been bound to the option.
+   *
+   * @param option        the option, which is a text argument if the id is {@link CLOption#TEXT_ARGUMENT}
+   * @param argumentIndex the index of the argument that the parser had reached
+   * @param nanoTime      the time of the event
+   */
+  void argumentBound( CLOption option, int argumentIndex, long nanoTime );
+
+  /**
+   * Called when the parser changes state.
+   *
+   * @param from          the previous state
+   * @param to            the new state
+   * @param argumentIndex the index of the argument that the parser had reached
+   * @param nanoTime      the time of the event
+   */
+  void stateChanged( CLParserState from, CLParserState to, int argumentIndex, long nanoTime );
+
+  /**
+   * Called when the parse fails. This is followed by {@link #parseCompleted(int, int, long, long)}.
+   *
+   * @param error    the error, which is only valid until the parser is reused
+   * @param nanoTime the time of the event
+   */
+  void parseFailed( CLParseError error, long nanoTime );
+
+  /**
+   * Called when the parse and the checks for duplicate and incompatible options have completed.
+   *
+   * @param argumentCount the number of arguments read by the parser
+   * @param optionCount   the number of options parsed
+   * @param startTime     the value of {@link System#nanoTime()} when the parse started
+   * @param nanoTime      the time of the event
+   */
+  void parseCompleted( int argumentCount, int optionCount, long startTime, long nanoTime );
+}
@@ -0,0 +1,207 @@
+package org.realityforge.getopt4j;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The immutable result of parsing a command line.
+ *
+ * A result is created by {@link CLArgsParser#parse(String[], CLOptionSchema, ParserControl)} and
+ * is independent of the parser that created it. All state is held in final fields so that a
+ * result may be shared between threads without synchronization. The {@link CLOption}s in the
+ * result must not be modified by adding arguments. An option may lazily convert its arguments
+ * into Strings when they are retrieved but this is safe as each thread observes either the
+ * original character sequence or an equivalent String.
+ *
+ * @see CLArgsParser
+ * @see CLOption
+ */
+public final class CLParseResult
+{
+  private final CLOptionSchema _schema;
+  private final List<CLOption> _options;
+  //The options grouped by descriptor index are the elements of _grouped from
+  //_groupStart[index] to _groupStart[index + 1]. Text arguments without a
+  //descriptor are grouped at the index schema.size()
+  private final CLOption[] _grouped;
+  private final int[] _groupStart;
+  //bitset of the descriptor indexes of the parsed options
+  private final long[] _present;
+  private final CLParseError _error;
+  private final CLUnParsedArgs _unParsedArgs;
+
+  CLParseResult( final CLOptionSchema schema,
+                 final CLOption[] options,
+                 final CLOption[] grouped,
+                 final int[] groupStart,
+                 final long[] present,
+                 final CLParseError error,
+                 final CLUnParsedArgs unParsedArgs )
+  {
+    _schema = schema;
+    _options = Collections.unmodifiableList( Arrays.asList( options ) );
+    _grouped = grouped;
+    _groupStart = groupStart;
+    _present = present;
+    _error = error;
+    _unParsedArgs = unParsedArgs;
+  }
+
+  /**
+   * Retrieve the schema that the command line was parsed with.
+   *
+   * @return the schema
+   */
+  public CLOptionSchema getSchema()
+  {
+    return _schema;
+  }
+
+  /**
+   * Retrieve a list of options that were parsed from command list.
+   *
+   * @return an unmodifiable list of the options
+   */
+  public List<CLOption> getArguments()
+  {
+    return _options;
+  }
+
+  /**
+   * Retrieve the last {@link CLOption} with specified id, or
+   * <code>null</code> if no command line option is found.
+   *
+   * @param id the command line option id
+   * @return the {@link CLOption} with the specified id, or <code>null</code> if no CLOption is found.
+   */
+  public CLOption getArgumentById( final int id )
+  {
+    final int group = getGroup( id );
+    if ( -1 == group )
+    {
+      return null;
+    }
+    else
+    {
+      final int end = _groupStart[ group + 1 ];
+      return _groupStart[ group ] == end ? null : _grouped[ end - 1 ];
+    }
+  }
+
+  /**
+   * Retrieve the last {@link CLOption} with specified name, or
+   * <code>null</code> if no command line option is found.
+   *
+   * @param name the command line option name
+   * @return the {@link CLOption} with the specified name, or <code>null</code> if no CLOption is found.
+   */
+  public CLOption getArgumentByName( final String name )
+  {
+    final CLOptionDescriptor descriptor = _schema.getDescriptor( name );
+    return null == descriptor ? null : getArgumentById( descriptor.getId() );
+  }
+
+  /**
+   * Retrieve all the {@link CLOption}s with the specified id in the order that they occurred.
+   * Text arguments are retrieved using the id {@link CLOption#TEXT_ARGUMENT}.
+   *
+   * @param id the command line option id
+   * @return an unmodifiable list of the options with the specified id, empty if there are none.
+   */
+  public List<CLOption> getArgumentsById( final int id )
+  {
+    final int group = getGroup( id );
+    if ( -1 == group )
+    {
+      return Collections.emptyList();
+    }
+    else
+    {
+      final int start = _groupStart[ group ];
+      final int end = _groupStart[ group + 1 ];
+      return start == end ?
+             Collections.<CLOption>emptyList() :
+             Collections.unmodifiableList( Arrays.asList( _grouped ).subList( start, end ) );
+    }
+  }
+
+  /**
+   * Retrieve the number of times that an option with the specified id occurred.
+   *
+   * @param id the command line option id
+   * @return the number of occurrences
+   */
+  public int getOccurrenceCount( final int id )
+  {
+    final int group = getGroup( id );
+    return -1 == group ? 0 : _groupStart[ group + 1 ] - _groupStart[ group ];
+  }
+
+  /**
+   * Return true if an option with the specified id occurred.
+   *
+   * @param id the command line option id
+   * @return true if the option occurred
+   */
+  public boolean isSet( final int id )
+  {
+    final int group = getGroup( id );
+    return -1 != group && 0 != ( _present[ group >>> 6 ] & ( 1L << group ) );
+  }
+
+  /**
+   * Retrieve an error message that occurred during parsing if one existed.
+   *
+   * @return the error string, or null if the command line was parsed successfully
+   */
+  public String getErrorString()
+  {
+    return null == _error ? null : _error.getMessage();
+  }
+
+  /**
+   * Retrieve the details of the error that occurred during parsing if one existed.
+   *
+   * @return the error, or null if the command line was parsed successfully
+   */
+  public CLParseError getError()
+  {
+    return _error;
+  }
+
+  /**
+   * Retrieve an array of arguments that have not been parsed
+   * due to the parser halting.
+   *
+   * @return a copy of the unparsed args
+   */
+  public String[] getUnParsedArgs()
+  {
+    return _unParsedArgs.toStringArray();
+  }
+
+  /**
+   * Retrieve a view of the arguments that have not been parsed due to the parser halting.
+   * The view refers to the args that were parsed rather than copying them.
+   *
+   * @return the view of the unparsed args
+   */
+  public CLUnParsedArgs getUnParsedArgsView()
+  {
+    return _unParsedArgs;
+  }
+
+  private int getGroup( final int id )
+  {
+    final int index = _schema.getIndex( id );
+    if ( -1 != index )
+    {
+      return index;
+    }
+    else
+    {
+      return CLOption.TEXT_ARGUMENT == id ? _schema.size() : -1;
+    }
+  }
+}
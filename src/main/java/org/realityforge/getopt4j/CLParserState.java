@@ -0,0 +1,34 @@
+package org.realityforge.getopt4j;
+
+/**
+ * The states of the parser that are reported to a {@link CLParseListener}.
+ *
+ * @see CLParseListener#stateChanged(CLParserState, CLParserState, int, long)
+ */
+public enum CLParserState
+{
+  /**
+   * Expecting an option or a text argument.
+   */
+  NORMAL,
+  /**
+   * Expecting the two arguments of an option such as "name=value".
+   */
+  REQUIRE_TWO_ARGUMENTS,
+  /**
+   * Expecting the argument of an option that requires an argument.
+   */
+  REQUIRE_ARGUMENT,
+  /**
+   * Expecting the argument of an option that accepts an optional argument.
+   */
+  OPTIONAL_ARGUMENT,
+  /**
+   * All remaining arguments are text arguments as "--" has been parsed.
+   */
+  NO_OPTIONS,
+  /**
+   * Parsing a group of short options such as "-abc".
+   */
+  SHORT_OPTIONS
+}
@@ -0,0 +1,17 @@
+package org.realityforge.getopt4j;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Target;
+
+/**
+ * Identifies the <code>List&lt;String&gt;</code> field of a class annotated with {@link CLOptions}
+ * that is assigned the text arguments of the command line, in the order that they occurred.
+ *
+ * @see CLOptions
+ */
+@Documented
+@Target( ElementType.FIELD )
+public @interface CLTextArguments
+{
+}
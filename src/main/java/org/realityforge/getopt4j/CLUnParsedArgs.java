@@ -0,0 +1,110 @@
+package org.realityforge.getopt4j;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * A read-only view of the arguments that were not parsed due to the parser halting.
+ *
+ * When the parser halts because {@link ParserControl#isFinished(int)} returned true the
+ * unparsed arguments are the unconsumed characters of the current argument followed by the
+ * remaining arguments. Rather than copying them the view records the position in the args
+ * supplied to the parser at which they start so that they can be handed to another parser or
+ * process without allocating. The view retains the supplied args which must not be modified
+ * while it is in use. The first element is only converted into a String when it is retrieved
+ * and {@link #toStringArray()} materialises the view when an array is required.
+ *
+ * If argument files were expanded then the remaining arguments may not be present in the
+ * supplied args, so they are read from the argument files when the parser halts and the view
+ * is over a copy of them.
+ *
+ * @see CLArgsParser#getUnParsedArgsView()
+ */
+public final class CLUnParsedArgs
+  extends AbstractList<String>
+  implements RandomAccess
+{
+  static final CLUnParsedArgs EMPTY = new CLUnParsedArgs( new CharSequence[ 0 ], 0, 0, false );
+
+  private final CharSequence[] _args;
+  private final int _startIndex;
+  private final int _charOffset;
+  private final boolean _copied;
+
+  CLUnParsedArgs( final CharSequence[] args, final int startIndex, final int charOffset, final boolean copied )
+  {
+    _args = args;
+    _startIndex = startIndex;
+    _charOffset = charOffset;
+    _copied = copied;
+  }
+
+  /**
+   * Retrieve the index in the supplied args of the first unparsed argument.
+   *
+   * @return the index, or -1 if the view is over a copy of the arguments read from argument files
+   */
+  public int getStartIndex()
+  {
+    return _copied ? -1 : _startIndex;
+  }
+
+  /**
+   * Retrieve the number of characters of the first unparsed argument that were consumed by the parser.
+   *
+   * @return the offset of the first unparsed character in the first unparsed argument
+   */
+  public int getCharOffset()
+  {
+    return _charOffset;
+  }
+
+  /**
+   * Retrieve the unparsed argument at the specified index without converting it into a String.
+   * The first argument is a subsequence of the supplied argument if some of it was consumed.
+   *
+   * @param index the index of the unparsed argument
+   * @return the unparsed argument
+   */
+  public CharSequence getSequence( final int index )
+  {
+    final CharSequence arg = _args[ _startIndex + checkIndex( index ) ];
+    return 0 == index && 0 != _charOffset ? arg.subSequence( _charOffset, arg.length() ) : arg;
+  }
+
+  @Override
+  public String get( final int index )
+  {
+    return getSequence( index ).toString();
+  }
+
+  @Override
+  public int size()
+  {
+    return _args.length - _startIndex;
+  }
+
+  /**
+   * Copy the unparsed arguments into a new array.
+   *
+   * @return the unparsed arguments
+   */
+  public String[] toStringArray()
+  {
+    final String[] result = new String[ size() ];
+    for ( int i = 0; i < result.length; i++ )
+    {
+      result[ i ] = get( i );
+    }
+    return result;
+  }
+
+  private int checkIndex( final int index )
+  {
+    if ( index < 0 || index >= size() )
+    {
+      throw new IndexOutOfBoundsException( "Index " + index + " is out of bounds for size " + size() );
+    }
+    return index;
+  }
+}
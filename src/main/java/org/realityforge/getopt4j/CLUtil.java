@@ -1,5 +1,7 @@
 package org.realityforge.getopt4j;
 
+import java.io.IOException;
+
 /**
  * CLUtil offers basic utility operations for use both internal and external to package.
  *
@@ -8,6 +10,10 @@ package org.realityforge.getopt4j;
 public final class CLUtil
 {
   private static final int MAX_DESCRIPTION_COLUMN_LENGTH = 60;
+  //The descriptions are indented by two tabs which terminals expand to 16 columns
+  private static final int DESCRIPTION_INDENT = 16;
+  //Descriptions are wrapped at no less than this many columns regardless of the width
+  private static final int MIN_DESCRIPTION_COLUMN_LENGTH = 20;
 
   /**
    * Format options into StringBuffer and return. This is typically used to
@@ -22,11 +28,89 @@ public final class CLUtil
     final StringBuffer sb = new StringBuffer();
 
     for ( final CLOptionDescriptor option : options )
+    {
+      final String description = option.getDescription();
+      appendSynopsis( sb, option );
+      sb.append( lSep );
+
+      if ( null != description )
+      {
+        int start = 0;
+        while ( description.length() - start > MAX_DESCRIPTION_COLUMN_LENGTH )
+        {
+          sb.append( "\t\t" );
+          sb.append( description, start, start + MAX_DESCRIPTION_COLUMN_LENGTH );
+          sb.append( lSep );
+          start += MAX_DESCRIPTION_COLUMN_LENGTH;
+        }
+
+        sb.append( "\t\t" );
+        sb.append( description, start, description.length() );
+        sb.append( lSep );
+      }
+    }
+    return sb;
+  }
+
+  /**
+   * Write the "Usage" text for the options in a schema to the specified output.
+   * Unlike {@link #describeOptions(CLOptionDescriptor[])} the descriptions are wrapped
+   * at word boundaries so that lines fit within the specified terminal width, assuming
+   * that tabs are expanded to 8 columns. The text is rendered the first time it is requested
+   * for a width and is then cached by the schema so that subsequent requests only copy it.
+   *
+   * @param schema the schema containing the options
+   * @param width  the width of the terminal in columns
+   * @param output the destination of the text
+   * @throws IOException if the text can not be written to the output
+   */
+  public static void describeOptions( final CLOptionSchema schema, final int width, final Appendable output )
+    throws IOException
+  {
+    output.append( schema.describeOptions( width ) );
+  }
+
+  /**
+   * Render the "Usage" text for the options, wrapping descriptions at word boundaries.
+   *
+   * @param options the option descriptors
+   * @param width   the width of the terminal in columns
+   * @return the formatted description/help for options
+   */
+  static String renderOptions( final CLOptionDescriptor[] options, final int width )
+  {
+    if ( width <= 0 )
+    {
+      throw new IllegalArgumentException( "Width must be positive but was " + width );
+    }
+    final String lSep = System.getProperty( "line.separator" );
+    final int columns = Math.max( MIN_DESCRIPTION_COLUMN_LENGTH, width - DESCRIPTION_INDENT );
+    final StringBuilder sb = new StringBuilder();
+
+    for ( final CLOptionDescriptor option : options )
+    {
+      appendSynopsis( sb, option );
+      sb.append( lSep );
+
+      final String description = option.getDescription();
+      if ( null != description )
+      {
+        appendWrapped( sb, description, columns, lSep );
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Append the flags and argument placeholders of an option. i.e. "-f, --file &lt;argument&gt;"
+   */
+  private static void appendSynopsis( final Appendable sb, final CLOptionDescriptor option )
+  {
+    try
     {
       final char ch = (char) option.getId();
       final String name = option.getName();
-      String description = option.getDescription();
-      int flags = option.getFlags();
+      final int flags = option.getFlags();
       boolean argumentRequired =
         ( flags & CLOptionDescriptor.ARGUMENT_REQUIRED ) == CLOptionDescriptor.ARGUMENT_REQUIRED;
       final boolean twoArgumentsRequired =
@@ -65,27 +149,66 @@ public final class CLUtil
       {
         sb.append( "=<value>" );
       }
-      sb.append( lSep );
+    }
+    catch ( final IOException ioe )
+    {
+      //Only invoked with string builders which never throw
+      throw new IllegalStateException( ioe );
+    }
+  }
 
-      if ( null != description )
+  /**
+   * Append the description as indented lines of at most the specified number of columns.
+   * Lines are broken at whitespace and words that are longer than a line are split.
+   */
+  private static void appendWrapped( final StringBuilder sb,
+                                     final String description,
+                                     final int columns,
+                                     final String lSep )
+  {
+    final int length = description.length();
+    int lineLength = 0;
+    int i = 0;
+    sb.append( "\t\t" );
+    while ( i < length )
+    {
+      if ( Character.isWhitespace( description.charAt( i ) ) )
       {
-        while ( description.length() > MAX_DESCRIPTION_COLUMN_LENGTH )
-        {
-          final String descriptionPart =
-            description.substring( 0, MAX_DESCRIPTION_COLUMN_LENGTH );
-          description =
-            description.substring( MAX_DESCRIPTION_COLUMN_LENGTH );
-          sb.append( "\t\t" );
-          sb.append( descriptionPart );
-          sb.append( lSep );
-        }
+        i++;
+        continue;
+      }
+      int end = i + 1;
+      while ( end < length && !Character.isWhitespace( description.charAt( end ) ) )
+      {
+        end++;
+      }
 
+      if ( 0 != lineLength && lineLength + 1 + ( end - i ) > columns )
+      {
+        sb.append( lSep );
         sb.append( "\t\t" );
-        sb.append( description );
+        lineLength = 0;
+      }
+      else if ( 0 != lineLength )
+      {
+        sb.append( ' ' );
+        lineLength++;
+      }
+      //Split words that do not fit on a line of their own
+      while ( end - i > columns - lineLength )
+      {
+        final int split = i + columns - lineLength;
+        sb.append( description, i, split );
         sb.append( lSep );
+        sb.append( "\t\t" );
+        lineLength = 0;
+        i = split;
       }
+      sb.append( description, i, end );
+      lineLength += end - i;
+      i = end;
     }
-    return sb;
+    sb.append( lSep );
   }
 
   /**
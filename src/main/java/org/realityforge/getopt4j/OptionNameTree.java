@@ -0,0 +1,151 @@
+package org.realityforge.getopt4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A BK-tree of long option names used to find the names that are closest to a mistyped name.
+ * The distance between names is the Levenshtein edit distance. Each child of a node is
+ * stored at the distance between its name and the name of the node so a search can skip
+ * any subtree that can not contain a name within the maximum distance of the target.
+ *
+ * The tree is immutable after construction.
+ */
+final class OptionNameTree
+{
+  private final CLOptionDescriptor[] _descriptors;
+  private final Node _root;
+
+  OptionNameTree( final CLOptionDescriptor[] descriptors )
+  {
+    _descriptors = descriptors;
+    Node root = null;
+    for ( int i = 0; i < descriptors.length; i++ )
+    {
+      final String name = descriptors[ i ].getName();
+      if ( null != name )
+      {
+        if ( null == root )
+        {
+          root = new Node( name, i );
+        }
+        else
+        {
+          root.insert( name, i );
+        }
+      }
+    }
+    _root = root;
+  }
+
+  /**
+   * Find the names closest to the specified name.
+   *
+   * @param name        the name
+   * @param maxDistance the maximum edit distance of a name that is returned
+   * @param limit       the maximum number of names returned
+   * @return the closest names, ordered by distance and then by the order of the descriptors
+   */
+  List<String> findClosest( final String name, final int maxDistance, final int limit )
+  {
+    //Each match is the distance in the high bits and the order in the low bits so that matches sort correctly
+    final ArrayList<Long> matches = new ArrayList<>();
+    final ArrayList<Node> pending = new ArrayList<>();
+    if ( null != _root )
+    {
+      pending.add( _root );
+    }
+    while ( !pending.isEmpty() )
+    {
+      final Node node = pending.remove( pending.size() - 1 );
+      final int distance = distance( name, node._name );
+      if ( distance <= maxDistance )
+      {
+        matches.add( ( (long) distance << 32 ) | node._order );
+      }
+      final int max = Math.min( distance + maxDistance, node._children.length - 1 );
+      for ( int i = Math.max( 1, distance - maxDistance ); i <= max; i++ )
+      {
+        if ( null != node._children[ i ] )
+        {
+          pending.add( node._children[ i ] );
+        }
+      }
+    }
+
+    matches.sort( null );
+    final ArrayList<String> names = new ArrayList<>();
+    for ( int i = 0; i < matches.size() && i < limit; i++ )
+    {
+      names.add( _descriptors[ (int) matches.get( i ).longValue() ].getName() );
+    }
+    return names;
+  }
+
+  /**
+   * Return the Levenshtein distance between the strings.
+   */
+  static int distance( final String a, final String b )
+  {
+    int[] previous = new int[ b.length() + 1 ];
+    int[] current = new int[ b.length() + 1 ];
+    for ( int j = 0; j <= b.length(); j++ )
+    {
+      previous[ j ] = j;
+    }
+    for ( int i = 1; i <= a.length(); i++ )
+    {
+      current[ 0 ] = i;
+      for ( int j = 1; j <= b.length(); j++ )
+      {
+        final int cost = a.charAt( i - 1 ) == b.charAt( j - 1 ) ? 0 : 1;
+        current[ j ] = Math.min( Math.min( current[ j - 1 ] + 1, previous[ j ] + 1 ), previous[ j - 1 ] + cost );
+      }
+      final int[] swap = previous;
+      previous = current;
+      current = swap;
+    }
+    return previous[ b.length() ];
+  }
+
+  private static final class Node
+  {
+    private final String _name;
+    //The index of the descriptor that the name was taken from
+    private final int _order;
+    //The child nodes indexed by their distance from this node
+    private Node[] _children = new Node[ 0 ];
+
+    Node( final String name, final int order )
+    {
+      _name = name;
+      _order = order;
+    }
+
+    void insert( final String name, final int order )
+    {
+      Node node = this;
+      while ( true )
+      {
+        final int distance = distance( name, node._name );
+        if ( 0 == distance )
+        {
+          //Names shared by several descriptors are only inserted once
+          return;
+        }
+        if ( distance >= node._children.length )
+        {
+          node._children = Arrays.copyOf( node._children, distance + 1 );
+        }
+        final Node child = node._children[ distance ];
+        if ( null == child )
+        {
+          node._children[ distance ] = new Node( name, order );
+          return;
+        }
+        node = child;
+      }
+    }
+  }
+}
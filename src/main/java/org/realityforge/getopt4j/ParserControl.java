@@ -15,4 +15,61 @@ public interface ParserControl
    * @return return true to halt, false to continue parsing
    */
   boolean isFinished( int lastOptionCode );
+
+  /**
+   * Called by the parser to determine whether arguments of the form <code>@path</code>
+   * are replaced by the arguments read from the file at path and, if so, how deeply
+   * argument files may reference other argument files.
+   *
+   * By default argument files are disabled by returning 0.
+   *
+   * @return the maximum nesting depth of argument files, or 0 to disable argument files
+   */
+  default int getArgumentFileDepth()
+  {
+    return 0;
+  }
+
+  /**
+   * Called by the parser to determine whether a long option may be abbreviated to any
+   * prefix of its name that is not also a prefix of the name of another option.
+   * i.e. "--verb" for "--verbose".
+   *
+   * By default long options must be specified in full by returning false.
+   *
+   * @return true to match unambiguous prefixes of long options, false to require the full name
+   */
+  default boolean isLongOptionPrefixEnabled()
+  {
+    return false;
+  }
+
+  /**
+   * Called by the parser when it starts to parse a command line to retrieve the listener
+   * that receives the events of the parse.
+   *
+   * By default no listener receives the events of the parse by returning null.
+   *
+   * @return the listener, or null if events are not required
+   */
+  default CLParseListener getParseListener()
+  {
+    return null;
+  }
+
+  /**
+   * Called by the parser as each argument is bound to an option to retrieve the pool that
+   * the argument is interned in. The same pool may be returned for all descriptors to share
+   * values between options or a pool may be returned for only those options whose values
+   * are likely to repeat.
+   *
+   * By default arguments are not interned by returning null.
+   *
+   * @param descriptor the descriptor of the option, or null for text arguments
+   * @return the pool, or null if the argument is not interned
+   */
+  default CLInternPool getInternPool( final CLOptionDescriptor descriptor )
+  {
+    return null;
+  }
 }
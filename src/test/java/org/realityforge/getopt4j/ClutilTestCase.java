@@ -1,6 +1,17 @@
 package org.realityforge.getopt4j;
 
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.testng.annotations.Test;
 import static org.testng.Assert.*;
@@ -568,4 +579,1178 @@ public final class ClutilTestCase
     final String lineSeparator = System.getProperty( "line.separator" );
     assertEquals( "\t-n, --nulltest" + lineSeparator, sb.toString() );
   }
+
+  @Test
+  public void schemaLookup()
+  {
+    final CLOptionDescriptor wide =
+      new CLOptionDescriptor( "wide", CLOptionDescriptor.ARGUMENT_DISALLOWED, 70000, "wide id" );
+    final CLOptionDescriptor negative =
+      new CLOptionDescriptor( "negative", CLOptionDescriptor.ARGUMENT_DISALLOWED, -3, "negative id" );
+    final CLOptionDescriptor duplicate =
+      new CLOptionDescriptor( "duplicate", CLOptionDescriptor.ARGUMENT_DISALLOWED, FILE_OPT, "duplicate id" );
+    final CLOptionSchema schema = new CLOptionSchema( new CLOptionDescriptor[]{ FILE, wide, negative, duplicate } );
+
+    assertSame( schema.getDescriptor( FILE_OPT ), FILE );
+    assertSame( schema.getDescriptor( 70000 ), wide );
+    assertSame( schema.getDescriptor( -3 ), negative );
+    assertNull( schema.getDescriptor( 'x' ) );
+    assertNull( schema.getDescriptor( 70001 ) );
+
+    assertSame( schema.getDescriptor( "file" ), FILE );
+    assertSame( schema.getDescriptor( "wide" ), wide );
+    assertSame( schema.getDescriptor( "duplicate" ), duplicate );
+    assertNull( schema.getDescriptor( "missing" ) );
+
+    assertEquals( schema.getDescriptors().length, 4 );
+  }
+
+  @Test
+  public void parseWithSchema()
+  {
+    final CLOptionDescriptor wide =
+      new CLOptionDescriptor( "wide", CLOptionDescriptor.ARGUMENT_REQUIRED, 1000, "wide id" );
+    final CLOptionSchema schema = new CLOptionSchema( new CLOptionDescriptor[]{ ALL, FILE, wide } );
+
+    final CLArgsParser parser1 = new CLArgsParser( new String[]{ "-f", "a.txt", "--wide=x" }, schema );
+    assertNull( parser1.getErrorString(), parser1.getErrorString() );
+    assertEquals( parser1.getArguments().size(), 2 );
+    assertEquals( parser1.getArgumentById( FILE_OPT ).getArgument(), "a.txt" );
+    assertEquals( parser1.getArgumentByName( "wide" ).getArgument(), "x" );
+
+    final CLArgsParser parser2 = new CLArgsParser( new String[]{ "--all", "-x" }, schema );
+    assertEquals( parser2.getErrorString(), "Unknown option -x" );
+  }
+
+  @Test
+  public void resetParser()
+  {
+    final CLOptionSchema schema = new CLOptionSchema( new CLOptionDescriptor[]{ DEFINE, ALL, CLEAR1, BLEE, FILE } );
+    final CLArgsParser parser = new CLArgsParser( schema, null );
+
+    parser.reset( ARGLIST4 );
+    assertNotNull( parser.getErrorString() );
+    assertEquals( parser.getArguments().size(), 5 );
+
+    parser.reset( new String[]{ "-Dstupid=idiot", "-f", "myfile.txt" } );
+    assertNull( parser.getErrorString(), parser.getErrorString() );
+
+    final List<CLOption> clOptions = parser.getArguments();
+    assertEquals( clOptions.size(), 2 );
+    assertEquals( clOptions.get( 0 ).getArgument( 0 ), "stupid" );
+    assertEquals( clOptions.get( 0 ).getArgument( 1 ), "idiot" );
+    assertEquals( parser.getArgumentById( FILE_OPT ).getArgument(), "myfile.txt" );
+    assertNull( parser.getArgumentById( ALL_OPT ) );
+
+    parser.reset( new String[ 0 ] );
+    assertNull( parser.getErrorString(), parser.getErrorString() );
+    assertEquals( parser.getArguments().size(), 0 );
+    assertNull( parser.getArgumentById( FILE_OPT ) );
+  }
+
+  @Test
+  public void emptyArguments()
+  {
+    final CLOptionDescriptor[] options = new CLOptionDescriptor[]{ FILE, ALL };
+    final CLArgsParser parser = new CLArgsParser( new String[]{ "", "-f=", "--all=", "text" }, options );
+
+    assertNull( parser.getErrorString(), parser.getErrorString() );
+
+    final List<CLOption> clOptions = parser.getArguments();
+    assertEquals( clOptions.size(), 4 );
+    assertEquals( clOptions.get( 0 ).getId(), CLOption.TEXT_ARGUMENT );
+    assertEquals( clOptions.get( 0 ).getArgument(), "" );
+    assertEquals( clOptions.get( 1 ).getId(), FILE_OPT );
+    assertEquals( clOptions.get( 1 ).getArgument(), "" );
+    assertEquals( clOptions.get( 2 ).getId(), ALL_OPT );
+    assertEquals( clOptions.get( 3 ).getArgument(), "text" );
+  }
+
+  @Test
+  public void argumentsReuseOriginalStrings()
+  {
+    final CLOptionDescriptor[] options = new CLOptionDescriptor[]{ FILE, DEFINE };
+    final String value = "myfile.txt";
+    final String text = "text";
+    final CLArgsParser parser = new CLArgsParser( new String[]{ "-f", value, text, "-Dk=v" }, options );
+
+    assertNull( parser.getErrorString(), parser.getErrorString() );
+
+    final List<CLOption> clOptions = parser.getArguments();
+    assertSame( clOptions.get( 0 ).getArgument(), value );
+    assertSame( clOptions.get( 1 ).getArgument(), text );
+    assertEquals( clOptions.get( 2 ).getArgument( 0 ), "k" );
+    assertEquals( clOptions.get( 2 ).getArgument( 1 ), "v" );
+  }
+
+  @Test
+  public void partParseAtEndOfShortOptions()
+  {
+    final CLOptionDescriptor[] options = new CLOptionDescriptor[]{ CLEAR1 };
+
+    final ParserControl control = new AbstractParserControl()
+    {
+      public boolean isFinished( final int lastOptionCode )
+      {
+        return lastOptionCode == CLEAR1_OPT;
+      }
+    };
+
+    final CLArgsParser parser = new CLArgsParser( new String[]{ "-c", "kid" }, options, control );
+
+    assertNull( parser.getErrorString(), parser.getErrorString() );
+    assertEquals( parser.getArguments().size(), 1 );
+    assertEquals( parser.getUnParsedArgs(), new String[]{ "kid" } );
+  }
+
+  @Test
+  public void incompatibleOptionsInLargeSchema()
+  {
+    final CLOptionDescriptor[] options = new CLOptionDescriptor[ 100 ];
+    for ( int i = 0; i < 99; i++ )
+    {
+      options[ i ] = new CLOptionDescriptor( "option" + i,
+                                             CLOptionDescriptor.ARGUMENT_DISALLOWED |
+                                             CLOptionDescriptor.DUPLICATES_ALLOWED,
+                                             0x2000 + i,
+                                             "option " + i );
+    }
+    options[ 99 ] = new CLOptionDescriptor( "last",
+                                            CLOptionDescriptor.ARGUMENT_DISALLOWED,
+                                            0x2063,
+                                            "last",
+                                            new int[]{ 0x2046 } );
+    final CLOptionSchema schema = new CLOptionSchema( options );
+
+    final CLArgsParser parser1 =
+      new CLArgsParser( new String[]{ "--option70", "--option70", "--option3", "--last" }, schema );
+    assertEquals( parser1.getErrorString(), "Incompatible options ---option70 and --last found." );
+
+    final CLArgsParser parser2 = new CLArgsParser( new String[]{ "--last", "--option98", "--option70" }, schema );
+    assertEquals( parser2.getErrorString(), "Incompatible options ---option70 and --last found." );
+
+    final CLArgsParser parser3 =
+      new CLArgsParser( new String[]{ "--option71", "--option71", "--option3", "--last" }, schema );
+    assertNull( parser3.getErrorString(), parser3.getErrorString() );
+  }
+
+  @Test
+  public void iterateOptions()
+  {
+    final CLOptionSchema schema = new CLOptionSchema( new CLOptionDescriptor[]{ DEFINE, FILE, TAINT, ALL } );
+    final CLOptionIterator iterator =
+      new CLOptionIterator( new String[]{ "-Dk=v", "-f", "a.txt", "text", "-T", "--all" }, schema );
+
+    assertTrue( iterator.hasNext() );
+    final CLOption option0 = iterator.next();
+    assertEquals( option0.getId(), DEFINE_OPT );
+    assertEquals( option0.getArgument( 1 ), "v" );
+    assertEquals( iterator.next().getArgument(), "a.txt" );
+    assertEquals( iterator.next().getArgument(), "text" );
+    assertEquals( iterator.next().getId(), TAINT_OPT );
+    assertEquals( iterator.next().getId(), ALL_OPT );
+    assertFalse( iterator.hasNext() );
+    assertNull( iterator.getErrorString(), iterator.getErrorString() );
+  }
+
+  @Test
+  public void iterateOptionsWithErrors()
+  {
+    final CLOptionSchema schema = new CLOptionSchema( new CLOptionDescriptor[]{ DEFINE, ALL, BLEE } );
+
+    final CLOptionIterator iterator1 = new CLOptionIterator( ARGLIST4, schema );
+    assertEquals( iterator1.next().getId(), DEFINE_OPT );
+    assertEquals( iterator1.next().getId(), CLOption.TEXT_ARGUMENT );
+    assertEquals( iterator1.next().getId(), ALL_OPT );
+    assertFalse( iterator1.hasNext() );
+    assertEquals( iterator1.getErrorString(), "Incompatible options --b/--blee and -a/--all found." );
+
+    final CLOptionIterator iterator2 = new CLOptionIterator( new String[]{ "--all", "-x", "--all" }, schema );
+    assertEquals( iterator2.next().getId(), ALL_OPT );
+    assertFalse( iterator2.hasNext() );
+    assertEquals( iterator2.getErrorString(), "Unknown option -x" );
+  }
+
+  @Test
+  public void iterateOptionsUntilHalted()
+  {
+    final CLOptionSchema schema = new CLOptionSchema( new CLOptionDescriptor[]{ YOU } );
+    final ParserControl control = new AbstractParserControl()
+    {
+      public boolean isFinished( final int lastOptionCode )
+      {
+        return lastOptionCode == YOU_OPT;
+      }
+    };
+    final CLOptionIterator iterator = new CLOptionIterator( ARGLIST1, schema, control );
+
+    assertEquals( iterator.next().getId(), YOU_OPT );
+    assertFalse( iterator.hasNext() );
+    assertNull( iterator.getErrorString(), iterator.getErrorString() );
+    assertEquals( iterator.getUnParsedArgs(), new String[]{ "are", "--all", "-cler", "kid" } );
+  }
+
+  @Test
+  public void argumentFiles()
+    throws IOException
+  {
+    final Path dir = Files.createTempDirectory( "getopt4j" );
+    final Path nested = dir.resolve( "nested.args" );
+    write( nested, "--all\n# a comment -x\n\"quoted text\"" );
+    final Path file = dir.resolve( "main.args" );
+    write( file, "-f 'my file.txt'\n@" + nested + "\n-Dk=\"a \\\"b\\\"\"   @@literal" );
+
+    final CLOptionDescriptor[] options = new CLOptionDescriptor[]{ DEFINE, FILE, ALL };
+    final CLArgsParser parser =
+      new CLArgsParser( new String[]{ "@" + file, "text" }, options, new ArgumentFileControl( 2 ) );
+
+    assertNull( parser.getErrorString(), parser.getErrorString() );
+
+    final List<CLOption> clOptions = parser.getArguments();
+    assertEquals( clOptions.size(), 6 );
+    assertEquals( clOptions.get( 0 ).getArgument(), "my file.txt" );
+    assertEquals( clOptions.get( 1 ).getId(), ALL_OPT );
+    assertEquals( clOptions.get( 2 ).getArgument(), "quoted text" );
+    assertEquals( clOptions.get( 3 ).getArgument( 1 ), "a \"b\"" );
+    assertEquals( clOptions.get( 4 ).getArgument(), "@literal" );
+    assertEquals( clOptions.get( 5 ).getArgument(), "text" );
+
+    //Argument files are not expanded unless enabled by the control
+    final CLArgsParser parser2 = new CLArgsParser( new String[]{ "@" + file }, options );
+    assertNull( parser2.getErrorString(), parser2.getErrorString() );
+    assertEquals( parser2.getArguments().get( 0 ).getArgument(), "@" + file );
+  }
+
+  @Test
+  public void argumentFileErrors()
+    throws IOException
+  {
+    final Path dir = Files.createTempDirectory( "getopt4j" );
+    final Path file1 = dir.resolve( "1.args" );
+    final Path file2 = dir.resolve( "2.args" );
+    write( file1, "--all @" + file2 );
+    write( file2, "@" + file1 );
+    final Path file3 = dir.resolve( "3.args" );
+    write( file3, "--all 'unterminated" );
+
+    final CLOptionDescriptor[] options = new CLOptionDescriptor[]{ ALL };
+
+    final CLArgsParser parser1 = new CLArgsParser( new String[]{ "@" + file1 }, options, new ArgumentFileControl( 5 ) );
+    assertEquals( parser1.getErrorString(), "Recursive reference to argument file @" + file1 );
+
+    final CLArgsParser parser2 = new CLArgsParser( new String[]{ "@" + file1 }, options, new ArgumentFileControl( 1 ) );
+    assertEquals( parser2.getErrorString(),
+                  "Argument file @" + file2 + " exceeds the maximum nesting depth of 1" );
+
+    final CLArgsParser parser3 = new CLArgsParser( new String[]{ "@" + file3 }, options, new ArgumentFileControl( 1 ) );
+    assertEquals( parser3.getErrorString(), "Unterminated quote in argument file " + file3.toRealPath() );
+
+    final Path missing = dir.resolve( "missing.args" );
+    final CLArgsParser parser4 = new CLArgsParser( new String[]{ "@" + missing }, options, new ArgumentFileControl( 1 ) );
+    assertEquals( parser4.getErrorString(), "Unable to read argument file " + missing );
+  }
+
+  @Test
+  public void unParsedArgumentFile()
+    throws IOException
+  {
+    final Path file = Files.createTempFile( "getopt4j", ".args" );
+    write( file, "--you are --all" );
+
+    final ParserControl control = new ArgumentFileControl( 1 )
+    {
+      public boolean isFinished( final int lastOptionCode )
+      {
+        return lastOptionCode == YOU_OPT;
+      }
+    };
+    final CLOptionDescriptor[] options = new CLOptionDescriptor[]{ YOU, ALL };
+    final CLArgsParser parser = new CLArgsParser( new String[]{ "@" + file, "kid" }, options, control );
+
+    assertNull( parser.getErrorString(), parser.getErrorString() );
+    assertEquals( parser.getArguments().size(), 1 );
+    assertEquals( parser.getUnParsedArgs(), new String[]{ "are", "--all", "kid" } );
+    assertEquals( parser.getUnParsedArgsView().getStartIndex(), -1 );
+  }
+
+  @Test
+  public void lambdaParserControl()
+  {
+    //Controls only need to implement isFinished as the other methods have defaults
+    final ParserControl control = lastOptionCode -> lastOptionCode == YOU_OPT;
+    final CLArgsParser parser =
+      new CLArgsParser( new String[]{ "--you", "@args", "--al" }, new CLOptionDescriptor[]{ YOU, ALL }, control );
+
+    assertNull( parser.getErrorString(), parser.getErrorString() );
+    assertEquals( parser.getArguments().size(), 1 );
+    assertEquals( parser.getUnParsedArgs(), new String[]{ "@args", "--al" } );
+    assertEquals( control.getArgumentFileDepth(), 0 );
+    assertFalse( control.isLongOptionPrefixEnabled() );
+    assertNull( control.getParseListener() );
+    assertNull( control.getInternPool( YOU ) );
+  }
+
+  private static void write( final Path path, final String content )
+    throws IOException
+  {
+    Files.write( path, content.getBytes( StandardCharsets.UTF_8 ) );
+  }
+
+  private static class ArgumentFileControl
+    extends AbstractParserControl
+  {
+    private final int _depth;
+
+    ArgumentFileControl( final int depth )
+    {
+      _depth = depth;
+    }
+
+    @Override
+    public int getArgumentFileDepth()
+    {
+      return _depth;
+    }
+  }
+
+  @Test
+  public void parseCharSequences()
+  {
+    final char[] buffer = "-Dk=v --file=a.txt text --all".toCharArray();
+    final CharSequence[] args = new CharSequence[]{
+      CharBuffer.wrap( buffer, 0, 5 ),
+      CharBuffer.wrap( buffer, 6, 12 ),
+      CharBuffer.wrap( buffer, 19, 4 ),
+      CharBuffer.wrap( buffer, 24, 5 ) };
+    final CLOptionSchema schema = new CLOptionSchema( new CLOptionDescriptor[]{ DEFINE, FILE, ALL } );
+    final CLArgsParser parser = new CLArgsParser( args, schema, null );
+
+    assertNull( parser.getErrorString(), parser.getErrorString() );
+
+    final List<CLOption> clOptions = parser.getArguments();
+    assertEquals( clOptions.size(), 4 );
+    assertEquals( clOptions.get( 0 ).getArgument( 0 ), "k" );
+    assertEquals( clOptions.get( 0 ).getArgument( 1 ), "v" );
+
+    final CLOption file = clOptions.get( 1 );
+    assertEquals( file.getId(), FILE_OPT );
+    //Arguments are views until retrieved as a String
+    assertTrue( file.getArgumentSequence( 0 ) instanceof CharBuffer );
+    assertEquals( file.getArgumentSequence( 0 ).toString(), "a.txt" );
+    assertEquals( file.getArgument(), "a.txt" );
+    assertTrue( file.getArgumentSequence( 0 ) instanceof String );
+
+    assertEquals( clOptions.get( 2 ).getArgument(), "text" );
+    assertEquals( clOptions.get( 3 ).getId(), ALL_OPT );
+  }
+
+  @Test
+  public void typedArguments()
+    throws Exception
+  {
+    final CLOption option = new CLOption( FILE );
+    option.addArgument( "-2147483648" );
+    option.addArgument( "9223372036854775807" );
+    option.addArgument( "Yes" );
+    option.addArgument( "off" );
+    option.addArgument( "64m" );
+    option.addArgument( "30s" );
+    option.addArgument( "250" );
+    option.addArgument( "2h" );
+
+    assertEquals( option.getIntArgument( 0 ), Integer.MIN_VALUE );
+    assertEquals( option.getLongArgument( 0 ), Integer.MIN_VALUE );
+    assertEquals( option.getLongArgument( 1 ), Long.MAX_VALUE );
+    assertTrue( option.getBooleanArgument( 2 ) );
+    assertFalse( option.getBooleanArgument( 3 ) );
+    assertEquals( option.getSizeArgument( 4 ), 64L * 1024 * 1024 );
+    assertEquals( option.getSizeArgument( 6 ), 250L );
+    assertEquals( option.getDurationArgument( 5 ), 30000L );
+    assertEquals( option.getDurationArgument( 6 ), 250L );
+    assertEquals( option.getDurationArgument( 7 ), 2L * 60 * 60 * 1000 );
+  }
+
+  @Test
+  public void malformedTypedArguments()
+  {
+    final CLOption option = new CLOption( FILE );
+    option.addArgument( "2147483648" );
+    option.addArgument( "12x4" );
+    option.addArgument( "maybe" );
+    option.addArgument( "-1k" );
+    option.addArgument( "10y" );
+
+    assertArgumentError( () -> option.getIntArgument( 0 ), 0, 9,
+                         "Invalid integer argument '2147483648' to option --file" );
+    assertArgumentError( () -> option.getLongArgument( 1 ), 1, 2,
+                         "Invalid integer argument '12x4' to option --file" );
+    assertArgumentError( () -> option.getBooleanArgument( 2 ), 2, 0,
+                         "Invalid boolean argument 'maybe' to option --file" );
+    assertArgumentError( () -> option.getSizeArgument( 3 ), 3, 0,
+                         "Invalid size argument '-1k' to option --file" );
+    assertArgumentError( () -> option.getDurationArgument( 4 ), 4, 2,
+                         "Invalid duration argument '10y' to option --file" );
+    assertArgumentError( () -> option.getIntArgument( 5 ), 5, 0,
+                         "Missing argument 5 to option --file" );
+  }
+
+  private void assertArgumentError( final ArgumentAccessor accessor,
+                                    final int index,
+                                    final int offset,
+                                    final String message )
+  {
+    try
+    {
+      accessor.get();
+      fail( "Expected argument " + index + " to be invalid" );
+    }
+    catch ( final CLArgumentException cae )
+    {
+      assertEquals( cae.getMessage(), message );
+      assertEquals( cae.getErrorOffset(), offset );
+      assertEquals( cae.getArgumentIndex(), index );
+      assertEquals( cae.getDescriptor(), FILE );
+    }
+  }
+
+  private interface ArgumentAccessor
+  {
+    void get()
+      throws CLArgumentException;
+  }
+
+  @Test
+  public void groupedOptions()
+  {
+    final CLOptionDescriptor verbose =
+      new CLOptionDescriptor( "verbose",
+                              CLOptionDescriptor.ARGUMENT_DISALLOWED | CLOptionDescriptor.DUPLICATES_ALLOWED,
+                              'v',
+                              "increase verbosity" );
+    final CLOptionDescriptor define =
+      new CLOptionDescriptor( "define",
+                              CLOptionDescriptor.ARGUMENTS_REQUIRED_2 | CLOptionDescriptor.DUPLICATES_ALLOWED,
+                              DEFINE_OPT,
+                              "define" );
+    final CLOptionDescriptor[] options = new CLOptionDescriptor[]{ define, verbose, ALL, FILE };
+    final String[] args = new String[]{ "-Da=1", "-vvv", "text1", "-Db=2", "--verbose", "text2" };
+    final CLArgsParser parser = new CLArgsParser( args, options );
+
+    assertNull( parser.getErrorString(), parser.getErrorString() );
+
+    final List<CLOption> defines = parser.getArgumentsById( DEFINE_OPT );
+    assertEquals( defines.size(), 2 );
+    assertEquals( defines.get( 0 ).getArgument( 1 ), "1" );
+    assertEquals( defines.get( 1 ).getArgument( 1 ), "2" );
+    assertEquals( parser.getArgumentById( DEFINE_OPT ), defines.get( 1 ) );
+
+    assertEquals( parser.getOccurrenceCount( 'v' ), 4 );
+    assertTrue( parser.isSet( 'v' ) );
+    assertFalse( parser.isSet( ALL_OPT ) );
+    assertEquals( parser.getOccurrenceCount( ALL_OPT ), 0 );
+    assertTrue( parser.getArgumentsById( ALL_OPT ).isEmpty() );
+    assertFalse( parser.isSet( 'z' ) );
+    assertTrue( parser.getArgumentsById( 'z' ).isEmpty() );
+
+    final List<CLOption> text = parser.getArgumentsById( CLOption.TEXT_ARGUMENT );
+    assertEquals( text.size(), 2 );
+    assertEquals( text.get( 0 ).getArgument(), "text1" );
+    assertEquals( text.get( 1 ).getArgument(), "text2" );
+
+    //The index is rebuilt when the parser is reused
+    parser.reset( new String[]{ "--all" } );
+    assertTrue( parser.isSet( ALL_OPT ) );
+    assertFalse( parser.isSet( 'v' ) );
+    assertEquals( parser.getOccurrenceCount( DEFINE_OPT ), 0 );
+    assertEquals( parser.getArgumentsById( ALL_OPT ).size(), 1 );
+  }
+
+  @Test
+  public void parseResult()
+  {
+    final CLOptionSchema schema = new CLOptionSchema( new CLOptionDescriptor[]{ DEFINE, ALL, BLEE, FILE, CASE_CHECK } );
+
+    final CLParseResult result = CLArgsParser.parse( ARGLIST2, schema );
+    assertNull( result.getErrorString(), result.getErrorString() );
+    assertEquals( result.getSchema(), schema );
+    assertEquals( result.getArguments().size(), 5 );
+    assertEquals( result.getArgumentById( DEFINE_OPT ).getArgument( 1 ), "idiot" );
+    assertEquals( result.getArgumentByName( "all" ).getId(), ALL_OPT );
+    assertNull( result.getArgumentByName( "file" ) );
+    assertNull( result.getArgumentById( FILE_OPT ) );
+    assertEquals( result.getArgumentsById( CLOption.TEXT_ARGUMENT ).size(), 2 );
+    assertEquals( result.getArgumentById( CLOption.TEXT_ARGUMENT ).getArgument(), "here" );
+    assertEquals( result.getOccurrenceCount( ALL_OPT ), 1 );
+    assertTrue( result.isSet( DEFINE_OPT ) );
+    assertFalse( result.isSet( BLEE_OPT ) );
+    assertEquals( result.getUnParsedArgs().length, 0 );
+
+    final CLParseResult result2 = CLArgsParser.parse( ARGLIST4, schema );
+    assertEquals( result2.getErrorString(), "Incompatible options --b/--blee and -a/--all found." );
+    assertFalse( result2.isSet( ALL_OPT ) );
+
+    //The first result is unaffected by subsequent parses
+    assertEquals( result.getArguments().size(), 5 );
+    assertTrue( result.isSet( ALL_OPT ) );
+  }
+
+  @Test( expectedExceptions = UnsupportedOperationException.class )
+  public void parseResultIsUnmodifiable()
+  {
+    final CLOptionSchema schema = new CLOptionSchema( new CLOptionDescriptor[]{ ALL } );
+    CLArgsParser.parse( new String[]{ "--all" }, schema ).getArguments().clear();
+  }
+
+  @Test
+  public void batchParse()
+  {
+    final CLOptionSchema schema = new CLOptionSchema( new CLOptionDescriptor[]{ FILE, ALL, BLEE } );
+    final List<String[]> commandLines = new ArrayList<>();
+    for ( int i = 0; i < 1000; i++ )
+    {
+      commandLines.add( 0 == i % 10 ? new String[]{ "--all", "--blee" } : new String[]{ "-f", "file" + i } );
+    }
+
+    final CLBatchParser batchParser = new CLBatchParser( schema );
+    final ForkJoinPool pool = new ForkJoinPool( 4 );
+    try
+    {
+      final List<CLParseResult> results = batchParser.parse( commandLines, pool );
+      assertBatchResults( results );
+    }
+    finally
+    {
+      pool.shutdown();
+    }
+    assertBatchResults( batchParser.parse( commandLines.stream() ) );
+  }
+
+  private void assertBatchResults( final List<CLParseResult> results )
+  {
+    assertEquals( results.size(), 1000 );
+    for ( int i = 0; i < 1000; i++ )
+    {
+      final CLParseResult result = results.get( i );
+      if ( 0 == i % 10 )
+      {
+        assertEquals( result.getErrorString(), "Incompatible options --b/--blee and -a/--all found." );
+      }
+      else
+      {
+        assertNull( result.getErrorString(), result.getErrorString() );
+        assertEquals( result.getArgumentById( FILE_OPT ).getArgument(), "file" + i );
+      }
+    }
+  }
+
+  @Test
+  public void longOptionPrefixes()
+  {
+    final CLOptionDescriptor verbose =
+      new CLOptionDescriptor( "verbose", CLOptionDescriptor.ARGUMENT_DISALLOWED, 'v', "verbose output" );
+    final CLOptionDescriptor version =
+      new CLOptionDescriptor( "version", CLOptionDescriptor.ARGUMENT_DISALLOWED, 'V', "print version" );
+    final CLOptionDescriptor ver =
+      new CLOptionDescriptor( "ver", CLOptionDescriptor.ARGUMENT_DISALLOWED, 'x', "an exact prefix" );
+    final CLOptionSchema schema = new CLOptionSchema( new CLOptionDescriptor[]{ verbose, version, ver, FILE } );
+    final ParserControl control = new AbstractParserControl()
+    {
+      @Override
+      public boolean isLongOptionPrefixEnabled()
+      {
+        return true;
+      }
+    };
+
+    final CLArgsParser parser =
+      new CLArgsParser( new String[]{ "--verb", "--versi", "--ver", "--fi=a.txt" }, schema, control );
+    assertNull( parser.getErrorString(), parser.getErrorString() );
+    final List<CLOption> clOptions = parser.getArguments();
+    assertEquals( clOptions.size(), 4 );
+    assertEquals( clOptions.get( 0 ).getId(), 'v' );
+    assertEquals( clOptions.get( 1 ).getId(), 'V' );
+    assertEquals( clOptions.get( 2 ).getId(), 'x' );
+    assertEquals( clOptions.get( 3 ).getId(), FILE_OPT );
+    assertEquals( clOptions.get( 3 ).getArgument(), "a.txt" );
+
+    final CLArgsParser parser2 = new CLArgsParser( new String[]{ "--v" }, schema, control );
+    assertEquals( parser2.getErrorString(), "Ambiguous option --v could be --verbose or --version or --ver" );
+
+    final CLArgsParser parser3 = new CLArgsParser( new String[]{ "--verbx" }, schema, control );
+    assertEquals( parser3.getErrorString(), "Unknown option --verbx" );
+
+    //Prefixes are not matched unless enabled
+    final CLArgsParser parser4 = new CLArgsParser( new String[]{ "--verb" }, schema, null );
+    assertEquals( parser4.getErrorString(), "Unknown option --verb. Did you mean --ver?" );
+  }
+
+  @Test
+  public void suggestSimilarOptions()
+  {
+    final CLOptionDescriptor verbose =
+      new CLOptionDescriptor( "verbose", CLOptionDescriptor.ARGUMENT_DISALLOWED, 'v', "verbose output" );
+    final CLOptionDescriptor colour =
+      new CLOptionDescriptor( "colour", CLOptionDescriptor.ARGUMENT_DISALLOWED, 'c', "colour output" );
+    final CLOptionDescriptor color =
+      new CLOptionDescriptor( "color", CLOptionDescriptor.ARGUMENT_DISALLOWED, 'C', "color output" );
+    final CLOptionSchema schema = new CLOptionSchema( new CLOptionDescriptor[]{ verbose, colour, color, FILE } );
+
+    final CLArgsParser parser1 = new CLArgsParser( new String[]{ "--verbsoe" }, schema );
+    assertEquals( parser1.getErrorString(), "Unknown option --verbsoe. Did you mean --verbose?" );
+
+    final CLArgsParser parser2 = new CLArgsParser( new String[]{ "--coloor" }, schema );
+    assertEquals( parser2.getErrorString(), "Unknown option --coloor. Did you mean --colour or --color?" );
+
+    final CLArgsParser parser3 = new CLArgsParser( new String[]{ "--colr" }, schema );
+    assertEquals( parser3.getErrorString(), "Unknown option --colr. Did you mean --color?" );
+
+    final CLArgsParser parser4 = new CLArgsParser( new String[]{ "--fil=x" }, schema );
+    assertEquals( parser4.getErrorString(), "Unknown option --fil. Did you mean --file?" );
+
+    final CLArgsParser parser5 = new CLArgsParser( new String[]{ "--output" }, schema );
+    assertEquals( parser5.getErrorString(), "Unknown option --output" );
+  }
+
+  @Test
+  public void structuredErrors()
+  {
+    final CLOptionSchema schema =
+      new CLOptionSchema( new CLOptionDescriptor[]{ DEFINE, ALL, BLEE, FILE, CLEAR1, CLEAR2 } );
+    final CLArgsParser parser = new CLArgsParser( schema, null );
+
+    parser.reset( new String[]{ "--all" } );
+    assertNull( parser.getError() );
+
+    parser.reset( new String[]{ "text", "-clx" } );
+    assertError( parser.getError(), CLErrorCode.UNKNOWN_OPTION, 1, 3, null );
+    assertEquals( parser.getErrorString(), "Unknown option -x" );
+
+    parser.reset( new String[]{ "--all", "--nope=1" } );
+    assertError( parser.getError(), CLErrorCode.UNKNOWN_OPTION, 1, 2, null );
+    assertEquals( parser.getErrorString(), "Unknown option --nope" );
+
+    parser.reset( new String[]{ "-c", "-" } );
+    assertError( parser.getError(), CLErrorCode.MALFORMED_OPTION, 1, 0, null );
+
+    parser.reset( new String[]{ "--all", "--file" } );
+    assertError( parser.getError(), CLErrorCode.MISSING_ARGUMENT, 2, 0, FILE );
+    assertEquals( parser.getErrorString(), "Missing argument to option --file" );
+
+    parser.reset( new String[]{ "-D=x" } );
+    assertError( parser.getError(), CLErrorCode.MALFORMED_ARGUMENT, 0, 2, DEFINE );
+
+    parser.reset( new String[]{ "-c", "-f", "x", "-lf", "y" } );
+    assertError( parser.getError(), CLErrorCode.DUPLICATE_OPTION, 3, 2, FILE );
+    assertEquals( parser.getErrorString(), "Duplicate options for -f/--file found." );
+
+    parser.reset( ARGLIST4 );
+    final CLParseError error = parser.getError();
+    //The descriptor is the option that lists the other option as incompatible
+    assertError( error, CLErrorCode.INCOMPATIBLE_OPTIONS, 3, 2, ALL );
+    assertEquals( error.getOtherDescriptor(), BLEE );
+    assertEquals( error.getOptionId(), ALL_OPT );
+    assertEquals( parser.getErrorString(), "Incompatible options --b/--blee and -a/--all found." );
+
+    //The structured error is captured by the immutable result
+    final CLParseResult result = CLArgsParser.parse( new String[]{ "--all", "-f" }, schema );
+    assertError( result.getError(), CLErrorCode.MISSING_ARGUMENT, 1, 2, FILE );
+    assertEquals( result.getErrorString(), "Missing argument to option -f" );
+
+    final CLOptionIterator iterator = new CLOptionIterator( new String[]{ "--blee", "--all" }, schema );
+    assertEquals( iterator.next().getId(), BLEE_OPT );
+    assertFalse( iterator.hasNext() );
+    assertError( iterator.getError(), CLErrorCode.INCOMPATIBLE_OPTIONS, 1, 2, ALL );
+  }
+
+  private void assertError( final CLParseError error,
+                            final CLErrorCode code,
+                            final int argumentIndex,
+                            final int charOffset,
+                            final CLOptionDescriptor descriptor )
+  {
+    assertNotNull( error );
+    assertEquals( error.getCode(), code );
+    assertEquals( error.getArgumentIndex(), argumentIndex );
+    assertEquals( error.getCharOffset(), charOffset );
+    assertEquals( error.getDescriptor(), descriptor );
+  }
+
+  @Test
+  public void lookupOptionsById()
+  {
+    final int wideId = 100000;
+    final CLOptionDescriptor wide =
+      new CLOptionDescriptor( "wide", CLOptionDescriptor.ARGUMENT_REQUIRED | CLOptionDescriptor.DUPLICATES_ALLOWED,
+                              wideId, "wide option" );
+    final CLOptionDescriptor alias =
+      new CLOptionDescriptor( "everything", CLOptionDescriptor.ARGUMENT_DISALLOWED, ALL_OPT, "alias of all" );
+    final CLOptionSchema schema = new CLOptionSchema( new CLOptionDescriptor[]{ ALL, alias, FILE, wide } );
+    final CLArgsParser parser = new CLArgsParser( schema, null );
+
+    parser.reset( new String[]{ "--wide=1", "-f", "x", "--wide", "2", "text" } );
+    assertNull( parser.getErrorString() );
+    assertEquals( parser.getArgumentById( wideId ).getArgument(), "2" );
+    assertEquals( parser.getArgumentByName( "wide" ).getArgument(), "2" );
+    assertEquals( parser.getArgumentById( FILE_OPT ).getArgument(), "x" );
+    assertEquals( parser.getArgumentByName( "file" ).getArgument(), "x" );
+    assertEquals( parser.getArgumentById( CLOption.TEXT_ARGUMENT ).getArgument(), "text" );
+    assertNull( parser.getArgumentById( ALL_OPT ) );
+    assertNull( parser.getArgumentById( 12345 ) );
+    assertNull( parser.getArgumentByName( "missing" ) );
+
+    //Aliases resolve to the options with the same id
+    parser.reset( new String[]{ "--everything" } );
+    assertEquals( parser.getArgumentByName( "all" ).getId(), ALL_OPT );
+    assertEquals( parser.getArgumentByName( "everything" ).getId(), ALL_OPT );
+    assertNull( parser.getArgumentById( wideId ) );
+    assertNull( parser.getArgumentById( FILE_OPT ) );
+
+    //Nothing is found after a failed parse
+    parser.reset( new String[]{ "--wide=1", "-f" } );
+    assertNotNull( parser.getErrorString() );
+    assertNull( parser.getArgumentById( wideId ) );
+    assertEquals( parser.getOccurrenceCount( wideId ), 0 );
+  }
+
+  @Test
+  public void describeSchemaOptions()
+    throws Exception
+  {
+    final CLOptionDescriptor wordy =
+      new CLOptionDescriptor( "wordy",
+                              CLOptionDescriptor.ARGUMENT_REQUIRED,
+                              'w',
+                              "A description  that is wrapped at\tword boundaries averylongwordthatissplit" );
+    final CLOptionDescriptor silent =
+      new CLOptionDescriptor( "silent", CLOptionDescriptor.ARGUMENT_DISALLOWED, 's', null );
+    final CLOptionSchema schema = new CLOptionSchema( new CLOptionDescriptor[]{ wordy, silent, DEFINE } );
+    final String lSep = System.getProperty( "line.separator" );
+
+    final StringBuilder sb = new StringBuilder();
+    CLUtil.describeOptions( schema, 36, sb );
+    assertEquals( sb.toString(),
+                  "\t-w, --wordy <argument>" + lSep +
+                  "\t\tA description that" + lSep +
+                  "\t\tis wrapped at word" + lSep +
+                  "\t\tboundaries" + lSep +
+                  "\t\taverylongwordthatiss" + lSep +
+                  "\t\tplit" + lSep +
+                  "\t-s, --silent" + lSep +
+                  "\t-D, --define <argument>=<value>" + lSep +
+                  "\t\tdefine" + lSep );
+
+    //The text is cached for each width
+    assertSame( schema.describeOptions( 36 ), schema.describeOptions( 36 ) );
+    assertTrue( schema.describeOptions( 200 ).contains( "A description that is wrapped at word boundaries averylongwordthatissplit" ) );
+    for ( int width = 100; width < 120; width++ )
+    {
+      schema.describeOptions( width );
+    }
+    assertEquals( schema.describeOptions( 36 ), sb.toString() );
+  }
+
+  @Test
+  public void parseCommands()
+  {
+    final AtomicInteger compiled = new AtomicInteger();
+    final CLCommandRegistry commands = new CLCommandRegistry();
+    commands.register( "build", () -> new CLOptionDescriptor[]{ ALL, BLEE, FILE } );
+    commands.register( "clean", () -> {
+      compiled.incrementAndGet();
+      return new CLOptionDescriptor[]{ CLEAR1 };
+    } );
+    final CLOptionSchema schema = new CLOptionSchema( new CLOptionDescriptor[]{ YOU, FILE } );
+    final CLArgsParser parser =
+      new CLArgsParser( new String[]{ "--you", "-f", "root.txt", "build", "-f", "build.txt", "--all", "target" },
+                        schema,
+                        commands,
+                        null );
+
+    assertNull( parser.getErrorString(), parser.getErrorString() );
+    assertEquals( parser.getCommand(), "build" );
+    assertSame( parser.getCommandSchema(), commands.getSchema( "build" ) );
+    assertEquals( parser.getCommandOptionIndex(), 2 );
+    final List<CLOption> arguments = parser.getArguments();
+    assertEquals( arguments.size(), 5 );
+    assertEquals( arguments.get( 1 ).getArgument(), "root.txt" );
+    //Options of the command are found before options of the root schema with the same id
+    assertEquals( parser.getArgumentById( FILE_OPT ).getArgument(), "build.txt" );
+    assertEquals( parser.getArgumentByName( "file" ).getArgument(), "build.txt" );
+    assertEquals( parser.getOccurrenceCount( FILE_OPT ), 1 );
+    assertTrue( parser.isSet( YOU_OPT ) );
+    assertTrue( parser.isSet( ALL_OPT ) );
+    assertEquals( parser.getArgumentById( CLOption.TEXT_ARGUMENT ).getArgument(), "target" );
+    //Only the schema of the invoked command is compiled
+    assertEquals( compiled.get(), 0 );
+
+    parser.reset( new String[]{ "clean", "-c" } );
+    assertEquals( parser.getCommand(), "clean" );
+    assertTrue( parser.isSet( CLEAR1_OPT ) );
+    parser.reset( new String[]{ "clean" } );
+    assertEquals( compiled.get(), 1 );
+
+    //Incompatibilities are checked against the schema of the command
+    parser.reset( new String[]{ "build", "--all", "--blee" } );
+    assertEquals( parser.getErrorString(), "Incompatible options --b/--blee and -a/--all found." );
+
+    //Options before the command are described using the root schema
+    parser.reset( new String[]{ "-y", "-y", "build", "--all" } );
+    assertEquals( parser.getErrorString(), "Duplicate options for -y/--you found." );
+
+    //Options of the command are not recognised before the command
+    parser.reset( new String[]{ "--all", "build" } );
+    assertEquals( parser.getErrorString(), "Unknown option --all" );
+
+    parser.reset( new String[]{ "-y", "deploy", "-a" } );
+    assertEquals( parser.getError().getCode(), CLErrorCode.UNKNOWN_COMMAND );
+    assertEquals( parser.getError().getArgumentIndex(), 1 );
+    assertEquals( parser.getErrorString(), "Unknown command deploy" );
+    assertNull( parser.getCommand() );
+
+    parser.reset( new String[]{ "-y" } );
+    assertNull( parser.getCommand() );
+    assertEquals( parser.getCommandOptionIndex(), -1 );
+    assertTrue( parser.isSet( YOU_OPT ) );
+    assertFalse( parser.isSet( ALL_OPT ) );
+  }
+
+  @Test
+  public void parseLayeredSources()
+    throws Exception
+  {
+    final CLOptionSchema schema = new CLOptionSchema( new CLOptionDescriptor[]{ FILE, ALL, BLEE, DEFINE, YOU } );
+    final CLOptionSources sources = new CLOptionSources( schema );
+    sources.mapEnvironmentVariable( FILE_OPT, "APP_FILE" );
+    sources.mapConfigKey( FILE_OPT, "file" );
+    sources.mapConfigKey( ALL_OPT, "all" );
+    sources.mapEnvironmentVariable( BLEE_OPT, "APP_BLEE" );
+    sources.mapConfigKey( DEFINE_OPT, "define" );
+    sources.mapConfigKey( YOU_OPT, "you" );
+    final Path directory = Files.createTempDirectory( "getopt4j" );
+    final Path base = directory.resolve( "base.properties" );
+    final Path local = directory.resolve( "local.properties" );
+    Files.write( base, "file=base.txt\nall=true\ndefine=a=b\nyou=no\n".getBytes( StandardCharsets.UTF_8 ) );
+    Files.write( local, "file=local.txt\n".getBytes( StandardCharsets.UTF_8 ) );
+    sources.addConfigFile( base );
+    sources.addConfigFile( local );
+    sources.addConfigFile( directory.resolve( "missing.properties" ) );
+    final Map<String, String> environment = new HashMap<>();
+
+    //Later configuration files override earlier configuration files
+    CLParseResult result = CLArgsParser.parse( new String[]{ "text" }, sources, environment, null );
+    assertNull( result.getErrorString(), result.getErrorString() );
+    assertEquals( result.getArgumentById( FILE_OPT ).getArgument(), "local.txt" );
+    assertTrue( result.isSet( ALL_OPT ) );
+    assertFalse( result.isSet( YOU_OPT ) );
+    assertEquals( result.getArgumentById( DEFINE_OPT ).getArgument( 1 ), "b" );
+    //Options from other sources precede the options of the command line
+    assertEquals( result.getArguments().get( 3 ).getArgument(), "text" );
+
+    //The environment overrides configuration files and the command line overrides both
+    environment.put( "APP_FILE", "env.txt" );
+    result = CLArgsParser.parse( new String[ 0 ], sources, environment, null );
+    assertEquals( result.getArgumentById( FILE_OPT ).getArgument(), "env.txt" );
+    result = CLArgsParser.parse( new String[]{ "-f", "args.txt", "--all" }, sources, environment, null );
+    assertNull( result.getErrorString(), result.getErrorString() );
+    assertEquals( result.getArgumentsById( FILE_OPT ).size(), 1 );
+    assertEquals( result.getArgumentById( FILE_OPT ).getArgument(), "args.txt" );
+    assertEquals( result.getOccurrenceCount( ALL_OPT ), 1 );
+
+    //Incompatibilities are checked across all of the sources
+    environment.put( "APP_BLEE", "true" );
+    result = CLArgsParser.parse( new String[ 0 ], sources, environment, null );
+    assertEquals( result.getError().getCode(), CLErrorCode.INCOMPATIBLE_OPTIONS );
+    assertEquals( result.getError().getArgumentIndex(), -1 );
+    environment.put( "APP_BLEE", "maybe" );
+    result = CLArgsParser.parse( new String[ 0 ], sources, environment, null );
+    assertEquals( result.getError().getCode(), CLErrorCode.SOURCE );
+    assertEquals( result.getErrorString(), "Invalid value 'maybe' for option --blee from environment variable APP_BLEE" );
+    //Errors on the command line are reported before the values of other sources are validated
+    result = CLArgsParser.parse( new String[]{ "-z" }, sources, environment, null );
+    assertEquals( result.getError().getCode(), CLErrorCode.UNKNOWN_OPTION );
+    //Values of options specified on the command line are not validated
+    final CLOptionSources overridden = new CLOptionSources( schema );
+    overridden.mapEnvironmentVariable( BLEE_OPT, "APP_BLEE" );
+    result = CLArgsParser.parse( new String[]{ "--blee" }, overridden, environment, null );
+    assertNull( result.getErrorString(), result.getErrorString() );
+    assertEquals( result.getOccurrenceCount( BLEE_OPT ), 1 );
+    environment.remove( "APP_BLEE" );
+    environment.remove( "APP_FILE" );
+
+    //Configuration files are read again when they change
+    Files.write( local, "file=changed.txt\n".getBytes( StandardCharsets.UTF_8 ) );
+    Files.setLastModifiedTime( local, FileTime.fromMillis( Files.getLastModifiedTime( local ).toMillis() + 2000 ) );
+    result = CLArgsParser.parse( new String[ 0 ], sources, environment, null );
+    assertEquals( result.getArgumentById( FILE_OPT ).getArgument(), "changed.txt" );
+  }
+
+  @Test
+  public void parseListener()
+  {
+    final List<String> events = new ArrayList<>();
+    final CLParseLatencyHistogram histogram = new CLParseLatencyHistogram();
+    final CLParseListener listener = new AbstractParseListener()
+    {
+      @Override
+      public void optionRecognised( final CLOptionDescriptor descriptor, final int argumentIndex, final long nanoTime )
+      {
+        events.add( "option " + descriptor.getName() + " " + argumentIndex );
+      }
+
+      @Override
+      public void argumentBound( final CLOption option, final int argumentIndex, final long nanoTime )
+      {
+        events.add( "argument " + option.getArgument() + " " + argumentIndex );
+      }
+
+      @Override
+      public void stateChanged( final CLParserState from,
+                                final CLParserState to,
+                                final int argumentIndex,
+                                final long nanoTime )
+      {
+        events.add( from + " -> " + to );
+      }
+
+      @Override
+      public void parseFailed( final CLParseError error, final long nanoTime )
+      {
+        events.add( "failed " + error.getCode() );
+        histogram.parseFailed( error, nanoTime );
+      }
+
+      @Override
+      public void parseCompleted( final int argumentCount,
+                                  final int optionCount,
+                                  final long startTime,
+                                  final long nanoTime )
+      {
+        assertTrue( nanoTime >= startTime );
+        events.add( "completed " + argumentCount + " " + optionCount );
+        histogram.parseCompleted( argumentCount, optionCount, startTime, nanoTime );
+      }
+    };
+    final ParserControl control = new AbstractParserControl()
+    {
+      @Override
+      public CLParseListener getParseListener()
+      {
+        return listener;
+      }
+    };
+    final CLOptionSchema schema = new CLOptionSchema( new CLOptionDescriptor[]{ ALL, FILE } );
+
+    final CLArgsParser parser = new CLArgsParser( new String[]{ "-a", "--file", "x", "text" }, schema, control );
+    assertNull( parser.getErrorString(), parser.getErrorString() );
+    assertEquals( events.toString(),
+                  "[option all 0, NORMAL -> SHORT_OPTIONS, SHORT_OPTIONS -> NORMAL, option file 1, " +
+                  "NORMAL -> REQUIRE_ARGUMENT, argument x 2, REQUIRE_ARGUMENT -> NORMAL, argument text 3, " +
+                  "completed 4 3]" );
+
+    events.clear();
+    parser.reset( new String[]{ "--file=a", "--file=b" } );
+    assertEquals( events.toString(),
+                  "[option file 0, NORMAL -> REQUIRE_ARGUMENT, argument a 0, REQUIRE_ARGUMENT -> NORMAL, " +
+                  "option file 1, NORMAL -> REQUIRE_ARGUMENT, argument b 1, REQUIRE_ARGUMENT -> NORMAL, " +
+                  "failed DUPLICATE_OPTION, completed 2 2]" );
+
+    events.clear();
+    final CLOptionIterator iterator = new CLOptionIterator( new String[]{ "--all" }, schema, control );
+    while ( iterator.hasNext() )
+    {
+      iterator.next();
+    }
+    assertFalse( iterator.hasNext() );
+    assertEquals( events.toString(), "[option all 0, completed 1 1]" );
+
+    assertEquals( histogram.getCount(), 3 );
+    assertEquals( histogram.getFailureCount(), 1 );
+    assertTrue( histogram.getPercentile( 50 ) > 0 );
+    assertTrue( histogram.getPercentile( 100 ) >= histogram.getPercentile( 50 ) );
+    histogram.record( 1000 );
+    assertEquals( histogram.getBucketCount( 9 ), 1 );
+    histogram.reset();
+    assertEquals( histogram.getCount(), 0 );
+    assertEquals( histogram.getPercentile( 99 ), 0 );
+  }
+
+  @Test
+  public void optionStatistics()
+    throws Exception
+  {
+    final CLOptionDescriptor everything =
+      new CLOptionDescriptor( "everything", CLOptionDescriptor.ARGUMENT_DISALLOWED, ALL_OPT, "alias" );
+    final CLOptionSchema schema = new CLOptionSchema( new CLOptionDescriptor[]{ ALL, FILE, everything } );
+    final CLOptionStatistics statistics = new CLOptionStatistics( schema );
+    final ParserControl control = new AbstractParserControl()
+    {
+      @Override
+      public CLParseListener getParseListener()
+      {
+        return statistics;
+      }
+    };
+
+    final String[][] commandLines = {
+      { "--all", "-f", "a" }, { "--everything" }, { "--unknown" }, { "-f", "a", "-f", "b" }, {} };
+    final ForkJoinPool pool = new ForkJoinPool( 4 );
+    try
+    {
+      pool.submit( () -> {
+        for ( int i = 0; i < 1000; i++ )
+        {
+          new CLArgsParser( commandLines[ i % commandLines.length ], schema, control );
+        }
+      } ).get();
+    }
+    finally
+    {
+      pool.shutdown();
+    }
+
+    final CLOptionStatistics.Snapshot snapshot = statistics.snapshotAndReset();
+    assertEquals( snapshot.getParseCount(), 1000 );
+    assertEquals( snapshot.getOccurrenceCounts()[ 0 ], 200 );
+    assertEquals( snapshot.getOccurrenceCounts()[ 2 ], 200 );
+    assertEquals( snapshot.getOccurrenceCount( ALL_OPT ), 400 );
+    assertEquals( snapshot.getOccurrenceCount( FILE_OPT ), 600 );
+    assertEquals( snapshot.getErrorCount( CLErrorCode.UNKNOWN_OPTION ), 200 );
+    assertEquals( snapshot.getErrorCount( CLErrorCode.DUPLICATE_OPTION ), 200 );
+    assertEquals( snapshot.getErrorCount( CLErrorCode.MISSING_ARGUMENT ), 0 );
+    final long[] distribution = snapshot.getArgumentCountDistribution();
+    assertEquals( distribution[ 0 ], 200 );
+    assertEquals( distribution[ 1 ], 400 );
+    assertEquals( distribution[ 2 ], 200 );
+    assertEquals( distribution[ 3 ], 200 );
+
+    assertEquals( statistics.snapshot().getParseCount(), 0 );
+    new CLArgsParser( new String[]{ "--all" }, schema, control );
+    assertEquals( statistics.snapshot().getOccurrenceCount( ALL_OPT ), 1 );
+    statistics.reset();
+    assertEquals( statistics.snapshot().getOccurrenceCount( ALL_OPT ), 0 );
+  }
+
+  @Test
+  public void internArguments()
+  {
+    final CLInternPool pool = new CLInternPool( 16 );
+    final ParserControl control = new AbstractParserControl()
+    {
+      @Override
+      public CLInternPool getInternPool( final CLOptionDescriptor descriptor )
+      {
+        //Only the arguments of the file option are pooled
+        return FILE == descriptor ? pool : null;
+      }
+    };
+    final CLOptionSchema schema = new CLOptionSchema( new CLOptionDescriptor[]{ FILE, DEFINE } );
+    final String[] args = { "--file=default", "-Dname=value", "text" };
+
+    final List<CLOption> first = CLArgsParser.parse( args, schema, control ).getArguments();
+    final List<CLOption> second = CLArgsParser.parse( args, schema, control ).getArguments();
+    assertEquals( first.get( 0 ).getArgument(), "default" );
+    assertSame( first.get( 0 ).getArgument(), second.get( 0 ).getArgument() );
+    assertNotSame( first.get( 1 ).getArgument( 1 ), second.get( 1 ).getArgument( 1 ) );
+    assertEquals( pool.getMissCount(), 1 );
+    assertEquals( pool.getHitCount(), 1 );
+    assertEquals( pool.getHitRate(), 0.5, 0.0001 );
+
+    //Values from character sequences are compared without creating a String
+    final CharSequence[] sequences = { CharBuffer.wrap( "-fdefault".toCharArray() ) };
+    final CLArgsParser parser = new CLArgsParser( sequences, schema, control );
+    assertSame( parser.getArguments().get( 0 ).getArgument(), first.get( 0 ).getArgument() );
+    assertEquals( pool.getHitCount(), 2 );
+
+    //Regions of a value are compared in place with the pooled values
+    assertSame( pool.intern( "--file=default", 7, 14 ), first.get( 0 ).getArgument() );
+    assertSame( pool.intern( CharBuffer.wrap( "-fdefault" ), 2, 9 ), first.get( 0 ).getArgument() );
+    assertEquals( pool.getHitCount(), 4 );
+    assertEquals( pool.intern( "--file=other", 7, 12 ), "other" );
+
+    //Values longer than the maximum length are not pooled
+    final CLInternPool shortPool = new CLInternPool( 4, 3 );
+    assertEquals( shortPool.intern( "long" ), "long" );
+    assertSame( shortPool.intern( new String( "abc" ) ), shortPool.intern( new String( "abc" ) ) );
+    assertEquals( shortPool.getMissCount(), 1 );
+    shortPool.clear();
+    assertEquals( shortPool.getHitCount(), 0 );
+  }
+
+  @Test
+  public void unParsedArgsView()
+  {
+    final ParserControl control = new AbstractParserControl()
+    {
+      public boolean isFinished( final int lastOptionCode )
+      {
+        return lastOptionCode == CLEAR1_OPT;
+      }
+    };
+    final CLOptionSchema schema = new CLOptionSchema( new CLOptionDescriptor[]{ YOU, ALL, CLEAR1 } );
+    final String[] args = { "--you", "are", "--all", "-cler", "kid" };
+    final CLParseResult result = CLArgsParser.parse( args, schema, control );
+
+    //The view refers to the position in the args rather than copying them
+    final CLUnParsedArgs view = result.getUnParsedArgsView();
+    assertEquals( view.getStartIndex(), 3 );
+    assertEquals( view.getCharOffset(), 2 );
+    assertEquals( view.size(), 2 );
+    assertEquals( view.getSequence( 0 ).toString(), "ler" );
+    assertSame( view.getSequence( 1 ), args[ 4 ] );
+    assertEquals( view, Arrays.asList( "ler", "kid" ) );
+    assertEquals( view.toStringArray(), new String[]{ "ler", "kid" } );
+    assertEquals( result.getUnParsedArgs(), new String[]{ "ler", "kid" } );
+
+    //The parser materialises the array once
+    final CLArgsParser parser = new CLArgsParser( args, schema.getDescriptors(), control );
+    assertSame( parser.getUnParsedArgs(), parser.getUnParsedArgs() );
+    assertEquals( parser.getUnParsedArgsView().getStartIndex(), 3 );
+
+    //An empty argument that follows the halting option is not consumed
+    final CLArgsParser empty = new CLArgsParser( new String[]{ "-c", "", "--all" }, schema.getDescriptors(), control );
+    assertEquals( empty.getUnParsedArgs(), new String[]{ "", "--all" } );
+    assertEquals( empty.getUnParsedArgsView().getStartIndex(), 1 );
+
+    //The unparsed args are reported once the iterator halts even if retrieved during iteration
+    final CLOptionIterator iterator = new CLOptionIterator( args, schema, control );
+    assertTrue( iterator.hasNext() );
+    assertEquals( iterator.getUnParsedArgs().length, 0 );
+    while ( iterator.hasNext() )
+    {
+      iterator.next();
+    }
+    assertEquals( iterator.getUnParsedArgs(), new String[]{ "ler", "kid" } );
+    assertEquals( iterator.getUnParsedArgsView().getStartIndex(), 3 );
+
+    final CLArgsParser complete = new CLArgsParser( args, schema.getDescriptors() );
+    assertTrue( complete.getUnParsedArgsView().isEmpty() );
+    assertEquals( complete.getUnParsedArgs().length, 0 );
+  }
+
+  @Test
+  public void incompatibleWithTextArgument()
+  {
+    final CLOptionDescriptor all =
+      new CLOptionDescriptor( "all", CLOptionDescriptor.ARGUMENT_DISALLOWED, ALL_OPT, "a", new int[]{ 0 } );
+    final CLOptionDescriptor[] options = new CLOptionDescriptor[]{ all, CLEAR1 };
+
+    final CLArgsParser parser1 = new CLArgsParser( new String[]{ "-a", "file" }, options );
+    assertEquals( parser1.getErrorString(), "Incompatible options -<parameter> and -a/--all found." );
+    assertSame( parser1.getError().getDescriptor(), all );
+    assertNull( parser1.getError().getOtherDescriptor() );
+
+    final CLArgsParser parser2 = new CLArgsParser( new String[]{ "file", "-a" }, options );
+    assertEquals( parser2.getErrorString(), "Incompatible options -<parameter> and -a/--all found." );
+
+    final CLOptionIterator iterator =
+      new CLOptionIterator( new String[]{ "file", "-c", "-a" }, new CLOptionSchema( options ) );
+    assertEquals( iterator.next().getId(), CLOption.TEXT_ARGUMENT );
+    assertEquals( iterator.next().getId(), CLEAR1_OPT );
+    assertFalse( iterator.hasNext() );
+    assertEquals( iterator.getErrorString(), "Incompatible options -<parameter> and -a/--all found." );
+
+    final CLArgsParser parser3 = new CLArgsParser( new String[]{ "-a", "-c" }, options );
+    assertNull( parser3.getErrorString(), parser3.getErrorString() );
+  }
+
 }